@@ -0,0 +1,34 @@
+package de.dk.bininja.client.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler and writes the results as JSON to <code>jmh-result.json</code>,
+ * so the results of different commits can be compared.
+ * Takes the same arguments as the JMH command line, e.g. a regular expression to select the benchmarks.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class BenchmarkRunner {
+   public static final String RESULT_FILE = "jmh-result.json";
+
+   public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+      CommandLineOptions commandLine = new CommandLineOptions(args);
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+                                                          .addProfiler(GCProfiler.class);
+      if (!commandLine.getResult().hasValue())
+         options.result(RESULT_FILE);
+      if (!commandLine.getResultFormat().hasValue())
+         options.resultFormat(ResultFormatType.JSON);
+
+      new Runner(options.build()).run();
+   }
+}
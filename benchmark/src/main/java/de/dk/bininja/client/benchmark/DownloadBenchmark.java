@@ -0,0 +1,144 @@
+package de.dk.bininja.client.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.client.net.BufferPool;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.client.net.InMemoryChannel;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+
+/**
+ * Measures the receiving and writing path of the {@link ClientDownload}.
+ * Every operation loads {@link #BYTES_PER_OPERATION} bytes, split evenly among the concurrent downloads.
+ * Each download is fed by a thread of a pool of at most one thread per processor,
+ * like the receiving threads of the connections would.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+   public static final long BYTES_PER_OPERATION = 64 * 1024 * 1024;
+
+   @Param({"1024", "16384", "131072", "1048576"})
+   public int packetSize;
+
+   @Param({"FILE", "NULL", "MEMORY"})
+   public Sink sink;
+
+   @Param({"1", "16", "256"})
+   public int downloads;
+
+   private DownloadDataPacket packet;
+   private long packetsPerDownload;
+   private final List<InMemoryChannel> channels = new ArrayList<>();
+   private final BufferPool heapBuffers = new BufferPool(false);
+   private final BufferPool directBuffers = new BufferPool(true);
+   private ExecutorService feeders;
+   private File directory;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      byte[] payload = new byte[packetSize];
+      new Random(packetSize).nextBytes(payload);
+      this.packet = new DownloadDataPacket(payload);
+      this.packetsPerDownload = Math.max(1, BYTES_PER_OPERATION / ((long) downloads * packetSize));
+
+      long length = packetsPerDownload * packetSize;
+      for (int i = 0; i < downloads; i++)
+         channels.add(new InMemoryChannel(length, "download-" + i));
+
+      this.feeders = Executors.newFixedThreadPool(Math.min(downloads, Runtime.getRuntime().availableProcessors()));
+      this.directory = Files.createTempDirectory("bininja-benchmark").toFile();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      feeders.shutdownNow();
+      File[] files = directory.listFiles();
+      if (files != null) {
+         for (File file : files)
+            file.delete();
+      }
+      directory.delete();
+   }
+
+   @Benchmark
+   public long download(Bytes bytes) throws Exception {
+      long length = packetsPerDownload * packetSize;
+      CountDownLatch terminated = new CountDownLatch(downloads);
+      List<ClientDownload> started = new ArrayList<>(downloads);
+      for (int i = 0; i < downloads; i++) {
+         InMemoryChannel channel = channels.get(i);
+         channel.reset();
+         File file = new File(directory, "download-" + i);
+         ClientDownload download = sink.open(channel.getChannel(), length, file, heapBuffers, directBuffers);
+         download.whenTerminated(d -> terminated.countDown());
+         download.start();
+         started.add(download);
+      }
+
+      List<Future<?>> feeding = new ArrayList<>(downloads);
+      for (ClientDownload download : started)
+         feeding.add(feeders.submit(() -> feed(download)));
+
+      for (Future<?> future : feeding)
+         future.get();
+
+      terminated.await();
+      long total = length * downloads;
+      bytes.bytes += total;
+      return total;
+   }
+
+   private void feed(ClientDownload download) {
+      for (long i = 0; i < packetsPerDownload; i++)
+         InMemoryChannel.feed(download, packet);
+
+      InMemoryChannel.finish(download);
+   }
+
+   /**
+    * Reports the number of bytes, that have been loaded, next to the operations.
+    */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.OPERATIONS)
+   public static class Bytes {
+      public long bytes;
+
+      @Setup(Level.Iteration)
+      public void reset() {
+         bytes = 0;
+      }
+   }
+}
@@ -0,0 +1,103 @@
+package de.dk.bininja.client.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.dk.bininja.client.controller.ProcessorController;
+import de.dk.bininja.client.core.Logic;
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.client.net.InMemoryChannel;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.Channel;
+
+/**
+ * Measures the preparation of a single download by {@link Logic#requestDownloadFrom(DownloadMetadata, Channel)}:
+ * Requesting the header, opening the target and writing its sidecar.
+ * The header is answered immediately by an {@link InMemoryChannel},
+ * so the round trip to the server is not part of the measurement.
+ * Every prepared download is started on the calling thread and cancelled right away to close its target.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark implements ProcessorController {
+   private static final long LENGTH = 1024 * 1024;
+   private static final String FILENAME = "request";
+
+   private Logic logic;
+   private InMemoryChannel channel;
+   private URL url;
+   private File directory;
+
+   @Setup(Level.Trial)
+   public void setUp() throws IOException {
+      this.logic = new Logic(this);
+      this.channel = new InMemoryChannel(LENGTH, FILENAME);
+      this.url = new URL("http://localhost/" + FILENAME);
+      this.directory = Files.createTempDirectory("bininja-benchmark").toFile();
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() {
+      logic.close();
+      File[] files = directory.listFiles();
+      if (files != null) {
+         for (File file : files)
+            file.delete();
+      }
+      directory.delete();
+   }
+
+   @Benchmark
+   public ClientDownload request() throws IOException {
+      channel.reset();
+      DownloadMetadata metadata = new DownloadMetadata(url);
+      metadata.setTargetDirectory(directory);
+      metadata.setFileName(FILENAME);
+
+      ClientDownload download = logic.requestDownloadFrom(metadata, channel.getChannel());
+      download.start(Runnable::run);
+      download.cancel();
+      new File(directory, FILENAME + ".bininja").delete();
+      return download;
+   }
+
+   @Override
+   public void setDownloadTargetTo(DownloadMetadata meta) {
+      meta.setTargetDirectory(directory);
+      meta.setFileName(FILENAME);
+   }
+
+   @Override
+   public Channel<DownloadPacket> establishDownloadChannel() throws IOException {
+      return new InMemoryChannel(LENGTH, FILENAME).getChannel();
+   }
+
+   @Override
+   public void closeDownloadChannel(Channel<DownloadPacket> channel) {
+
+   }
+}
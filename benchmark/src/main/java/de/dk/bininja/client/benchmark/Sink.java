@@ -0,0 +1,109 @@
+package de.dk.bininja.client.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import de.dk.bininja.client.net.BufferPool;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.Channel;
+
+/**
+ * The targets, that a benchmarked download writes to.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public enum Sink {
+   /** A file, that is written with gathering writes through a FileChannel. */
+   FILE {
+      @Override
+      public ClientDownload open(Channel<DownloadPacket> channel,
+                                 long length,
+                                 File file,
+                                 BufferPool heapBuffers,
+                                 BufferPool directBuffers) throws IOException {
+         FileChannel output = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+         return new ClientDownload(channel, output, length, directBuffers);
+      }
+   },
+   /** A stream, that discards everything. */
+   NULL {
+      @Override
+      public ClientDownload open(Channel<DownloadPacket> channel,
+                                 long length,
+                                 File file,
+                                 BufferPool heapBuffers,
+                                 BufferPool directBuffers) {
+         return new ClientDownload(channel, new NullOutputStream(), length, heapBuffers);
+      }
+   },
+   /** A stream, that copies everything into a ring buffer in memory. */
+   MEMORY {
+      @Override
+      public ClientDownload open(Channel<DownloadPacket> channel,
+                                 long length,
+                                 File file,
+                                 BufferPool heapBuffers,
+                                 BufferPool directBuffers) {
+         return new ClientDownload(channel, new RingOutputStream(RING_SIZE), length, heapBuffers);
+      }
+   };
+
+   private static final int RING_SIZE = 1024 * 1024;
+
+   /**
+    * Creates a download of <code>length</code> bytes over the <code>channel</code>, that writes to this sink.
+    *
+    * @param file The file to write to, if this sink is a file
+    */
+   public abstract ClientDownload open(Channel<DownloadPacket> channel,
+                                       long length,
+                                       File file,
+                                       BufferPool heapBuffers,
+                                       BufferPool directBuffers) throws IOException;
+
+   private static class NullOutputStream extends OutputStream {
+      @Override
+      public void write(int b) {
+
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+
+      }
+   }
+
+   private static class RingOutputStream extends OutputStream {
+      private final byte[] ring;
+      private int position;
+
+      private RingOutputStream(int size) {
+         this.ring = new byte[size];
+      }
+
+      @Override
+      public void write(int b) {
+         ring[position] = (byte) b;
+         position = (position + 1) % ring.length;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+         while (len > 0) {
+            int count = Math.min(len, ring.length - position);
+            System.arraycopy(b, off, ring, position, count);
+            position = (position + count) % ring.length;
+            off += count;
+            len -= count;
+         }
+      }
+   }
+}
@@ -1,11 +1,14 @@
 package de.dk.bininja.client.controller;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.security.PublicKey;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import javax.crypto.SecretKey;
@@ -13,10 +16,17 @@ import javax.crypto.SecretKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.dk.bininja.client.core.ContentCache;
+import de.dk.bininja.client.core.DownloadBatch;
+import de.dk.bininja.client.core.DownloadMetrics;
 import de.dk.bininja.client.core.Logic;
+import de.dk.bininja.client.core.ManifestRun;
+import de.dk.bininja.client.core.MetricsReporter;
 import de.dk.bininja.client.entrypoint.ParsedArguments;
+import de.dk.bininja.client.entrypoint.StartupTimer;
 import de.dk.bininja.client.model.DownloadMetadata;
 import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.client.net.ConnectionPool;
 import de.dk.bininja.client.ui.UI;
 import de.dk.bininja.client.ui.UIController;
 import de.dk.bininja.net.Base64Connection;
@@ -30,7 +40,6 @@ import de.dk.bininja.net.packet.download.DownloadPacket;
 import de.dk.bininja.ui.cli.Cli;
 import de.dk.ch.Channel;
 import de.dk.ch.ChannelDeclinedException;
-import de.dk.ch.Multiplexer;
 import de.dk.util.net.Connection;
 import de.dk.util.net.ConnectionListener;
 import de.dk.util.net.security.SessionKeyArrangement;
@@ -47,16 +56,30 @@ public class MasterControlProgram implements ProcessorController,
 
    private static final long CONNECTION_TIMEOUT = 8000;
    private static final long CONNECTION_CLOSE_TIMEOUT = 8000;
+   public static final int DEFAULT_RECONNECT_ATTEMPTS = 8;
+   private static final long RECONNECT_INITIAL_DELAY = 1000;
+   private static final long RECONNECT_MAX_DELAY = 60000;
+   private static final long CONNECTION_POLL_INTERVAL = 200;
 
    private Logic processor;
    private UI ui;
 
-   private Base64Connection connection;
-   private Multiplexer channelManager;
-
+   private final ConnectionPool connections = new ConnectionPool();
+   private int connectionCount = 1;
+   /** The host and port of the last connect, that are reconnected to after the connection has been lost. */
+   private String host;
+   private int port;
+   private int reconnectAttempts = DEFAULT_RECONNECT_ATTEMPTS;
+   private Thread recovery;
+   /** The maximum number of download commands of a script, that are executed at the same time. */
+   private int scriptParallelism = 1;
+
+   /** The arguments, whose security arguments are parsed on the first secure connect or <code>null</code>. */
+   private ParsedArguments secureArgs;
    private PublicKey publicKey;
+   private StartupTimer startupTimer;
 
-   private boolean stopping = false;
+   private volatile boolean stopping = false;
 
    public MasterControlProgram() {
 
@@ -68,9 +91,67 @@ public class MasterControlProgram implements ProcessorController,
       this.processor = processor;
       this.ui = ui;
 
+      processor.setGatheringWrites(args.isGatheringWrites());
+      processor.setCompression(args.isCompression());
+      processor.setRangeRequests(args.isRangeRequests());
+      processor.setZeroFill(args.isZeroFill());
+      if (args.isReceiveWindowSizeSpecified())
+         processor.setReceiveWindowSize(args.getReceiveWindowSize());
+      if (args.isSegmentCountSpecified())
+         processor.setSegmentCount(args.getSegmentCount());
+      if (args.isSegmentThresholdSpecified())
+         processor.setSegmentThreshold(args.getSegmentThreshold());
+      if (args.isMaxRunningDownloadsSpecified())
+         processor.setMaxRunningDownloads(args.getMaxRunningDownloads());
+      if (args.isWriterThreadsSpecified())
+         processor.setWriterThreads(args.getWriterThreads());
+      processor.setChecksumAlgorithm(args.getChecksumAlgorithm());
+      if (args.getWriteMode() != null)
+         processor.setWriteMode(args.getWriteMode());
+      if (args.isRateLimitSpecified())
+         processor.setRateLimit(args.getRateLimit());
+      if (args.isProgressIntervalSpecified())
+         processor.setProgressInterval(args.getProgressInterval());
+      if (args.isConnectionCountSpecified())
+         this.connectionCount = args.getConnectionCount();
+      if (args.isReconnectAttemptsSpecified())
+         this.reconnectAttempts = args.getReconnectAttempts();
+      if (args.isScriptParallelismSpecified())
+         this.scriptParallelism = args.getScriptParallelism();
+
+      if (args.getCacheDirectory() != null) {
+         long quota = args.isCacheSizeSpecified() ? args.getCacheSize() : ContentCache.DEFAULT_QUOTA;
+         try {
+            ContentCache cache = new ContentCache(args.getCacheDirectory(), quota);
+            cache.setHardLinks(args.isCacheLinks());
+            if (args.isCacheMaxAgeSpecified())
+               cache.setMaxAge(args.getCacheMaxAge());
+            processor.setContentCache(cache);
+         } catch (IOException e) {
+            String msg = "Could not open the cache " + args.getCacheDirectory().getAbsolutePath();
+            LOGGER.warn(msg, e);
+            ui.showError(msg + "\n" + e.getMessage());
+         }
+      }
+
+      processor.getMetrics()
+               .registerMBeanInBackground();
+      if (args.isMetricsIntervalSpecified() || args.getMetricsCsv() != null) {
+         long interval = args.isMetricsIntervalSpecified() ? args.getMetricsInterval()
+                                                           : MetricsReporter.DEFAULT_INTERVAL;
+         try {
+            processor.startMetricsReporter(interval, args.getMetricsCsv());
+         } catch (IOException e) {
+            String msg = "Could not open the metrics file " + args.getMetricsCsv().getAbsolutePath();
+            LOGGER.warn(msg, e);
+            ui.showError(msg + "\n" + e.getMessage());
+         }
+      }
+
       if (args.isSecure())
-         this.publicKey = args.getSecArgs().getPublicKey();
+         this.secureArgs = args;
 
+      phase("setup");
       int port = args.isPortSpecified() ? args.getPort() : Base64Connection.PORT;
       if (args.getHost() != null) {
          try {
@@ -81,11 +162,20 @@ public class MasterControlProgram implements ProcessorController,
             ui.showError(msg + "\n" + e.getMessage());
             return;
          }
+         phase("connect");
       }
+      if (startupTimer != null)
+         LOGGER.info("Startup phases: " + startupTimer);
 
       if (args.getCommand() != null) {
          Cli<?> cli = (Cli<?>) ui;
          cli.enter(args.getCommand());
+         reportFirstWrite();
+         exit();
+      } else if (args.getManifest() != null) {
+         int window = args.isManifestWindowSpecified() ? args.getManifestWindow() : ManifestRun.DEFAULT_WINDOW;
+         runManifest(args.getManifest(), window, args.getManifestResults());
+         reportFirstWrite();
          exit();
       } else if (args.getScript() != null) {
          try {
@@ -95,6 +185,7 @@ public class MasterControlProgram implements ProcessorController,
             LOGGER.error(msg, e);
             ui.showError(msg + "\n" + e.getMessage());
          }
+         reportFirstWrite();
          exit();
       }
 
@@ -104,83 +195,252 @@ public class MasterControlProgram implements ProcessorController,
       LOGGER.info("BiNinjaClient out.");
    }
 
+   private void phase(String name) {
+      if (startupTimer != null)
+         startupTimer.phase(name);
+   }
+
+   /**
+    * Logs the time from the launch of the application until the first byte has been written to a download target.
+    */
+   private void reportFirstWrite() {
+      long firstWrite = processor.getMetrics()
+                                 .getFirstWriteNanos();
+      if (startupTimer != null && firstWrite != 0)
+         LOGGER.info("First byte written " + startupTimer.millisSinceStart(firstWrite) + " ms after the launch");
+   }
+
    @Override
    public SecretKey buildSessionKey(SessionKeyArrangement builder) throws IOException {
+      PublicKey publicKey = publicKey();
       if (publicKey == null)
          return null;
 
-      return builder.setGenerateSessionKey(true)
-                    .setPublicKey(publicKey)
-                    .arrange();
+      long start = System.nanoTime();
+      SecretKey sessionKey = builder.setGenerateSessionKey(true)
+                                    .setPublicKey(publicKey)
+                                    .arrange();
+      processor.getMetrics()
+               .getKeyArrangement()
+               .recordSince(start);
+      return sessionKey;
    }
 
-   private void executeScript(File script, Cli<?> cli) throws IOException {
-      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(script)));
+   /**
+    * Loads the public key of the server on first use,
+    * so a run, that does not connect, does not pay for the key loading.
+    *
+    * @return The public key of the server or <code>null</code> if the connections are not secure
+    *
+    * @throws IOException If the key could not be loaded
+    */
+   private synchronized PublicKey publicKey() throws IOException {
+      if (publicKey == null && secureArgs != null) {
+         long start = System.nanoTime();
+         this.publicKey = secureArgs.getSecArgs()
+                                    .getPublicKey();
+         LOGGER.debug("Loaded the public key in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+      }
+      return publicKey;
+   }
+
+   public void setStartupTimer(StartupTimer startupTimer) {
+      this.startupTimer = startupTimer;
+   }
 
+   /**
+    * Executes the script and shows a summary of the downloads, that have been finished meanwhile.
+    */
+   private void executeScript(File script, Cli<?> cli) throws IOException {
+      List<String> commands = ScriptRunner.read(script);
+      ScriptRunner runner = new ScriptRunner(cli, scriptParallelism);
+      DownloadMetrics metrics = processor.getMetrics();
+      long startNanos = System.nanoTime();
+      long startBytes = metrics.getWrittenBytes();
+      long startFinished = metrics.getFinishedDownloads();
+      long startFailed = metrics.getFailedDownloads() + metrics.getFailedRequests();
+
+      LOGGER.info("Executing " + commands.size() + " lines of " + script.getAbsolutePath()
+                  + " with a parallelism of " + scriptParallelism);
       try {
-         for (String line = in.readLine(); in != null; line = in.readLine())
-            cli.enter(line);
-      } finally {
-         try {
-            in.close();
-         } catch (IOException e) {
-            LOGGER.warn("Error closing " + script.getAbsolutePath(), e);
-         }
+         runner.run(commands);
+      } catch (InterruptedException e) {
+         LOGGER.warn("Interrupted while executing the script " + script.getAbsolutePath());
+         Thread.currentThread().interrupt();
       }
+
+      double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+      long bytes = metrics.getWrittenBytes() - startBytes;
+      long failed = metrics.getFailedDownloads() + metrics.getFailedRequests() - startFailed;
+      long finished = metrics.getFinishedDownloads() - startFinished;
+      double throughput = seconds > 0 ? bytes / seconds : 0;
+      LOGGER.info(String.format(Locale.ROOT,
+                                "Script finished: %d commands (%d failed) in %.1f s, "
+                                + "%d downloads finished, %d failed, %d bytes written (%.0f bytes/s)",
+                                runner.getEnteredCount(),
+                                runner.getFailedCount(),
+                                seconds,
+                                finished,
+                                failed,
+                                bytes,
+                                throughput));
+
+      String summary = String.format(Locale.ROOT,
+                                     "%d Befehle abgearbeitet (%d fehlerhaft) in %.1f s. "
+                                     + "%d Downloads beendet, %d fehlgeschlagen, %d Bytes geschrieben (%.0f Bytes/s).",
+                                     runner.getEnteredCount(),
+                                     runner.getFailedCount(),
+                                     seconds,
+                                     finished,
+                                     failed,
+                                     bytes,
+                                     throughput);
+      if (failed > 0 || runner.getFailedCount() > 0)
+         ui.showError("%s", summary);
+      else
+         ui.show("%s", summary);
    }
 
    @Override
    public void connect(String host, int port) throws IOException, ConnectionRefusedException {
-      if (connection != null && connection.isRunning()) {
+      if (!connections.isEmpty()) {
          processor.cancelDownloads();
+         closeConnections();
+      }
+      this.host = host;
+      this.port = port;
+      LOGGER.info("Establishing " + connectionCount + " connection(s) to \"" + host + "\".");
+      for (int i = 0; i < connectionCount; i++) {
+         Base64Connection connection;
          try {
-            connection.close(CONNECTION_CLOSE_TIMEOUT);
-         } catch (IOException | InterruptedException e) {
-            LOGGER.warn("Error closing the connection to " + connection.getAddress(), e);
+            connection = requestConnection(host, port);
+         } catch (IOException | ConnectionRefusedException e) {
+            if (connections.isEmpty())
+               throw e;
+
+            LOGGER.warn("Could only establish " + connections.size() + " connection(s) to " + host, e);
+            break;
          }
+         if (connection == null)
+            break;
+
+         addConnection(connection);
       }
+      if (connections.isEmpty())
+         return;
 
-      LOGGER.info("Establishing connection to \"" + host + "\".");
+      LOGGER.info("Connection with " + host + " established");
+      ui.setConnected(true);
+      ui.show("Verbindung zu " + host + " hergestellt");
+   }
+
+   private Base64Connection requestConnection(String host, int port) throws IOException, ConnectionRefusedException {
       ConnectionRequest request;
-      if (publicKey == null)
+      if (secureArgs == null)
          request = new ConnectionRequest(host, port);
       else
          request = new ConnectionRequest(host, port, this);
 
+      long start = System.nanoTime();
       try {
-         this.connection = request.request(ConnectionType.CLIENT, CONNECTION_TIMEOUT);
+         Base64Connection connection = request.request(ConnectionType.CLIENT, CONNECTION_TIMEOUT);
+         long nanos = System.nanoTime() - start;
+         processor.getMetrics()
+                  .getConnectionSetup()
+                  .record(nanos);
+         LOGGER.debug("Connection to \"" + host + "\" established in " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+         return connection;
       } catch (IOException | ConnectionRefusedException e) {
          LOGGER.error("Connecting to \"" + host + "\" failed", e);
          throw e;
       } catch (InterruptedException e) {
          LOGGER.info("Interrupted while establishing connection to " + host, e);
+         return null;
       }
+   }
 
+   private void addConnection(Base64Connection connection) {
       LOGGER.debug("Sending initial message, to tell the server, that I am a download client.");
       connection.addListener(this);
-      this.channelManager = connection.attachMultiplexer();
+      connections.add(connection);
       connection.start();
-      LOGGER.info("Connection with " + host + " established");
-      ui.setConnected(true);
-      ui.show("Verbindung zu " + host + " hergestellt");
+   }
+
+   /**
+    * Establishes new connections in place of the connections of the pool, that have been lost,
+    * while other connections to the server are still open.
+    *
+    * @return <code>true</code> if the pool has all of its connections again
+    */
+   private boolean replaceLostConnections() {
+      while (connections.size() < connectionCount && !stopping) {
+         Base64Connection connection;
+         try {
+            connection = requestConnection(host, port);
+         } catch (IOException | ConnectionRefusedException e) {
+            LOGGER.warn("Could not replace a lost connection to " + host + ":" + port, e);
+            return false;
+         }
+         if (connection == null)
+            return false;
+
+         addConnection(connection);
+         LOGGER.info("Replaced a lost connection to " + host + ". "
+                     + connections.size() + " of " + connectionCount + " connection(s) open");
+      }
+      return connections.size() >= connectionCount;
+   }
+
+   private void closeConnections() {
+      for (Base64Connection connection : connections.clear()) {
+         if (!connection.isRunning())
+            continue;
+
+         try {
+            connection.close(CONNECTION_CLOSE_TIMEOUT);
+         } catch (IOException | InterruptedException e) {
+            LOGGER.warn("Error closing the connection to " + connection.getAddress(), e);
+         }
+      }
    }
 
    @Override
    public boolean requestDownloadFrom(DownloadMetadata metadata, DownloadListener listener) {
+      return processor.schedule(metadata, () -> startDownload(metadata, listener));
+   }
+
+   private ClientDownload startDownload(DownloadMetadata metadata, DownloadListener listener) {
+      return startDownload(metadata, listener, null);
+   }
+
+   /**
+    * Establishes the channel of the download, requests and starts it.
+    *
+    * @param listener The listener to add to the download or <code>null</code>
+    * @param item The item of a manifest, that the outcome is reported to,
+    * or <code>null</code> to show failures on the ui
+    *
+    * @return The started download or <code>null</code> if it has not been started
+    */
+   private ClientDownload startDownload(DownloadMetadata metadata, DownloadListener listener, ManifestRun.Item item) {
       Channel<DownloadPacket> downloadChannel = null;
       ClientDownload download;
       LOGGER.debug("Establishing new channel for download: " + metadata);
       try {
-         downloadChannel = channelManager.establishNewChannel(DownloadPacket.class, CONNECTION_CLOSE_TIMEOUT);
-         LOGGER.debug("Download channel with id " + downloadChannel.getId() + " established.");
+         downloadChannel = establishDownloadChannel();
          download = processor.requestDownloadFrom(metadata, downloadChannel);
       } catch (IOException | ChannelDeclinedException | InterruptedException | TimeoutException e) {
          String errorMsg = "Error initializing download: " + metadata;
          LOGGER.error(errorMsg, e);
-         ui.showError("Downloadanfrage fehlgeschlagen.\n%s", e.getMessage());
+         processor.getMetrics()
+                  .requestFailed();
+         if (item == null)
+            ui.showError("Downloadanfrage fehlgeschlagen.\n%s", e.getMessage());
+         else
+            item.failed(e.getMessage());
          if (downloadChannel != null)
             close(downloadChannel);
-         return false;
+         return null;
       }
       if (download == null) {
          try {
@@ -189,21 +449,123 @@ public class MasterControlProgram implements ProcessorController,
          } catch (IllegalArgumentException | IOException e) {
             LOGGER.warn("Could not cancel download " + metadata, e);
          }
-         return false;
+         if (item != null)
+            item.failed("No target has been chosen");
+         return null;
       }
 
 //      ui.prepareDownload(metadata);
-      download.addListener(listener);
+      if (listener != null)
+         download.addListener(listener);
+      download.whenTerminated(this::releaseChannels);
       try {
-         processor.startDownload(downloadChannel, download);
-         return true;
+         processor.startDownload(download.getChannel(), download);
       } catch (IOException e) {
          String msg = "Error starting the download " + metadata;
          LOGGER.debug(msg, e);
-         ui.showError("Fehler beim Starten des Downloads vom Server");
-         close(downloadChannel);
-         return false;
+         processor.getMetrics()
+                  .requestFailed();
+         if (item == null)
+            ui.showError("Fehler beim Starten des Downloads vom Server");
+         else
+            item.failed(e.getMessage());
+         close(download.getChannel());
+         return null;
       }
+      if (item != null && download.isServed())
+         item.cached();
+      else if (item != null)
+         item.started(download);
+
+      return download;
+   }
+
+   /**
+    * Loads the downloads of the manifest with at most <code>window</code> downloads in flight
+    * and shows a summary at the end.
+    */
+   private void runManifest(File file, int window, File results) {
+      ManifestRun run = new ManifestRun(file, window, results);
+      long startNanos = System.nanoTime();
+      LOGGER.info("Loading the manifest " + file.getAbsolutePath() + " with a window of " + window + " downloads");
+      try {
+         run.run(this::loadManifestItem);
+      } catch (IOException e) {
+         String msg = "Error processing the manifest " + file.getAbsolutePath();
+         LOGGER.error(msg, e);
+         ui.showError(msg + "\n" + e.getMessage());
+      } catch (InterruptedException e) {
+         LOGGER.warn("Interrupted while loading the manifest " + file.getAbsolutePath());
+         run.cancel();
+         Thread.currentThread().interrupt();
+      }
+
+      double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+      LOGGER.info(String.format(Locale.ROOT, "%s finished in %.1f s. Results in %s", run, seconds, run.getResultsFile()));
+      String summary = String.format(Locale.ROOT,
+                                     "Manifest abgearbeitet in %.1f s: %d Downloads abgeschlossen, %d aus dem Cache, "
+                                     + "%d fehlgeschlagen, %d bereits erledigt. %d Bytes (%.0f Bytes/s). Ergebnisse in %s",
+                                     seconds,
+                                     run.getCompleteCount(),
+                                     run.getCachedCount(),
+                                     run.getFailedCount(),
+                                     run.getSkippedCount(),
+                                     run.getBytes(),
+                                     seconds > 0 ? run.getBytes() / seconds : 0,
+                                     run.getResultsFile().getPath());
+      if (run.getFailedCount() > 0)
+         ui.showError("%s", summary);
+      else
+         ui.show("%s", summary);
+   }
+
+   /**
+    * Schedules the download of a manifest item.
+    * While the connection to the server is being recovered, the download waits to be started,
+    * so the manifest does not run through its lines failing.
+    * A queued download waits on its own starter thread of the scheduler, so it does not hold back other starts.
+    */
+   private void loadManifestItem(ManifestRun.Item item) {
+      processor.schedule(item.getMetadata(), () -> {
+         if (!awaitConnection()) {
+            item.failed("Not connected to a server");
+            return null;
+         }
+         try {
+            return startDownload(item.getMetadata(), null, item);
+         } catch (RuntimeException e) {
+            item.failed(e.toString());
+            throw e;
+         }
+      });
+   }
+
+   /**
+    * Waits while the connection to the server is being recovered.
+    *
+    * @return <code>true</code> if connected to the server
+    */
+   private boolean awaitConnection() {
+      try {
+         while (connections.isEmpty() && isRecovering())
+            Thread.sleep(CONNECTION_POLL_INTERVAL);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+      return !connections.isEmpty();
+   }
+
+   private synchronized boolean isRecovering() {
+      return recovery != null && recovery.isAlive();
+   }
+
+   @Override
+   public DownloadBatch requestDownloadsFrom(Collection<DownloadMetadata> metadata, DownloadListener listener) {
+      LOGGER.debug("Requesting a batch of " + metadata.size() + " downloads.");
+      return processor.requestDownloadsFrom(metadata, download -> {
+         download.addListener(listener);
+         download.whenTerminated(this::releaseChannels);
+      });
    }
 
    @Override
@@ -216,10 +578,50 @@ public class MasterControlProgram implements ProcessorController,
       return processor.activeDownloadCount();
    }
 
+   @Override
+   public int queuedDownloadCount() {
+      return processor.queuedDownloadCount();
+   }
+
+   @Override
+   public int runningDownloadCount() {
+      return processor.runningDownloadCount();
+   }
+
+   @Override
+   public long finishedDownloadCount() {
+      return processor.finishedDownloadCount();
+   }
+
+   @Override
+   public long getRateLimit() {
+      return processor.getRateLimit();
+   }
+
+   @Override
+   public void setRateLimit(long bytesPerSecond) {
+      processor.setRateLimit(bytesPerSecond);
+   }
+
+   @Override
+   public int connectionCount() {
+      return connections.size();
+   }
+
+   @Override
+   public int activeChannelCount(int connection) {
+      return connections.getConnections()
+                        .get(connection)
+                        .getLoad();
+   }
+
    @Override
    public String getConnectionAsString() {
-      return connection.getAddress()
-                       .toString();
+      if (connections.size() == 1)
+         return connections.get(0).getAddress().toString();
+
+      return connections.getConnections()
+                        .toString();
    }
 
    @Override
@@ -227,7 +629,33 @@ public class MasterControlProgram implements ProcessorController,
       ui.setDownloadTargetTo(metadata);
    }
 
+   @Override
+   public Channel<DownloadPacket> establishDownloadChannel() throws IOException,
+                                                                    ChannelDeclinedException,
+                                                                    InterruptedException,
+                                                                    TimeoutException {
+      long start = System.nanoTime();
+      Channel<DownloadPacket> downloadChannel = connections.establishNewChannel(CONNECTION_CLOSE_TIMEOUT);
+      processor.getMetrics()
+               .getChannelSetup()
+               .recordSince(start);
+      LOGGER.debug("Download channel with id " + downloadChannel.getId() + " established.");
+      return downloadChannel;
+   }
+
+   @Override
+   public void closeDownloadChannel(Channel<DownloadPacket> channel) {
+      close(channel);
+   }
+
+   private void releaseChannels(ClientDownload download) {
+      connections.release(download.getChannel());
+      for (Channel<DownloadPacket> segmentChannel : download.getSegmentChannels())
+         connections.release(segmentChannel);
+   }
+
    private void close(Channel<?> channel) {
+      connections.release(channel);
       try {
          channel.close();
       } catch (IOException e) {
@@ -237,12 +665,90 @@ public class MasterControlProgram implements ProcessorController,
 
    @Override
    public void closed(Connection connection) {
-      if (stopping)
+      Set<Channel<?>> lost = connections.channelsOf(connection);
+      if (!connections.remove(connection) || stopping)
          return;
 
       LOGGER.debug("Connection to server " + connection.getAddress() + " closed.");
-      ui.alert("Verbindung zum Server verloren.");
-      ui.setConnected(false);
+      processor.detachDownloads(lost);
+      if (connections.isEmpty()) {
+         ui.alert("Verbindung zum Server verloren.");
+         ui.setConnected(false);
+      } else {
+         ui.show("Eine von mehreren Verbindungen zum Server wurde getrennt.");
+      }
+
+      if (reconnectAttempts == 0 || host == null)
+         processor.abortDetachedDownloads("Lost the connection to the server");
+      else
+         startRecovery();
+   }
+
+   private synchronized void startRecovery() {
+      if (isRecovering())
+         return;
+
+      this.recovery = new Thread(this::recover, "reconnect");
+      recovery.setDaemon(true);
+      recovery.start();
+   }
+
+   /**
+    * Reconnects to the server, if all the connections have been lost, replaces the lost connections of the pool,
+    * if only some of them have been lost, and resumes the interrupted downloads.
+    * Every further attempt waits twice as long as the previous one, up to {@link #RECONNECT_MAX_DELAY},
+    * with a random part, so clients, that lost the same server, do not return all at once.
+    * The interrupted downloads are aborted, if the attempts are exhausted.
+    * The client keeps working with the connections, that are left, if not all of them could be replaced.
+    */
+   private void recover() {
+      long delay = RECONNECT_INITIAL_DELAY;
+      for (int attempt = 1; attempt <= reconnectAttempts; attempt++) {
+         if (attempt > 1 || connections.isEmpty()) {
+            try {
+               Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+            } catch (InterruptedException e) {
+               LOGGER.debug("Interrupted while waiting to reconnect");
+               return;
+            }
+            delay = Math.min(delay * 2, RECONNECT_MAX_DELAY);
+         }
+         if (stopping)
+            return;
+
+         if (connections.isEmpty()) {
+            LOGGER.info(String.format("Reconnecting to %s:%s (attempt %s of %s)", host, port, attempt, reconnectAttempts));
+            ui.show("Verbinde erneut mit %s (Versuch %d von %d)", host, attempt, reconnectAttempts);
+            try {
+               connect(host, port);
+            } catch (IOException | ConnectionRefusedException e) {
+               LOGGER.warn("Reconnecting to " + host + ":" + port + " failed", e);
+               continue;
+            }
+            if (connections.isEmpty())
+               continue;
+         }
+
+         boolean complete = replaceLostConnections();
+         int remaining = processor.resumeDetachedDownloads();
+         if (remaining == 0 && complete)
+            return;
+
+         if (remaining > 0)
+            LOGGER.info(remaining + " download(s) could not be resumed yet");
+      }
+
+      if (stopping)
+         return;
+
+      if (connections.isEmpty()) {
+         ui.alertError("Verbindung zum Server konnte nicht wiederhergestellt werden.");
+      } else if (connections.size() < connectionCount) {
+         LOGGER.warn("Could not replace the lost connections. Continuing with "
+                     + connections.size() + " of " + connectionCount + " connection(s)");
+      }
+
+      processor.abortDetachedDownloads("Could not resume the download after the connection to the server has been lost");
    }
 
    @Override
@@ -256,15 +762,16 @@ public class MasterControlProgram implements ProcessorController,
       processor.close();
       ui.close();
 
-      boolean closeNecessary = connection != null
-                               && connection.getSocket().isConnected()
-                               && !connection.isClosed();
-      if (closeNecessary) {
-         try {
-            LOGGER.debug("Closing connection to " + connection.getAddress());
-            connection.close(CONNECTION_CLOSE_TIMEOUT);
-         } catch (IOException | InterruptedException e) {
-            LOGGER.warn("Error closing the connection " + connection.getAddress(), e);
+      for (Base64Connection connection : connections.clear()) {
+         boolean closeNecessary = connection.getSocket().isConnected()
+                                  && !connection.isClosed();
+         if (closeNecessary) {
+            try {
+               LOGGER.debug("Closing connection to " + connection.getAddress());
+               connection.close(CONNECTION_CLOSE_TIMEOUT);
+            } catch (IOException | InterruptedException e) {
+               LOGGER.warn("Error closing the connection " + connection.getAddress(), e);
+            }
          }
       }
 
@@ -1,6 +1,12 @@
 package de.dk.bininja.client.controller;
 
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
 import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.Channel;
+import de.dk.ch.ChannelDeclinedException;
 
 /**
  * @author David Koettlitz
@@ -8,4 +14,9 @@ import de.dk.bininja.client.model.DownloadMetadata;
  */
 public interface ProcessorController {
    public void setDownloadTargetTo(DownloadMetadata meta);
+   public Channel<DownloadPacket> establishDownloadChannel() throws IOException,
+                                                                    ChannelDeclinedException,
+                                                                    InterruptedException,
+                                                                    TimeoutException;
+   public void closeDownloadChannel(Channel<DownloadPacket> channel);
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package de.dk.bininja.client.controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.ui.cli.Cli;
+
+/**
+ * Executes the commands of a script on the command line interface.
+ * The script is read completely before its first command is entered.
+ * Download commands, that follow each other, are independent and are entered concurrently
+ * by up to <code>parallelism</code> threads, so their handshakes with the server overlap.
+ * Every other command, e.g. <code>connect</code> or <code>wait</code>, is a barrier:
+ * It is entered after all the commands before it have returned
+ * and the commands behind it are entered after it has returned.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+class ScriptRunner {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ScriptRunner.class);
+
+   /** The name of the command, that is entered concurrently with its neighbours of the same name. */
+   private static final String PARALLEL_COMMAND = "download";
+
+   private final Cli<?> cli;
+   private final int parallelism;
+
+   private final AtomicLong entered = new AtomicLong();
+   private final AtomicLong failed = new AtomicLong();
+
+   /**
+    * @param cli The command line interface to enter the commands into
+    * @param parallelism The maximum number of commands entered at the same time.
+    * 1 enters the commands one after another on the calling thread.
+    */
+   ScriptRunner(Cli<?> cli, int parallelism) {
+      if (parallelism <= 0)
+         throw new IllegalArgumentException("The parallelism must be positive: " + parallelism);
+
+      this.cli = cli;
+      this.parallelism = parallelism;
+   }
+
+   static List<String> read(File script) throws IOException {
+      List<String> lines = new ArrayList<>();
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(script)))) {
+         for (String line = in.readLine(); line != null; line = in.readLine())
+            lines.add(line);
+      }
+      return lines;
+   }
+
+   /**
+    * Enters the <code>commands</code> and returns after all of them have returned.
+    * Blank lines are skipped.
+    *
+    * @throws InterruptedException If the calling thread is interrupted while waiting for the commands
+    */
+   void run(List<String> commands) throws InterruptedException {
+      if (parallelism == 1) {
+         for (String command : commands) {
+            if (!command.trim().isEmpty())
+               enter(command);
+         }
+         return;
+      }
+
+      AtomicInteger threadCount = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+         Thread thread = new Thread(r, "script-" + threadCount.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      });
+      List<Future<?>> pending = new ArrayList<>();
+      try {
+         for (String command : commands) {
+            if (command.trim().isEmpty())
+               continue;
+
+            if (isParallel(command)) {
+               pending.add(executor.submit(() -> enter(command)));
+            } else {
+               await(pending);
+               enter(command);
+            }
+         }
+         await(pending);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private static boolean isParallel(String command) {
+      String trimmed = command.trim();
+      int end = trimmed.indexOf(' ');
+      String name = end < 0 ? trimmed : trimmed.substring(0, end);
+      return name.equalsIgnoreCase(PARALLEL_COMMAND);
+   }
+
+   private void enter(String command) {
+      entered.incrementAndGet();
+      try {
+         cli.enter(command);
+      } catch (RuntimeException e) {
+         failed.incrementAndGet();
+         LOGGER.error("Error executing the command \"" + command + "\"", e);
+      }
+   }
+
+   private static void await(List<Future<?>> pending) throws InterruptedException {
+      for (Future<?> future : pending) {
+         try {
+            future.get();
+         } catch (ExecutionException e) {
+            LOGGER.error("Error executing a command of the script", e.getCause());
+         }
+      }
+      pending.clear();
+   }
+
+   /**
+    * @return The number of commands, that have been entered
+    */
+   long getEnteredCount() {
+      return entered.get();
+   }
+
+   /**
+    * @return The number of commands, that threw an exception
+    */
+   long getFailedCount() {
+      return failed.get();
+   }
+}
@@ -0,0 +1,466 @@
+package de.dk.bininja.client.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local cache of downloaded files, that is keyed by the URL of a download.
+ * A cached file is served again, if the server announces the same length and validator for its URL.
+ * The protocol does not carry a modification date or an entity tag, so the validator is chosen by the caller,
+ * e.g. the expected checksum of a download or only the filename announced by the server.
+ * A weak validator like the filename does not notice, that the content of a file has changed on the server.
+ * That is why a cached file is not served anymore, once it is older than the maximum age (see {@link #setMaxAge(long)}).
+ * The size of the cache is capped by a quota. If a new file exceeds the quota,
+ * the files, that have been used least recently, are evicted.
+ * Every file is stored with a small entry file, so the cache survives a restart of the client.
+ * The last use of a file is the modification time of its entry file.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ContentCache {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ContentCache.class);
+
+   public static final long DEFAULT_QUOTA = 1024L * 1024 * 1024;
+   public static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+   private static final String DATA_SUFFIX = ".data";
+   private static final String ENTRY_SUFFIX = ".entry";
+   private static final String TEMP_SUFFIX = ".tmp";
+
+   private static final String KEY_URL = "url";
+   private static final String KEY_LENGTH = "length";
+   private static final String KEY_VALIDATOR = "validator";
+   private static final String KEY_STORED = "stored";
+
+   private final File directory;
+   private final long quota;
+   private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long size;
+   private boolean hardLinks;
+   /** The age in milliseconds, after which a cached file is not served anymore, or 0 if files never expire. */
+   private volatile long maxAge = DEFAULT_MAX_AGE;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong savedBytes = new AtomicLong();
+
+   private final ExecutorService storer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "content-cache");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   /**
+    * Opens the cache in the <code>directory</code> and loads the files, that have been cached before.
+    *
+    * @param directory The directory of the cache
+    * @param quota The maximum number of bytes of all the cached files
+    *
+    * @throws IOException If the directory could not be created
+    */
+   public ContentCache(File directory, long quota) throws IOException {
+      if (quota <= 0)
+         throw new IllegalArgumentException("The quota of the cache must be positive: " + quota);
+
+      this.directory = Objects.requireNonNull(directory);
+      this.quota = quota;
+      if (!directory.isDirectory() && !directory.mkdirs())
+         throw new IOException("Could not create the cache directory " + directory.getAbsolutePath());
+
+      load();
+   }
+
+   private synchronized void load() {
+      File[] files = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+      if (files == null)
+         return;
+
+      List<File> entryFiles = new ArrayList<>(files.length);
+      for (File file : files)
+         entryFiles.add(file);
+
+      entryFiles.sort(Comparator.comparingLong(File::lastModified));
+      for (File file : entryFiles) {
+         String key = file.getName().substring(0, file.getName().length() - ENTRY_SUFFIX.length());
+         CachedFile entry = read(key);
+         if (entry == null || dataOf(key).length() != entry.length) {
+            delete(key);
+            continue;
+         }
+         entries.put(key, entry);
+         size += entry.length;
+      }
+      evict();
+      LOGGER.info("Opened " + this);
+   }
+
+   private CachedFile read(String key) {
+      Properties properties = new Properties();
+      try (InputStream in = new FileInputStream(entryOf(key))) {
+         properties.load(in);
+         return new CachedFile(properties.getProperty(KEY_URL),
+                                Long.parseLong(properties.getProperty(KEY_LENGTH)),
+                                properties.getProperty(KEY_VALIDATOR, ""),
+                                Long.parseLong(properties.getProperty(KEY_STORED, "0")));
+      } catch (IOException | NumberFormatException | NullPointerException e) {
+         LOGGER.warn("Could not read the cache entry " + entryOf(key).getAbsolutePath(), e);
+         return null;
+      }
+   }
+
+   /**
+    * Serves the file of the <code>url</code> from the cache,
+    * if a file with the same <code>length</code> and <code>validator</code> is cached and has not expired.
+    * An expired file is removed from the cache. A cached file, whose length differs from its entry, has been modified, e.g. through a hard link,
+    * and is removed from the cache instead.
+    *
+    * @param url The url of the download
+    * @param length The length of the download announced by the server
+    * @param validator The validator announced by the server
+    * @param target The file to write the cached file to
+    *
+    * @return <code>true</code> if the file has been served from the cache
+    */
+   public boolean serve(URL url, long length, String validator, File target) {
+      return serve(url, length, validator, target, cached -> true);
+   }
+
+   /**
+    * Serves the file of the <code>url</code> from the cache like {@link #serve(URL, long, String, File)},
+    * if the cached file passes the <code>verifier</code>, e.g. because it has the expected checksum.
+    * A cached file, that does not pass, is removed from the cache.
+    *
+    * @param verifier Tests the cached file, before it is served. Called without holding the lock of the cache.
+    */
+   public boolean serve(URL url, long length, String validator, File target, Predicate<File> verifier) {
+      String key = keyOf(url);
+      CachedFile cached;
+      synchronized (this) {
+         CachedFile entry = entries.get(key);
+         if (entry == null || !entry.matches(url, length, validator)) {
+            misses.incrementAndGet();
+            return false;
+         }
+         if (entry.isExpired(maxAge)) {
+            LOGGER.debug("The cached file of " + url + " has expired. Removing it from the cache");
+            remove(key, entry);
+            misses.incrementAndGet();
+            return false;
+         }
+         if (dataOf(key).length() != entry.length) {
+            LOGGER.warn("The cached file of " + url + " has been modified. Removing it from the cache");
+            remove(key, entry);
+            misses.incrementAndGet();
+            return false;
+         }
+         if (!entryOf(key).setLastModified(System.currentTimeMillis()))
+            LOGGER.debug("Could not touch the cache entry of " + url);
+         cached = entry;
+      }
+
+      if (!verifier.test(dataOf(key))) {
+         LOGGER.warn("The cached file of " + url + " failed the verification. Removing it from the cache");
+         remove(key, cached);
+         misses.incrementAndGet();
+         return false;
+      }
+
+      try {
+         copy(dataOf(key), target);
+      } catch (NoSuchFileException e) {
+         LOGGER.debug("The cached file of " + url + " has been evicted meanwhile");
+         misses.incrementAndGet();
+         return false;
+      } catch (IOException e) {
+         LOGGER.warn("Could not serve " + url + " from the cache to " + target.getAbsolutePath(), e);
+         misses.incrementAndGet();
+         return false;
+      }
+
+      hits.incrementAndGet();
+      savedBytes.addAndGet(length);
+      LOGGER.info("Served " + url + " from the cache to " + target.getAbsolutePath());
+      return true;
+   }
+
+   private void copy(File cached, File target) throws IOException {
+      if (hardLinks) {
+         try {
+            Files.deleteIfExists(target.toPath());
+            Files.createLink(target.toPath(), cached.toPath());
+            return;
+         } catch (UnsupportedOperationException | IOException e) {
+            LOGGER.debug("Could not link " + target.getAbsolutePath() + " to the cache. Copying instead", e);
+         }
+      }
+      Files.copy(cached.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+   }
+
+   /**
+    * Stores a copy of the downloaded <code>file</code> in the cache.
+    * The file is copied by a thread of the cache, so this method returns immediately.
+    * Files, that are larger than the quota, are not stored.
+    *
+    * @param url The url of the download
+    * @param length The length of the download
+    * @param validator The validator announced by the server
+    * @param file The downloaded file
+    */
+   public void store(URL url, long length, String validator, File file) {
+      if (length < 0 || length > quota)
+         return;
+
+      try {
+         storer.execute(() -> doStore(url, length, validator, file));
+      } catch (RejectedExecutionException e) {
+         LOGGER.debug("The cache has been closed. Not storing " + url);
+      }
+   }
+
+   private void doStore(URL url, long length, String validator, File file) {
+      String key = keyOf(url);
+      File temp = new File(directory, key + TEMP_SUFFIX);
+      try {
+         Files.copy(file.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+         if (temp.length() != length) {
+            LOGGER.warn("Not caching " + url + ". The file " + file.getAbsolutePath() + " has changed meanwhile");
+            Files.deleteIfExists(temp.toPath());
+            return;
+         }
+
+         synchronized (this) {
+            CachedFile old = entries.remove(key);
+            if (old != null)
+               size -= old.length;
+
+            CachedFile entry = new CachedFile(url.toString(), length, validator, System.currentTimeMillis());
+            write(key, entry);
+            Files.move(temp.toPath(), dataOf(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            entries.put(key, entry);
+            size += length;
+            evict();
+         }
+         LOGGER.debug("Cached " + url);
+      } catch (IOException e) {
+         LOGGER.warn("Could not cache " + url, e);
+         temp.delete();
+         synchronized (this) {
+            if (!entries.containsKey(key))
+               delete(key);
+         }
+      }
+   }
+
+   private void write(String key, CachedFile entry) throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty(KEY_URL, entry.url);
+      properties.setProperty(KEY_LENGTH, Long.toString(entry.length));
+      properties.setProperty(KEY_VALIDATOR, entry.validator);
+      properties.setProperty(KEY_STORED, Long.toString(entry.stored));
+      try (OutputStream out = new FileOutputStream(entryOf(key))) {
+         properties.store(out, "BiNinja cache entry");
+      }
+   }
+
+   private void evict() {
+      Iterator<Map.Entry<String, CachedFile>> eldest = entries.entrySet().iterator();
+      while (size > quota && eldest.hasNext()) {
+         Map.Entry<String, CachedFile> evicted = eldest.next();
+         eldest.remove();
+         size -= evicted.getValue().length;
+         delete(evicted.getKey());
+         LOGGER.debug("Evicted " + evicted.getValue().url + " from the cache");
+      }
+   }
+
+   /**
+    * Removes the <code>entry</code> from the cache, unless it has been replaced or evicted meanwhile.
+    */
+   private synchronized void remove(String key, CachedFile entry) {
+      if (entries.get(key) != entry)
+         return;
+
+      entries.remove(key);
+      size -= entry.length;
+      delete(key);
+   }
+
+   private void delete(String key) {
+      File data = dataOf(key);
+      File entry = entryOf(key);
+      if (data.exists() && !data.delete())
+         LOGGER.warn("Could not delete the cached file " + data.getAbsolutePath());
+      if (entry.exists() && !entry.delete())
+         LOGGER.warn("Could not delete the cache entry " + entry.getAbsolutePath());
+   }
+
+   private File dataOf(String key) {
+      return new File(directory, key + DATA_SUFFIX);
+   }
+
+   private File entryOf(String key) {
+      return new File(directory, key + ENTRY_SUFFIX);
+   }
+
+   private static String keyOf(URL url) {
+      try {
+         byte[] hash = MessageDigest.getInstance("SHA-256")
+                                    .digest(url.toString().getBytes(StandardCharsets.UTF_8));
+         StringBuilder key = new StringBuilder(hash.length * 2);
+         for (byte b : hash)
+            key.append(String.format("%02x", b));
+
+         return key.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException("SHA-256 is not available", e);
+      }
+   }
+
+   /**
+    * Finishes storing the files, that are being cached, and closes the cache.
+    */
+   public void close() {
+      storer.shutdown();
+      LOGGER.info("Closed " + this);
+   }
+
+   /**
+    * Sets whether a cached file is served by a hard link to the cache instead of a copy, if the file system allows it.
+    * Only enable hard links, if the served files are never modified in place,
+    * because a modification would corrupt the cached file.
+    * A download replaces an existing target instead of truncating it, so downloading a served file again is safe.
+    */
+   public void setHardLinks(boolean hardLinks) {
+      this.hardLinks = hardLinks;
+   }
+
+   public boolean isHardLinks() {
+      return hardLinks;
+   }
+
+   /**
+    * Sets the age, after which a cached file is not served anymore, but loaded from the server again.
+    * This limits how long a file, whose content has changed on the server without changing its length or validator,
+    * is served stale.
+    *
+    * @param maxAge The maximum age in milliseconds since the file has been stored or 0 to never expire
+    */
+   public void setMaxAge(long maxAge) {
+      if (maxAge < 0)
+         throw new IllegalArgumentException("The maximum age must not be negative: " + maxAge);
+
+      this.maxAge = maxAge;
+   }
+
+   public long getMaxAge() {
+      return maxAge;
+   }
+
+   public File getDirectory() {
+      return directory;
+   }
+
+   public long getQuota() {
+      return quota;
+   }
+
+   public synchronized long getSize() {
+      return size;
+   }
+
+   public synchronized int getCount() {
+      return entries.size();
+   }
+
+   public long getHits() {
+      return hits.get();
+   }
+
+   public long getMisses() {
+      return misses.get();
+   }
+
+   /**
+    * @return The ratio of the lookups, that have been served from the cache
+    */
+   public double getHitRatio() {
+      long hits = this.hits.get();
+      long lookups = hits + misses.get();
+      return lookups == 0 ? 0 : (double) hits / lookups;
+   }
+
+   /**
+    * @return The number of bytes, that have been served from the cache instead of being downloaded
+    */
+   public long getSavedBytes() {
+      return savedBytes.get();
+   }
+
+   @Override
+   public String toString() {
+      return String.format("ContentCache { directory=%s, files=%d, size=%d of %d bytes, hits=%d, misses=%d, "
+                           + "hit ratio=%.2f, saved=%d bytes }",
+                           directory.getAbsolutePath(),
+                           getCount(),
+                           getSize(),
+                           quota,
+                           getHits(),
+                           getMisses(),
+                           getHitRatio(),
+                           getSavedBytes());
+   }
+
+   private static class CachedFile {
+      private final String url;
+      private final long length;
+      private final String validator;
+      /** When the file has been stored in milliseconds since the epoch. */
+      private final long stored;
+
+      private CachedFile(String url, long length, String validator, long stored) {
+         this.url = url;
+         this.length = length;
+         this.validator = validator == null ? "" : validator;
+         this.stored = stored;
+      }
+
+      private boolean isExpired(long maxAge) {
+         return maxAge > 0 && System.currentTimeMillis() - stored > maxAge;
+      }
+
+      private boolean matches(URL url, long length, String validator) {
+         return this.url.equals(url.toString())
+                && this.length == length
+                && this.validator.equals(validator == null ? "" : validator);
+      }
+   }
+}
@@ -0,0 +1,246 @@
+package de.dk.bininja.client.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.net.DownloadState;
+
+/**
+ * A handle to a batch of downloads, that have been requested at once.
+ * Provides the aggregate progress of the batch and the result of every single download.
+ * The downloads are requested in waves. The channels of a wave are established
+ * and the headers requested at once, the targets resolved in one pass and the downloads started together.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadBatch {
+   private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+
+   private final int id;
+   private final List<Item> items;
+   private final CountDownLatch remaining;
+   private volatile boolean cancelled;
+
+   DownloadBatch(Collection<DownloadMetadata> metadata) {
+      this.id = ID_COUNTER.getAndIncrement();
+      List<Item> items = new ArrayList<>(metadata.size());
+      for (DownloadMetadata m : metadata)
+         items.add(new Item(m));
+
+      items.sort(Comparator.comparingInt((Item item) -> item.getMetadata().getPriority()).reversed());
+      this.items = Collections.unmodifiableList(items);
+      this.remaining = new CountDownLatch(items.size());
+   }
+
+   void started(Item item, ClientDownload download) {
+      item.download = download;
+      item.state = ItemState.RUNNING;
+      download.whenTerminated(d -> terminated(item, d));
+      if (cancelled)
+         download.cancel();
+   }
+
+   private void terminated(Item item, ClientDownload download) {
+      DownloadState state = download.getDownloadState();
+      if (state == DownloadState.COMPLETE) {
+         finish(item, ItemState.COMPLETE, null);
+      } else if (state == DownloadState.CANCELLED) {
+         finish(item, ItemState.CANCELLED, null);
+      } else {
+         String error = download.getException() != null ? download.getException().getMessage()
+                                                        : download.getBreakUpMessage();
+         finish(item, ItemState.FAILED, error);
+      }
+   }
+
+   void failed(Item item, String error) {
+      finish(item, ItemState.FAILED, error);
+   }
+
+   void cancelled(Item item) {
+      finish(item, ItemState.CANCELLED, null);
+   }
+
+   void cached(Item item) {
+      finish(item, ItemState.COMPLETE, null);
+   }
+
+   private void finish(Item item, ItemState state, String error) {
+      synchronized (item) {
+         if (item.state.isFinal())
+            return;
+
+         item.error = error;
+         item.state = state;
+      }
+      remaining.countDown();
+   }
+
+   /**
+    * Marks all the items, that have not been requested yet, as cancelled.
+    */
+   void cancelPending() {
+      for (Item item : items) {
+         if (item.state == ItemState.PENDING)
+            cancelled(item);
+      }
+   }
+
+   /**
+    * Cancels all the downloads of this batch. Items, that have not been requested yet, are not requested anymore.
+    */
+   public void cancel() {
+      cancelled = true;
+      for (Item item : items) {
+         ClientDownload download = item.download;
+         if (download != null)
+            download.cancel();
+      }
+   }
+
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   /**
+    * Blocks until every download of this batch has terminated.
+    */
+   public void waitFor() throws InterruptedException {
+      remaining.await();
+   }
+
+   public boolean isDone() {
+      return remaining.getCount() == 0;
+   }
+
+   public List<Item> getItems() {
+      return items;
+   }
+
+   public int count(ItemState state) {
+      int count = 0;
+      for (Item item : items) {
+         if (item.state == state)
+            count++;
+      }
+      return count;
+   }
+
+   /**
+    * @return The sum of the lengths of all the downloads, whose length is known yet
+    */
+   public long getTotalLength() {
+      long total = 0;
+      for (Item item : items) {
+         if (item.download != null && item.getMetadata().getLength() > 0)
+            total += item.getMetadata().getLength();
+      }
+      return total;
+   }
+
+   /**
+    * @return The number of bytes of all the downloads, that are on the disk already
+    */
+   public long getLoadedBytes() {
+      long loaded = 0;
+      for (Item item : items) {
+         ClientDownload download = item.download;
+         if (download != null && item.getMetadata().getLength() > 0)
+            loaded += download.getOffset() + download.getWrittenBytes();
+         else if (download == null && item.state == ItemState.COMPLETE)
+            loaded += item.getMetadata().getLength();
+      }
+      return loaded;
+   }
+
+   /**
+    * @return The fraction of the bytes, that are loaded, of all the downloads, that have been started
+    */
+   public double getProgress() {
+      long total = getTotalLength();
+      return total == 0 ? 0 : (double) getLoadedBytes() / total;
+   }
+
+   public int getId() {
+      return id;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadBatch { id=" + id
+             + ", items=" + items.size()
+             + ", complete=" + count(ItemState.COMPLETE)
+             + ", failed=" + count(ItemState.FAILED)
+             + ", cancelled=" + count(ItemState.CANCELLED)
+             + " }";
+   }
+
+   public static enum ItemState {
+      PENDING,
+      REQUESTING,
+      RUNNING,
+      COMPLETE,
+      FAILED,
+      CANCELLED;
+
+      public boolean isFinal() {
+         return this == COMPLETE || this == FAILED || this == CANCELLED;
+      }
+   }
+
+   /**
+    * A single download of a batch.
+    */
+   public static class Item {
+      private final DownloadMetadata metadata;
+      private volatile ItemState state = ItemState.PENDING;
+      private volatile ClientDownload download;
+      private volatile String error;
+
+      private Item(DownloadMetadata metadata) {
+         this.metadata = metadata;
+      }
+
+      public DownloadMetadata getMetadata() {
+         return metadata;
+      }
+
+      public ItemState getState() {
+         return state;
+      }
+
+      void setState(ItemState state) {
+         this.state = state;
+      }
+
+      /**
+       * @return The download or <code>null</code> if it has not been started
+       */
+      public ClientDownload getDownload() {
+         return download;
+      }
+
+      /**
+       * @return The message of the error, the download failed with or <code>null</code>
+       */
+      public String getError() {
+         return error;
+      }
+
+      @Override
+      public String toString() {
+         return "Item { url=" + metadata.getUrl()
+                + ", state=" + state
+                + (error == null ? "" : ", error=" + error)
+                + " }";
+      }
+   }
+}
@@ -0,0 +1,381 @@
+package de.dk.bininja.client.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.net.DownloadState;
+
+/**
+ * Collects the runtime metrics of the downloads:
+ * The throughput of every download and of all the downloads together,
+ * the depth of the receive queues, the latency of the writes to the disk,
+ * the round trip time of the download headers, the time to establish a channel
+ * and the bytes received over the wire compared to the bytes written to the disk.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadMetrics implements DownloadMetricsMBean {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadMetrics.class);
+
+   public static final String OBJECT_NAME = "de.dk.bininja.client:type=DownloadMetrics";
+
+   private static final long THROUGHPUT_WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+   private final LatencyHistogram writeLatency = new LatencyHistogram();
+   private final LatencyHistogram headerRoundTrip = new LatencyHistogram();
+   private final LatencyHistogram channelSetup = new LatencyHistogram();
+   private final LatencyHistogram connectionSetup = new LatencyHistogram();
+   private final LatencyHistogram keyArrangement = new LatencyHistogram();
+
+   private final Map<ClientDownload, Tracked> active = new ConcurrentHashMap<>();
+   private final AtomicLong finished = new AtomicLong();
+   private final AtomicLong failed = new AtomicLong();
+   private final AtomicLong failedRequests = new AtomicLong();
+   private final AtomicLong finishedWireBytes = new AtomicLong();
+   private final AtomicLong finishedWrittenBytes = new AtomicLong();
+   /** The {@link System#nanoTime()} of the first write of any download or 0. */
+   private final AtomicLong firstWriteNanos = new AtomicLong();
+
+   private long sampleNanos = System.nanoTime();
+   private long sampleBytes;
+   private double throughput;
+
+   private volatile ContentCache contentCache;
+   private ObjectName objectName;
+   /** Set by {@link #unregisterMBean()}, so a registration in the background, that comes late, is skipped. */
+   private boolean unregistered;
+
+   public DownloadMetrics() {
+
+   }
+
+   /**
+    * Tracks the download until it has terminated.
+    * Has to be called before the download is started.
+    */
+   public void track(DownloadMetadata metadata, ClientDownload download) {
+      active.put(download, new Tracked(metadata, download));
+      download.setWriteLatencyRecorder(this::recordWrite);
+      download.whenTerminated(this::untrack);
+   }
+
+   private void recordWrite(long nanos) {
+      writeLatency.record(nanos);
+      if (firstWriteNanos.get() == 0)
+         firstWriteNanos.compareAndSet(0, System.nanoTime());
+   }
+
+   private void untrack(ClientDownload download) {
+      if (active.remove(download) == null)
+         return;
+
+      finishedWireBytes.addAndGet(download.getTransferredBytes());
+      finishedWrittenBytes.addAndGet(download.getWrittenBytes());
+      finished.incrementAndGet();
+      if (download.getDownloadState() == DownloadState.ERROR)
+         failed.incrementAndGet();
+   }
+
+   /**
+    * Counts a download, that could not be requested or started, so it has never been tracked.
+    */
+   public void requestFailed() {
+      failedRequests.incrementAndGet();
+   }
+
+   /**
+    * @return The {@link System#nanoTime()} of the first write of any download
+    * or 0 if no download has written anything yet
+    */
+   public long getFirstWriteNanos() {
+      return firstWriteNanos.get();
+   }
+
+   /**
+    * Registers these metrics at the platform MBean server.
+    */
+   public synchronized void registerMBean() {
+      if (objectName != null || unregistered)
+         return;
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+         ObjectName name = new ObjectName(OBJECT_NAME);
+         server.registerMBean(this, name);
+         this.objectName = name;
+         LOGGER.debug("Registered the download metrics as " + name);
+      } catch (JMException e) {
+         LOGGER.warn("Could not register the download metrics at the MBean server", e);
+      }
+   }
+
+   /**
+    * Registers these metrics at the platform MBean server on a background thread.
+    * The platform MBean server is expensive to create, so this keeps it out of the startup.
+    */
+   public void registerMBeanInBackground() {
+      Thread thread = new Thread(this::registerMBean, "metrics-registration");
+      thread.setDaemon(true);
+      thread.start();
+   }
+
+   public synchronized void unregisterMBean() {
+      this.unregistered = true;
+      if (objectName == null)
+         return;
+
+      try {
+         ManagementFactory.getPlatformMBeanServer()
+                          .unregisterMBean(objectName);
+      } catch (JMException e) {
+         LOGGER.warn("Could not unregister the download metrics from the MBean server", e);
+      }
+      objectName = null;
+   }
+
+   /**
+    * @return The histogram of the durations of the writes to the disk
+    */
+   public LatencyHistogram getWriteLatency() {
+      return writeLatency;
+   }
+
+   /**
+    * @return The histogram of the durations from sending a download request until receiving its header
+    */
+   public LatencyHistogram getHeaderRoundTrip() {
+      return headerRoundTrip;
+   }
+
+   /**
+    * @return The histogram of the durations to establish a download channel
+    */
+   public LatencyHistogram getChannelSetup() {
+      return channelSetup;
+   }
+
+   /**
+    * @return The histogram of the durations to establish a connection to the server including the handshake
+    */
+   public LatencyHistogram getConnectionSetup() {
+      return connectionSetup;
+   }
+
+   /**
+    * @return The histogram of the durations of the session key arrangements of secure connections
+    */
+   public LatencyHistogram getKeyArrangement() {
+      return keyArrangement;
+   }
+
+   public Collection<Tracked> getTrackedDownloads() {
+      return new ArrayList<>(active.values());
+   }
+
+   @Override
+   public int getActiveDownloads() {
+      return active.size();
+   }
+
+   @Override
+   public long getFinishedDownloads() {
+      return finished.get();
+   }
+
+   /**
+    * @return The number of finished downloads, that terminated with an error
+    */
+   @Override
+   public long getFailedDownloads() {
+      return failed.get();
+   }
+
+   @Override
+   public long getFailedRequests() {
+      return failedRequests.get();
+   }
+
+   @Override
+   public int getQueueDepth() {
+      int depth = 0;
+      for (ClientDownload download : active.keySet())
+         depth += download.getQueueDepth();
+
+      return depth;
+   }
+
+   @Override
+   public long getWireBytes() {
+      long bytes = finishedWireBytes.get();
+      for (ClientDownload download : active.keySet())
+         bytes += download.getTransferredBytes();
+
+      return bytes;
+   }
+
+   @Override
+   public long getWrittenBytes() {
+      long bytes = finishedWrittenBytes.get();
+      for (ClientDownload download : active.keySet())
+         bytes += download.getWrittenBytes();
+
+      return bytes;
+   }
+
+   /**
+    * @return The number of bytes per second, that all the downloads together have written
+    * during the last sampling window of at least a second
+    */
+   @Override
+   public synchronized double getThroughput() {
+      long now = System.nanoTime();
+      long elapsed = now - sampleNanos;
+      if (elapsed >= THROUGHPUT_WINDOW) {
+         long bytes = getWrittenBytes();
+         this.throughput = (bytes - sampleBytes) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+         this.sampleBytes = bytes;
+         this.sampleNanos = now;
+      }
+      return throughput;
+   }
+
+   @Override
+   public double getWriteLatencyMedian() {
+      return LatencyHistogram.toMillis(writeLatency.percentile(50));
+   }
+
+   @Override
+   public double getWriteLatency99thPercentile() {
+      return LatencyHistogram.toMillis(writeLatency.percentile(99));
+   }
+
+   @Override
+   public double getHeaderRoundTripMedian() {
+      return LatencyHistogram.toMillis(headerRoundTrip.percentile(50));
+   }
+
+   @Override
+   public double getHeaderRoundTrip99thPercentile() {
+      return LatencyHistogram.toMillis(headerRoundTrip.percentile(99));
+   }
+
+   @Override
+   public double getChannelSetupMedian() {
+      return LatencyHistogram.toMillis(channelSetup.percentile(50));
+   }
+
+   @Override
+   public double getChannelSetup99thPercentile() {
+      return LatencyHistogram.toMillis(channelSetup.percentile(99));
+   }
+
+   @Override
+   public double getConnectionSetupMedian() {
+      return LatencyHistogram.toMillis(connectionSetup.percentile(50));
+   }
+
+   @Override
+   public double getConnectionSetup99thPercentile() {
+      return LatencyHistogram.toMillis(connectionSetup.percentile(99));
+   }
+
+   @Override
+   public double getKeyArrangementMedian() {
+      return LatencyHistogram.toMillis(keyArrangement.percentile(50));
+   }
+
+   @Override
+   public double getKeyArrangement99thPercentile() {
+      return LatencyHistogram.toMillis(keyArrangement.percentile(99));
+   }
+
+   @Override
+   public double getCacheHitRatio() {
+      ContentCache cache = this.contentCache;
+      return cache == null ? 0 : cache.getHitRatio();
+   }
+
+   @Override
+   public long getCacheSavedBytes() {
+      ContentCache cache = this.contentCache;
+      return cache == null ? 0 : cache.getSavedBytes();
+   }
+
+   public ContentCache getContentCache() {
+      return contentCache;
+   }
+
+   /**
+    * Sets the cache, whose hit ratio and saved bytes are reported.
+    */
+   public void setContentCache(ContentCache contentCache) {
+      this.contentCache = contentCache;
+   }
+
+   @Override
+   public String[] getDownloadSummaries() {
+      List<String> summaries = new ArrayList<>(active.size());
+      for (Tracked tracked : active.values())
+         summaries.add(tracked.toString());
+
+      return summaries.toArray(new String[summaries.size()]);
+   }
+
+   /**
+    * A download, that is tracked by the metrics.
+    */
+   public static class Tracked {
+      private final DownloadMetadata metadata;
+      private final ClientDownload download;
+      private final long startNanos = System.nanoTime();
+
+      private Tracked(DownloadMetadata metadata, ClientDownload download) {
+         this.metadata = metadata;
+         this.download = download;
+      }
+
+      /**
+       * @return The mean number of bytes per second, that the download has written since it has been started
+       */
+      public double getThroughput() {
+         long elapsed = System.nanoTime() - startNanos;
+         return elapsed <= 0 ? 0 : download.getWrittenBytes() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      }
+
+      public DownloadMetadata getMetadata() {
+         return metadata;
+      }
+
+      public ClientDownload getDownload() {
+         return download;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%d %s: %d/%d bytes, %.0f bytes/s, %d bytes on the wire, %d queued",
+                              metadata.getId(),
+                              metadata.getUrl(),
+                              download.getOffset() + download.getWrittenBytes(),
+                              metadata.getLength(),
+                              getThroughput(),
+                              download.getTransferredBytes(),
+                              download.getQueueDepth());
+      }
+   }
+}
@@ -0,0 +1,32 @@
+package de.dk.bininja.client.core;
+
+/**
+ * The JMX view of the {@link DownloadMetrics}.
+ * All the durations are in milliseconds, all the rates in bytes per second.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public interface DownloadMetricsMBean {
+   public int getActiveDownloads();
+   public long getFinishedDownloads();
+   public long getFailedDownloads();
+   public long getFailedRequests();
+   public int getQueueDepth();
+   public long getWireBytes();
+   public long getWrittenBytes();
+   public double getThroughput();
+   public double getWriteLatencyMedian();
+   public double getWriteLatency99thPercentile();
+   public double getHeaderRoundTripMedian();
+   public double getHeaderRoundTrip99thPercentile();
+   public double getChannelSetupMedian();
+   public double getChannelSetup99thPercentile();
+   public double getConnectionSetupMedian();
+   public double getConnectionSetup99thPercentile();
+   public double getKeyArrangementMedian();
+   public double getKeyArrangement99thPercentile();
+   public double getCacheHitRatio();
+   public long getCacheSavedBytes();
+   public String[] getDownloadSummaries();
+}
@@ -0,0 +1,259 @@
+package de.dk.bininja.client.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.client.net.ClientDownload;
+
+/**
+ * Admits downloads up to a maximum number of concurrently running downloads.
+ * Every download, that exceeds this number, is held in a queue until a running download terminates.
+ * Queued downloads with a higher priority are admitted first,
+ * downloads with the same priority in the order they were submitted.
+ * A download is admitted before its channel is established,
+ * so queued downloads do not occupy any channel or resource on the server.
+ * The admitted downloads are started concurrently by the starter threads of this scheduler,
+ * so a download, that takes long to start, does not hold back the others.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadScheduler {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadScheduler.class);
+
+   public static final int DEFAULT_MAX_RUNNING = 8;
+
+   private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+   private final AtomicInteger starterCount = new AtomicInteger();
+   /** Starts the admitted downloads. Never runs more starts than the maximum of running downloads. */
+   private final ExecutorService starters = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "download-starter-" + starterCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private int maxRunning;
+   private int running;
+   private long finished;
+   private long sequence;
+
+   public DownloadScheduler(int maxRunning) {
+      setMaxRunning(maxRunning);
+   }
+
+   public DownloadScheduler() {
+      this(DEFAULT_MAX_RUNNING);
+   }
+
+   /**
+    * Submits a download to this scheduler.
+    * If the maximum number of running downloads is not reached yet,
+    * the download is started immediately by the calling thread.
+    * Otherwise it is queued and started later by a starter thread of this scheduler.
+    *
+    * @param priority The priority of the download, higher priorities are admitted first
+    * @param starter Starts the download
+    *
+    * @return <code>false</code> if the download was started immediately and could not be started,
+    * <code>true</code> otherwise
+    */
+   public boolean submit(int priority, DownloadStarter starter) {
+      synchronized (this) {
+         if (running >= maxRunning) {
+            LOGGER.debug("Maximum of " + maxRunning + " running downloads reached. Queueing the download.");
+            queue.add(new Entry(priority, sequence++, starter));
+            return true;
+         }
+         running++;
+      }
+      return launch(starter);
+   }
+
+   /**
+    * Blocks until no download is queued and less than the maximum of downloads are running.
+    * Then reserves up to <code>max</code> of the free slots at once, so no other download can take them,
+    * before the downloads of the caller are started by {@link #startReserved(DownloadStarter)}.
+    * Every reserved slot, that is not used, has to be given back by {@link #cancelReservation(int)}.
+    *
+    * @param max The maximum number of slots to reserve
+    *
+    * @return The number of slots, that have been reserved, at least 1
+    */
+   public synchronized int reserveSlots(int max) throws InterruptedException {
+      if (max < 1)
+         throw new IllegalArgumentException("At least one slot has to be reserved: " + max);
+
+      while (running >= maxRunning || !queue.isEmpty())
+         wait();
+
+      int reserved = Math.min(max, maxRunning - running);
+      running += reserved;
+      return reserved;
+   }
+
+   /**
+    * Starts a download in a slot, that has been reserved by {@link #reserveSlots(int)}, by the calling thread.
+    *
+    * @return <code>false</code> if the download could not be started
+    */
+   public boolean startReserved(DownloadStarter starter) {
+      return launch(starter);
+   }
+
+   /**
+    * Gives back reserved slots, that have not been used to start a download.
+    * Queued downloads are admitted in these slots.
+    */
+   public void cancelReservation(int slots) {
+      synchronized (this) {
+         running -= slots;
+      }
+      admit();
+   }
+
+   private boolean launch(DownloadStarter starter) {
+      ClientDownload download;
+      try {
+         download = starter.start();
+      } catch (RuntimeException e) {
+         LOGGER.error("Error starting a scheduled download", e);
+         download = null;
+      }
+
+      if (download == null) {
+         terminated();
+         return false;
+      }
+
+      download.whenTerminated(d -> terminated());
+      return true;
+   }
+
+   private void terminated() {
+      synchronized (this) {
+         running--;
+         finished++;
+         notifyAll();
+      }
+      admit();
+   }
+
+   private void admit() {
+      List<Entry> admitted = new ArrayList<>();
+      synchronized (this) {
+         while (running < maxRunning && !queue.isEmpty()) {
+            admitted.add(queue.poll());
+            running++;
+         }
+         notifyAll();
+      }
+      for (Entry entry : admitted) {
+         try {
+            starters.execute(() -> launch(entry.starter));
+         } catch (RejectedExecutionException e) {
+            LOGGER.debug("The scheduler has been closed. Dropping an admitted download.");
+            synchronized (this) {
+               running--;
+               notifyAll();
+            }
+         }
+      }
+   }
+
+   /**
+    * Removes all the queued downloads, that have not been started yet.
+    *
+    * @return The number of downloads removed
+    */
+   public synchronized int clearQueue() {
+      int count = queue.size();
+      queue.clear();
+      notifyAll();
+      return count;
+   }
+
+   /**
+    * Blocks until no download is queued or running anymore.
+    */
+   public synchronized void awaitIdle() throws InterruptedException {
+      while (running > 0 || !queue.isEmpty())
+         wait();
+   }
+
+   public synchronized int getMaxRunning() {
+      return maxRunning;
+   }
+
+   /**
+    * Sets the maximum number of downloads, that may run at the same time.
+    * If the maximum is raised, queued downloads are admitted immediately.
+    */
+   public void setMaxRunning(int maxRunning) {
+      if (maxRunning < 1)
+         throw new IllegalArgumentException("The maximum of running downloads must be positive: " + maxRunning);
+
+      synchronized (this) {
+         this.maxRunning = maxRunning;
+      }
+      admit();
+   }
+
+   public synchronized int getQueuedCount() {
+      return queue.size();
+   }
+
+   public synchronized int getRunningCount() {
+      return running;
+   }
+
+   /**
+    * @return The number of admitted downloads, that have terminated or could not be started
+    */
+   public synchronized long getFinishedCount() {
+      return finished;
+   }
+
+   public void close() {
+      clearQueue();
+      starters.shutdownNow();
+   }
+
+   /**
+    * Starts a download, that has been admitted by the scheduler.
+    */
+   @FunctionalInterface
+   public static interface DownloadStarter {
+      /**
+       * @return The started download or <code>null</code> if the download could not be started
+       */
+      public ClientDownload start();
+   }
+
+   private static class Entry implements Comparable<Entry> {
+      private final int priority;
+      private final long sequence;
+      private final DownloadStarter starter;
+
+      private Entry(int priority, long sequence, DownloadStarter starter) {
+         this.priority = priority;
+         this.sequence = sequence;
+         this.starter = starter;
+      }
+
+      @Override
+      public int compareTo(Entry other) {
+         if (priority != other.priority)
+            return Integer.compare(other.priority, priority);
+
+         return Long.compare(sequence, other.sequence);
+      }
+   }
+}
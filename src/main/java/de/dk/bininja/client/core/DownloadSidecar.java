@@ -0,0 +1,146 @@
+package de.dk.bininja.client.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small file next to a download target, that records where the target is downloaded from
+ * and how long it will be. As long as the sidecar exists the target is an incomplete download.
+ * If the target has been written from start to end, it can be resumed from its current length.
+ * A target, that is written in segments, has its final length from the start and is not resumable.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadSidecar {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadSidecar.class);
+
+   public static final String SUFFIX = ".bininja";
+
+   private static final String KEY_URL = "url";
+   private static final String KEY_LENGTH = "length";
+   private static final String KEY_RESUMABLE = "resumable";
+
+   private final File target;
+   private final URL url;
+   private final long length;
+   private final boolean resumable;
+
+   public DownloadSidecar(File target, URL url, long length, boolean resumable) {
+      this.target = Objects.requireNonNull(target);
+      this.url = Objects.requireNonNull(url);
+      this.length = length;
+      this.resumable = resumable;
+   }
+
+   public DownloadSidecar(File target, URL url, long length) {
+      this(target, url, length, true);
+   }
+
+   public static File fileOf(File target) {
+      return new File(target.getParentFile(), target.getName() + SUFFIX);
+   }
+
+   /**
+    * Reads the sidecar of the <code>target</code>.
+    *
+    * @param target The download target
+    *
+    * @return The sidecar or <code>null</code> if the target has no readable sidecar
+    */
+   public static DownloadSidecar read(File target) {
+      File file = fileOf(target);
+      if (!file.isFile())
+         return null;
+
+      Properties properties = new Properties();
+      try (InputStream in = new FileInputStream(file)) {
+         properties.load(in);
+         URL url = new URL(properties.getProperty(KEY_URL));
+         long length = Long.parseLong(properties.getProperty(KEY_LENGTH));
+         boolean resumable = Boolean.parseBoolean(properties.getProperty(KEY_RESUMABLE, "true"));
+         return new DownloadSidecar(target, url, length, resumable);
+      } catch (IOException | NumberFormatException e) {
+         LOGGER.warn("Could not read the sidecar " + file.getAbsolutePath(), e);
+         return null;
+      }
+   }
+
+   /**
+    * Finds the partial download of <code>url</code> at <code>target</code>.
+    *
+    * @param target The download target
+    * @param url The url, that the target is downloaded from
+    *
+    * @return The sidecar of the partial download or <code>null</code>
+    * if there is no partial download of the url, that could be resumed.
+    * A target, that has its full length already, is not partial,
+    * e.g. because its download failed the checksum after all of its data had been written.
+    */
+   public static DownloadSidecar findPartial(File target, URL url) {
+      DownloadSidecar sidecar = read(target);
+      if (sidecar == null || !sidecar.isResumable() || !sidecar.getUrl().toString().equals(url.toString()))
+         return null;
+
+      long written = target.length();
+      if (written <= 0 || written >= sidecar.getLength())
+         return null;
+
+      return sidecar;
+   }
+
+   public void write() throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty(KEY_URL, url.toString());
+      properties.setProperty(KEY_LENGTH, Long.toString(length));
+      properties.setProperty(KEY_RESUMABLE, Boolean.toString(resumable));
+      try (OutputStream out = new FileOutputStream(fileOf(target))) {
+         properties.store(out, "Incomplete BiNinja download of " + target.getName());
+      }
+   }
+
+   public void delete() {
+      File file = fileOf(target);
+      if (file.exists() && !file.delete())
+         LOGGER.warn("Could not delete the sidecar " + file.getAbsolutePath());
+   }
+
+   public boolean matches(URL url, long length) {
+      return this.url.toString().equals(url.toString()) && this.length == length;
+   }
+
+   public File getTarget() {
+      return target;
+   }
+
+   public URL getUrl() {
+      return url;
+   }
+
+   public long getLength() {
+      return length;
+   }
+
+   public boolean isResumable() {
+      return resumable;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadSidecar { target=" + target
+             + ", url=" + url
+             + ", length=" + length
+             + ", resumable=" + resumable
+             + " }";
+   }
+}
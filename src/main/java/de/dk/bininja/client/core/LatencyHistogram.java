@@ -0,0 +1,110 @@
+package de.dk.bininja.client.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations in nanoseconds.
+ * The durations are counted in buckets of powers of two,
+ * so a percentile is accurate up to a factor of two.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class LatencyHistogram {
+   private static final int BUCKET_COUNT = 64;
+
+   private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong sum = new AtomicLong();
+   private final AtomicLong max = new AtomicLong();
+
+   public LatencyHistogram() {
+
+   }
+
+   /**
+    * @param nanos The duration in nanoseconds
+    */
+   public void record(long nanos) {
+      if (nanos < 0)
+         nanos = 0;
+
+      buckets.incrementAndGet(bucketOf(nanos));
+      count.incrementAndGet();
+      sum.addAndGet(nanos);
+      long previous;
+      do {
+         previous = max.get();
+      } while (nanos > previous && !max.compareAndSet(previous, nanos));
+   }
+
+   /**
+    * Records the time elapsed since <code>startNanos</code>.
+    *
+    * @param startNanos A value of {@link System#nanoTime()}
+    */
+   public void recordSince(long startNanos) {
+      record(System.nanoTime() - startNanos);
+   }
+
+   private static int bucketOf(long nanos) {
+      return nanos == 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(nanos) - 1;
+   }
+
+   /**
+    * @param percentile The percentile between 0 and 100
+    *
+    * @return The upper bound of the durations of the <code>percentile</code> in nanoseconds
+    */
+   public long percentile(double percentile) {
+      if (percentile < 0 || percentile > 100)
+         throw new IllegalArgumentException("Invalid percentile: " + percentile);
+
+      long total = count.get();
+      if (total == 0)
+         return 0;
+
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+         seen += buckets.get(i);
+         if (seen >= rank && seen > 0)
+            return Math.min(i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (2L << i) - 1, max.get());
+      }
+      return max.get();
+   }
+
+   public long getCount() {
+      return count.get();
+   }
+
+   /**
+    * @return The mean duration in nanoseconds
+    */
+   public long getMean() {
+      long total = count.get();
+      return total == 0 ? 0 : sum.get() / total;
+   }
+
+   public long getMax() {
+      return max.get();
+   }
+
+   /**
+    * @return The median, the 99th percentile and the maximum in milliseconds
+    */
+   @Override
+   public String toString() {
+      return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                           getCount(),
+                           toMillis(percentile(50)),
+                           toMillis(percentile(99)),
+                           toMillis(getMax()));
+   }
+
+   static double toMillis(long nanos) {
+      return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+   }
+}
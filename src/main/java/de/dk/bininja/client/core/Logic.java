@@ -5,22 +5,56 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.dk.bininja.client.controller.ProcessorController;
 import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.BufferPool;
+import de.dk.bininja.client.net.ChecksumAlgorithm;
 import de.dk.bininja.client.net.ClientDownload;
 import de.dk.bininja.client.net.DownloadRequest;
+import de.dk.bininja.client.net.PayloadCodec;
+import de.dk.bininja.client.net.PayloadDecoder;
+import de.dk.bininja.client.net.ProgressDispatcher;
+import de.dk.bininja.client.net.RateLimiter;
+import de.dk.bininja.client.net.ReceiveWindow;
+import de.dk.bininja.client.net.StreamingChecksum;
 import de.dk.bininja.net.DownloadManager;
+import de.dk.bininja.net.DownloadState;
 import de.dk.bininja.net.packet.download.DownloadCancelPacket;
 import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
 import de.dk.bininja.net.packet.download.DownloadPacket;
 import de.dk.bininja.net.packet.download.DownloadReadyPacket;
 import de.dk.util.StringUtils;
 import de.dk.ch.Channel;
+import de.dk.ch.ChannelDeclinedException;
 
 /**
  * @author David Koettlitz
@@ -29,56 +63,785 @@ import de.dk.ch.Channel;
 public class Logic {
    private static final Logger LOGGER = LoggerFactory.getLogger(Logic.class);
 
+   public static final long DEFAULT_SEGMENT_THRESHOLD = 64 * 1024 * 1024;
+   private static final long WRITER_KEEP_ALIVE = 30000;
+   /** The number of zeros, that are written at once to preallocate a target. */
+   private static final int PREALLOCATION_CHUNK = 1024 * 1024;
+
    private final ProcessorController controller;
    private DownloadManager<ClientDownload> downloads = new DownloadManager<>();
+   private final BufferPool heapBuffers = new BufferPool(false);
+   private final BufferPool directBuffers = new BufferPool(true);
+   private final DownloadScheduler scheduler = new DownloadScheduler();
+   private final List<DownloadBatch> batches = new CopyOnWriteArrayList<>();
+   private final DownloadMetrics metrics = new DownloadMetrics();
+   /** The downloads, whose channels have been lost, until they are resumed or aborted. */
+   private final Map<ClientDownload, DownloadMetadata> detached = new ConcurrentHashMap<>();
+   private MetricsReporter metricsReporter;
+   private volatile ContentCache contentCache;
+   /** The rate limit, that all the downloads share. */
+   private final RateLimiter rateLimiter = new RateLimiter();
+   /** Whether the server is known to answer range requests, because the user said so. */
+   private volatile boolean rangeRequests;
+   /** The executor, that the downloads are written on or <code>null</code> to start a thread per download. */
+   private volatile Executor downloadExecutor;
+   /** The pool of writer threads, that has been created by {@link #setWriterThreads(int)}. */
+   private ExecutorService writerPool;
+   private volatile ChecksumAlgorithm checksumAlgorithm;
+   /** The pool, that computes the checksums of the downloads. Created with the first checksummed download. */
+   private ExecutorService checksumPool;
+   /** The interval of the progress events in milliseconds or 0 to deliver the progress of every packet. */
+   private long progressInterval = ProgressDispatcher.DEFAULT_INTERVAL;
+   /** Delivers the progress of the downloads. Created with the first download. */
+   private ProgressDispatcher progressDispatcher;
+
+   private volatile boolean gatheringWrites = false;
+   private volatile WriteMode writeMode = WriteMode.STREAM;
+   private volatile long receiveWindowSize = ReceiveWindow.DEFAULT_SIZE;
+   private volatile int segmentCount = 1;
+   private volatile long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+   private volatile boolean compression = false;
+   /** Whether the blocks of preallocated targets are allocated by writing zeros. */
+   private volatile boolean zeroFill = false;
 
    public Logic(ProcessorController controller) {
       this.controller = controller;
    }
 
-   public synchronized ClientDownload requestDownloadFrom(DownloadMetadata metadata,
-                                                          Channel<DownloadPacket> downloadChannel) throws IOException {
+   /**
+    * Requests the download and creates it.
+    * Neither the header nor the channels of the segments are awaited and the target is not opened
+    * while holding the lock of the logic, so downloads requested by several threads
+    * share the round trips to the server and do not wait for each other's disk.
+    * The lock only guards the bookkeeping of the created download.
+    * The download may be loaded over another channel than <code>downloadChannel</code>,
+    * if it is requested again to resume a partial download of its target.
+    * <code>downloadChannel</code> is closed by the logic then.
+    * So the download is to be started over {@link ClientDownload#getChannel()}.
+    * If the file is served from the content cache, a {@link ClientDownload#isServed() served} download is returned,
+    * that completes as soon as it is started.
+    *
+    * @return The download or <code>null</code> if no target has been chosen
+    */
+   public ClientDownload requestDownloadFrom(DownloadMetadata metadata,
+                                             Channel<DownloadPacket> downloadChannel) throws IOException {
+      Preparation preparation = negotiate(new Preparation(metadata, downloadChannel));
       DownloadHeaderPacket header;
       try {
-         header = requestDownloadHeader(metadata.getUrl(), downloadChannel);
+         header = requestDownloadHeader(metadata.getUrl(),
+                                        preparation.offset,
+                                        -1,
+                                        preparation.codecs,
+                                        downloadChannel);
       } catch (IOException e) {
          cancelDownload(downloadChannel, e.getMessage());
          throw new IOException("Error requesting the download meta data", e);
       }
 
+      accept(preparation, header);
+      if (!metadata.isTargetSpecified()) {
+         controller.setDownloadTargetTo(metadata);
+         if (!metadata.isTargetSpecified())
+            return null;
+      }
+
+      if (serveFromCache(preparation))
+         return ClientDownload.served(downloadChannel, metadata.getLength());
+
+      Channel<DownloadPacket> previous = resumeLatePartial(preparation);
+      ClientDownload download;
+      try {
+         download = create(preparation);
+      } catch (IOException e) {
+         if (previous != null) {
+            cancelDownload(preparation.channel, e.getMessage());
+            controller.closeDownloadChannel(preparation.channel);
+         }
+         throw e;
+      }
+      if (previous != null)
+         controller.closeDownloadChannel(previous);
+
+      return download;
+   }
+
+   /**
+    * Requests a batch of downloads. The downloads are requested in waves of as many downloads,
+    * as the scheduler admits at the moment. The channels of a wave are established
+    * and their headers requested at once, the targets of the wave are resolved in one pass
+    * and the downloads of the wave are started together.
+    * The downloads are requested by a thread of the batch, so this method returns immediately.
+    *
+    * @param metadata The metadata of the downloads
+    * @param preparer Called with every download before it is started
+    *
+    * @return The handle of the batch
+    */
+   public DownloadBatch requestDownloadsFrom(Collection<DownloadMetadata> metadata,
+                                             Consumer<ClientDownload> preparer) {
+      DownloadBatch batch = new DownloadBatch(metadata);
+      batches.add(batch);
+      Thread thread = new Thread(() -> runBatch(batch, preparer), "download-batch-" + batch.getId());
+      thread.setDaemon(true);
+      thread.start();
+      return batch;
+   }
+
+   private void runBatch(DownloadBatch batch, Consumer<ClientDownload> preparer) {
+      LOGGER.info("Requesting " + batch);
+      try {
+         List<DownloadBatch.Item> items = batch.getItems();
+         int requested = 0;
+         while (requested < items.size() && !batch.isCancelled()) {
+            int slots = scheduler.reserveSlots(items.size() - requested);
+            List<DownloadBatch.Item> wave = items.subList(requested, requested + slots);
+            requested += slots;
+            int started = 0;
+            try {
+               started = requestWave(batch, wave, preparer);
+            } finally {
+               if (started < slots)
+                  scheduler.cancelReservation(slots - started);
+            }
+         }
+      } catch (InterruptedException e) {
+         LOGGER.warn("Interrupted while requesting " + batch, e);
+      } finally {
+         batch.cancelPending();
+         batches.remove(batch);
+      }
+      LOGGER.info("All downloads of " + batch + " have been requested");
+   }
+
+   /**
+    * Requests the <code>wave</code> of downloads concurrently and starts them in the slots,
+    * that have been reserved for the wave.
+    *
+    * @return The number of reserved slots, that have been used to start a download
+    */
+   private int requestWave(DownloadBatch batch,
+                           List<DownloadBatch.Item> wave,
+                           Consumer<ClientDownload> preparer) throws InterruptedException {
+      LOGGER.debug("Requesting a wave of " + wave.size() + " downloads of " + batch);
+      List<Preparation> requested = new ArrayList<>(wave.size());
+      for (DownloadBatch.Item item : wave) {
+         item.setState(DownloadBatch.ItemState.REQUESTING);
+         Channel<DownloadPacket> downloadChannel;
+         try {
+            downloadChannel = controller.establishDownloadChannel();
+         } catch (IOException | ChannelDeclinedException | TimeoutException e) {
+            LOGGER.warn("Could not establish the channel for " + item.getMetadata(), e);
+            batch.failed(item, "Could not establish the channel: " + e.getMessage());
+            continue;
+         }
+         Preparation preparation = negotiate(new Preparation(item, downloadChannel));
+         preparation.header = requestDownloadHeaderAsync(item.getMetadata().getUrl(),
+                                                         preparation.offset,
+                                                         -1,
+                                                         preparation.codecs,
+                                                         downloadChannel);
+         requested.add(preparation);
+      }
+
+      List<Preparation> accepted = new ArrayList<>(requested.size());
+      for (int i = 0; i < requested.size(); i++) {
+         Preparation preparation = requested.get(i);
+         try {
+            accept(preparation, awaitHeader(preparation.header));
+            accepted.add(preparation);
+         } catch (IOException | TimeoutException e) {
+            LOGGER.warn("Error requesting " + preparation.metadata, e);
+            discard(preparation, e.getMessage());
+            batch.failed(preparation.item, e.getMessage());
+         } catch (InterruptedException e) {
+            for (Preparation discarded : requested.subList(i, requested.size()))
+               discard(discarded, "Request interrupted");
+            for (Preparation discarded : accepted)
+               discard(discarded, "Request interrupted");
+            throw e;
+         }
+      }
+
+      for (Preparation preparation : accepted) {
+         if (!preparation.metadata.isTargetSpecified())
+            controller.setDownloadTargetTo(preparation.metadata);
+      }
+
+      List<Preparation> created = new ArrayList<>(accepted.size());
+      for (Preparation preparation : accepted) {
+         if (batch.isCancelled() || !preparation.metadata.isTargetSpecified()) {
+            discard(preparation, "Download cancelled");
+            batch.cancelled(preparation.item);
+            continue;
+         }
+         if (serveFromCache(preparation)) {
+            discard(preparation, "Served from the cache");
+            batch.cached(preparation.item);
+            continue;
+         }
+         Channel<DownloadPacket> previous = resumeLatePartial(preparation);
+         if (previous != null)
+            controller.closeDownloadChannel(previous);
+
+         try {
+            preparation.download = create(preparation);
+         } catch (IOException e) {
+            LOGGER.warn("Error preparing " + preparation.metadata, e);
+            discard(preparation, e.getMessage());
+            batch.failed(preparation.item, e.getMessage());
+            continue;
+         }
+         preparer.accept(preparation.download);
+         batch.started(preparation.item, preparation.download);
+         created.add(preparation);
+      }
+
+      for (Preparation preparation : created)
+         scheduler.startReserved(() -> start(batch, preparation));
+
+      return created.size();
+   }
+
+   private ClientDownload start(DownloadBatch batch, Preparation preparation) {
+      try {
+         startDownload(preparation.channel, preparation.download);
+         return preparation.download;
+      } catch (IOException e) {
+         LOGGER.warn("Error starting " + preparation.metadata, e);
+         batch.failed(preparation.item, e.getMessage());
+         controller.closeDownloadChannel(preparation.channel);
+         return null;
+      }
+   }
+
+   /**
+    * Decides how to request the prepared download, depending on what the server supports.
+    * A partial download can only be resumed and the payloads can only be compressed,
+    * if the server answers range requests. Otherwise the download is loaded from the beginning uncompressed.
+    */
+   private Preparation negotiate(Preparation preparation) {
+      URL url = preparation.metadata.getUrl();
+      if (preparation.offset > 0 && !isRangeRequestEnabled()) {
+         LOGGER.info("The server can not resume " + preparation.partial + ". Loading it from the beginning.");
+         preparation.restart();
+      }
+      preparation.codecs = acceptedCodecs(url);
+      return preparation;
+   }
+
+   /**
+    * Looks for a partial download of the target, if the target has been resolved only after the header
+    * has been received. The download has been requested from the beginning then,
+    * so it is requested again behind the partial data on a new channel and the previous channel is cancelled.
+    * If it can not be requested again, it is loaded from the beginning over its channel.
+    *
+    * @return The previous channel of the download, that is to be closed,
+    * or <code>null</code> if the download is still loaded over its channel
+    */
+   private Channel<DownloadPacket> resumeLatePartial(Preparation preparation) {
+      if (preparation.partialLookedUp || !preparation.findPartial() || negotiate(preparation).offset == 0)
+         return null;
+
+      DownloadMetadata metadata = preparation.metadata;
+      Channel<DownloadPacket> channel;
+      try {
+         channel = controller.establishDownloadChannel();
+      } catch (IOException | ChannelDeclinedException | TimeoutException e) {
+         LOGGER.warn("Could not establish a channel to resume " + preparation.partial
+                     + ". Loading it from the beginning.", e);
+         preparation.restart();
+         return null;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         preparation.restart();
+         return null;
+      }
+
+      DownloadHeaderPacket header;
+      try {
+         header = requestDownloadHeader(metadata.getUrl(), preparation.offset, -1, preparation.codecs, channel);
+      } catch (IOException e) {
+         LOGGER.warn("Could not request the rest of " + preparation.partial + ". Loading it from the beginning.", e);
+         controller.closeDownloadChannel(channel);
+         preparation.restart();
+         return null;
+      }
+      if (!preparation.partial.matches(metadata.getUrl(), header.getLength())) {
+         LOGGER.info("The partial download " + preparation.partial + " does not match the file on the server anymore."
+                     + " Loading it from the beginning.");
+         cancelDownload(channel, "Download not needed anymore");
+         controller.closeDownloadChannel(channel);
+         preparation.restart();
+         return null;
+      }
+
+      Channel<DownloadPacket> previous = preparation.channel;
+      cancelDownload(previous, "Requested again behind the partial download");
+      preparation.channel = channel;
+      return previous;
+   }
+
+   /**
+    * Cancels a download, that has been requested but not started, and closes its channel.
+    */
+   private void discard(Preparation preparation, String msg) {
+      cancelDownload(preparation.channel, msg);
+      controller.closeDownloadChannel(preparation.channel);
+   }
+
+   /**
+    * Checks the header against a partial download, that is resumed,
+    * and completes the metadata of the download by the header.
+    */
+   private void accept(Preparation preparation, DownloadHeaderPacket header) throws IOException {
+      DownloadMetadata metadata = preparation.metadata;
+      DownloadSidecar partial = preparation.partial;
       LOGGER.info("Download metadata received: " + header);
       metadata.setLength(header.getLength());
+      if (partial != null && !partial.matches(metadata.getUrl(), header.getLength())) {
+         String msg = "The partial download " + partial.getTarget().getAbsolutePath()
+                      + " does not match the file on the server anymore."
+                      + " Request the download again to start from the beginning.";
+         cancelDownload(preparation.channel, msg);
+         partial.delete();
+         throw new IOException(msg);
+      }
+
       if (StringUtils.isBlank(metadata.getFileName()))
          metadata.setFileName(header.getFilename());
 
+      preparation.validator = validatorOf(metadata, header);
+
       LOGGER.info("Preparing the Download " + metadata);
-      if (!metadata.isTargetSpecified()) {
-         controller.setDownloadTargetTo(metadata);
-         if (!metadata.isTargetSpecified())
-            return null;
+   }
+
+   /**
+    * @return The expected checksum of the download, if it has one, and the filename announced by the server otherwise.
+    * The filename is a weak validator, which is why the cached files expire after the maximum age of the cache.
+    */
+   private static String validatorOf(DownloadMetadata metadata, DownloadHeaderPacket header) {
+      String checksum = metadata.getChecksum();
+      return checksum == null ? header.getFilename() : checksum.trim();
+   }
+
+   /**
+    * Opens the target of the download, whose header has been accepted and whose target has been resolved.
+    * Called without the lock of the logic, because the target is opened and preallocated
+    * and the segments are requested over the network here. Only the created download is registered with the lock.
+    */
+   private ClientDownload create(Preparation preparation) throws IOException {
+      DownloadMetadata metadata = preparation.metadata;
+      Channel<DownloadPacket> downloadChannel = preparation.channel;
+      long offset = preparation.offset;
+      File target = targetOf(metadata);
+      ChecksumAlgorithm checksumAlgorithm = checksumAlgorithmOf(metadata);
+      WriteMode writeMode = this.writeMode;
+      int segmentCount = this.segmentCount;
+      boolean segmented = offset == 0
+                          && isToBeSegmented(metadata.getLength(), segmentCount)
+                          && isRangeRequestEnabled();
+      if (segmented && checksumAlgorithm != null) {
+         LOGGER.debug("Not splitting " + metadata + " into segments, "
+                      + "because its checksum is computed while it is written");
+         segmented = false;
+      }
+      boolean preallocating = segmented || (offset == 0 && writeMode.isPreallocating() && metadata.getLength() > 0);
+      boolean mapping = preallocating && writeMode == WriteMode.MAPPED;
+      ClientDownload download;
+      if (preallocating) {
+         FileChannel output = openFileChannel(target, true, mapping);
+         try {
+            preallocate(output, metadata.getLength(), zeroFill);
+         } catch (IOException e) {
+            close(output);
+            throw targetNotAccessible(target, e);
+         }
+         download = new ClientDownload(downloadChannel, output, metadata.getLength(), directBuffers);
+         if (segmented) {
+            LOGGER.debug("Creating a segmented Download object for " + metadata);
+            split(download, metadata, preparation.codecs, segmentCount);
+         } else {
+            LOGGER.debug("Creating a Download object writing into the preallocated target for " + metadata);
+         }
+         if (mapping)
+            download.mapTarget();
+      } else if (offset > 0) {
+         FileChannel output = openFileChannel(target, false);
+         try {
+            output.position(offset);
+         } catch (IOException e) {
+            close(output);
+            throw targetNotAccessible(target, e);
+         }
+         LOGGER.debug("Creating a Download object resuming at " + offset + " for " + metadata);
+         long remaining = metadata.getLength() - offset;
+         download = new ClientDownload(downloadChannel, output, offset, remaining, directBuffers);
+      } else if (gatheringWrites) {
+         FileChannel output = openFileChannel(target, true);
+         LOGGER.debug("Creating a Download object with gathering writes for " + metadata);
+         download = new ClientDownload(downloadChannel, output, metadata.getLength(), directBuffers);
+      } else {
+         FileOutputStream output = openOutputStream(target);
+         LOGGER.debug("Creating a Download object for " + metadata);
+         download = new ClientDownload(downloadChannel, output, metadata.getLength(), heapBuffers);
+      }
+
+      if (metadata.getLength() >= 0) {
+         DownloadSidecar sidecar = new DownloadSidecar(target,
+                                                       metadata.getUrl(),
+                                                       metadata.getLength(),
+                                                       !preallocating);
+         markIncomplete(download, sidecar);
+      }
+
+      if (contentCache != null && metadata.getLength() >= 0)
+         cacheWhenComplete(download, preparation, target);
+
+      if (checksumAlgorithm != null) {
+         StreamingChecksum checksum = new StreamingChecksum(checksumAlgorithm, checksumExecutor());
+         if (offset > 0)
+            checksum.prefix(target, offset);
+
+         download.setChecksum(checksum, metadata.getChecksum());
+         discardWhenCorrupt(download, target);
       }
 
-      File target = new File(metadata.getTargetDirectory(), metadata.getFileName());
+      if (!preparation.codecs.isEmpty())
+         download.setPayloadDecoder(new PayloadDecoder());
+
+      download.setReceiveWindowSize(receiveWindowSize);
+      download.setProgressDispatcher(progressDispatcher());
+      download.setSharedRateLimiter(rateLimiter);
+      if (metadata.getRateLimit() > 0)
+         download.getRateLimiter().setRate(metadata.getRateLimit());
+      if (isRangeRequestEnabled())
+         download.enablePausing(new ChannelRangeRequester(metadata, preparation.codecs));
+
+      register(metadata, download);
+      return download;
+   }
+
+   private synchronized void register(DownloadMetadata metadata, ClientDownload download) {
+      metrics.track(metadata, download);
+      downloads.add(download);
+   }
+
+   /**
+    * Serves the download from the content cache, if its file is cached.
+    * Called without the lock of the logic, because the cached file is hashed and copied here.
+    * A partial download of the target is superseded by the cached file.
+    * If the download has an expected checksum, the cached file is only served, if it has this checksum.
+    *
+    * @return <code>true</code> if the download has been served from the cache and does not need to be loaded
+    */
+   private boolean serveFromCache(Preparation preparation) {
+      ContentCache cache = this.contentCache;
+      DownloadMetadata metadata = preparation.metadata;
+      if (cache == null || metadata.getLength() < 0)
+         return false;
+
+      Predicate<File> verifier = cached -> metadata.getChecksum() == null || matchesChecksum(metadata, cached);
+      if (!cache.serve(metadata.getUrl(), metadata.getLength(), preparation.validator, targetOf(metadata), verifier))
+         return false;
+
+      if (preparation.partial != null)
+         preparation.partial.delete();
+
+      return true;
+   }
+
+   /**
+    * @return <code>true</code> if the <code>file</code> has the expected checksum of the download
+    */
+   private boolean matchesChecksum(DownloadMetadata metadata, File file) {
+      try {
+         StreamingChecksum checksum = new StreamingChecksum(checksumAlgorithmOf(metadata), checksumExecutor());
+         checksum.prefix(file, metadata.getLength());
+         checksum.await();
+         return checksum.matches(metadata.getChecksum());
+      } catch (IOException e) {
+         LOGGER.warn("Could not compute the checksum of " + file.getAbsolutePath(), e);
+         return false;
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+   }
+
+   private void cacheWhenComplete(ClientDownload download, Preparation preparation, File target) {
+      ContentCache cache = this.contentCache;
+      DownloadMetadata metadata = preparation.metadata;
+      String validator = preparation.validator;
+      download.whenTerminated(d -> {
+         if (d.getDownloadState() == DownloadState.COMPLETE)
+            cache.store(metadata.getUrl(), metadata.getLength(), validator, target);
+      });
+   }
+
+   /**
+    * @return The algorithm of the expected checksum of the download, the configured algorithm
+    * or <code>null</code> if the download is not to be checksummed
+    *
+    * @throws IOException If the expected checksum is not of any known algorithm
+    */
+   private ChecksumAlgorithm checksumAlgorithmOf(DownloadMetadata metadata) throws IOException {
+      String expected = metadata.getChecksum();
+      if (expected == null)
+         return checksumAlgorithm;
+
+      ChecksumAlgorithm algorithm = ChecksumAlgorithm.ofChecksum(expected.trim());
+      if (algorithm == null)
+         throw new IOException("The checksum " + expected + " of " + metadata.getUrl() + " is of no known algorithm");
+
+      return algorithm;
+   }
+
+   private synchronized Executor checksumExecutor() {
+      if (checksumPool == null) {
+         int count = Runtime.getRuntime().availableProcessors();
+         AtomicInteger threadCount = new AtomicInteger();
+         ThreadPoolExecutor pool = new ThreadPoolExecutor(count,
+                                                          count,
+                                                          WRITER_KEEP_ALIVE,
+                                                          TimeUnit.MILLISECONDS,
+                                                          new LinkedBlockingQueue<>(),
+                                                          r -> {
+            Thread thread = new Thread(r, "download-checksum-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         });
+         pool.allowCoreThreadTimeOut(true);
+         this.checksumPool = pool;
+      }
+      return checksumPool;
+   }
+
+   /**
+    * @return The dispatcher of the progress events or <code>null</code> if the progress is delivered for every packet
+    */
+   private synchronized ProgressDispatcher progressDispatcher() {
+      if (progressInterval == 0)
+         return null;
+
+      if (progressDispatcher == null)
+         this.progressDispatcher = new ProgressDispatcher(progressInterval);
+
+      return progressDispatcher;
+   }
+
+   private boolean isToBeSegmented(long length, int count) {
+      return count > 1 && length > segmentThreshold && length >= count;
+   }
+
+   /**
+    * Extends the file to its final length, like {@link java.io.RandomAccessFile#setLength(long)},
+    * so it does not have to grow with every write. Usually this leaves a sparse file,
+    * whose blocks are allocated by the writes of the download.
+    * If <code>zeroFill</code> is set, the blocks are allocated in one go by writing zeros instead.
+    * That writes the whole length once more, but a disk, that is too small for the file,
+    * fails here before anything is loaded.
+    */
+   private static void preallocate(FileChannel output, long length, boolean zeroFill) throws IOException {
+      if (length <= 0)
+         return;
+
+      if (!zeroFill) {
+         if (output.size() < length)
+            output.write(ByteBuffer.allocate(1), length - 1);
+         return;
+      }
+
+      ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(PREALLOCATION_CHUNK, length));
+      long position = 0;
+      while (position < length) {
+         zeros.clear();
+         zeros.limit((int) Math.min(zeros.capacity(), length - position));
+         position += output.write(zeros, position);
+      }
+   }
+
+   /**
+    * Splits the download into <code>count</code> segments of equal length.
+    * The first segment is loaded over the channel of the download itself,
+    * every other segment is requested on its own channel by a range request,
+    * so a download is only split, if the server answers range requests.
+    * If any of the segments could not be requested, the download is loaded in one piece.
+    */
+   private void split(ClientDownload download, DownloadMetadata metadata, Set<PayloadCodec> codecs, int count) {
+      long length = metadata.getLength();
+      long segmentLength = length / count;
+      List<Channel<DownloadPacket>> channels = new ArrayList<>(count - 1);
+      List<CompletableFuture<DownloadHeaderPacket>> headers = new ArrayList<>(count - 1);
+      LOGGER.debug("Splitting download into " + count + " segments of " + segmentLength + " bytes");
+      try {
+         for (int i = 1; i < count; i++) {
+            long start = i * segmentLength;
+            long end = i == count - 1 ? length : start + segmentLength;
+            Channel<DownloadPacket> segmentChannel = controller.establishDownloadChannel();
+            channels.add(segmentChannel);
+            headers.add(requestDownloadHeaderAsync(metadata.getUrl(), start, end - start, codecs, segmentChannel));
+         }
+         for (CompletableFuture<DownloadHeaderPacket> header : headers)
+            awaitHeader(header);
+      } catch (IOException | ChannelDeclinedException | InterruptedException | TimeoutException e) {
+         LOGGER.warn("Could not request the segments of " + metadata + ". Loading it in one piece.", e);
+         for (Channel<DownloadPacket> segmentChannel : channels) {
+            cancelDownload(segmentChannel, "Segment not needed anymore");
+            controller.closeDownloadChannel(segmentChannel);
+         }
+         return;
+      }
+
+      for (int i = 0; i < channels.size(); i++) {
+         long start = (i + 1) * segmentLength;
+         long end = i == channels.size() - 1 ? length : start + segmentLength;
+         download.addSegment(channels.get(i), start, end);
+      }
+   }
+
+   /**
+    * @return The codecs, that the server may compress the payloads of a download from <code>url</code> with.
+    * Only a range request can ask for compressed payloads, so no codecs are accepted from a server,
+    * that does not answer range requests.
+    */
+   private Set<PayloadCodec> acceptedCodecs(URL url) {
+      if (compression && isRangeRequestEnabled())
+         return decodableCodecs();
+      else
+         return Collections.emptySet();
+   }
+
+   /**
+    * @return The codecs, that the payloads of a download with a {@link PayloadDecoder} may be compressed with
+    */
+   private static Set<PayloadCodec> decodableCodecs() {
+      return EnumSet.of(PayloadCodec.LZ4, PayloadCodec.DEFLATE);
+   }
+
+   private static File targetOf(DownloadMetadata metadata) {
+      return new File(metadata.getTargetDirectory(), metadata.getFileName());
+   }
+
+   /**
+    * Writes the sidecar, that marks the target as incomplete until the download is complete.
+    * An incomplete target, that is resumable, is resumed by requesting the download again.
+    * A target, whose checksum does not match, is not marked anymore,
+    * because its data is corrupt and must not be resumed.
+    */
+   private static void markIncomplete(ClientDownload download, DownloadSidecar sidecar) {
+      try {
+         sidecar.write();
+      } catch (IOException e) {
+         LOGGER.warn("Could not write the sidecar of " + sidecar.getTarget().getAbsolutePath()
+                     + ". The download will not be resumable.", e);
+         return;
+      }
+
+      download.whenTerminated(d -> {
+         if (d.getDownloadState() == DownloadState.COMPLETE || d.isChecksumMismatch())
+            sidecar.delete();
+      });
+   }
+
+   /**
+    * Deletes the target, if the checksum of the download does not match,
+    * so the corrupt data is neither resumed nor mistaken for the file.
+    */
+   private static void discardWhenCorrupt(ClientDownload download, File target) {
+      download.whenTerminated(d -> {
+         if (!d.isChecksumMismatch())
+            return;
+
+         LOGGER.warn("Deleting the corrupt target " + target.getAbsolutePath());
+         try {
+            Files.deleteIfExists(target.toPath());
+         } catch (IOException e) {
+            LOGGER.warn("Could not delete the corrupt target " + target.getAbsolutePath(), e);
+         }
+      });
+   }
+
+   private static void close(FileChannel channel) {
+      try {
+         channel.close();
+      } catch (IOException e) {
+         LOGGER.warn("Error closing the FileChannel " + channel, e);
+      }
+   }
+
+   private static FileOutputStream openOutputStream(File target) throws IOException {
       LOGGER.debug("Opening OutputStream to downloadtarget: " + target.getAbsolutePath());
-      FileOutputStream output;
+      unlink(target);
       try {
-         output = new FileOutputStream(target);
+         return new FileOutputStream(target);
       } catch (SecurityException | FileNotFoundException e) {
-         String msg = String.format("Konnte auf Downloaddatei \"%s\" nicht zugreifen.\n%s",
-                                    target.getAbsolutePath(),
-                                    e.getMessage());
+         throw targetNotAccessible(target, e);
+      }
+   }
 
-         throw new IOException(msg, e);
+   /**
+    * Removes the old <code>target</code> instead of truncating it,
+    * because it may be a hard link to a file of the content cache, that must not be overwritten.
+    */
+   private static void unlink(File target) throws IOException {
+      try {
+         Files.deleteIfExists(target.toPath());
+      } catch (SecurityException | IOException e) {
+         throw targetNotAccessible(target, e);
       }
+   }
 
-      LOGGER.debug("Creating a Download object for " + metadata);
-      ClientDownload download;
-      download = new ClientDownload(downloadChannel, output, metadata.getLength());
-      downloads.add(download);
-      return download;
+   private static FileChannel openFileChannel(File target, boolean truncate) throws IOException {
+      return openFileChannel(target, truncate, false);
+   }
+
+   /**
+    * @param readable Whether the channel has to be readable as well, e.g. to map the target
+    */
+   private static FileChannel openFileChannel(File target, boolean truncate, boolean readable) throws IOException {
+      LOGGER.debug("Opening FileChannel to downloadtarget: " + target.getAbsolutePath());
+      Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      if (truncate) {
+         unlink(target);
+         options.add(StandardOpenOption.TRUNCATE_EXISTING);
+      }
+      if (readable)
+         options.add(StandardOpenOption.READ);
+
+      try {
+         return FileChannel.open(target.toPath(), options);
+      } catch (SecurityException | IOException e) {
+         throw targetNotAccessible(target, e);
+      }
+   }
+
+   private static IOException targetNotAccessible(File target, Exception e) {
+      String msg = String.format("Konnte auf Downloaddatei \"%s\" nicht zugreifen.\n%s",
+                                 target.getAbsolutePath(),
+                                 e.getMessage());
+
+      return new IOException(msg, e);
+   }
+
+   /**
+    * Submits a download to the scheduler, that starts it, as soon as
+    * less than the maximum of running downloads are running.
+    *
+    * @param metadata The metadata of the download, that provides its priority
+    * @param starter Establishes the channel of the download, requests and starts it
+    *
+    * @return <code>false</code> if the download was started immediately and could not be started,
+    * <code>true</code> otherwise
+    */
+   public boolean schedule(DownloadMetadata metadata, DownloadScheduler.DownloadStarter starter) {
+      return scheduler.submit(metadata.getPriority(), starter);
    }
 
    public void waitForDownloads() throws InterruptedException {
+      for (DownloadBatch batch : batches)
+         batch.waitFor();
+
+      scheduler.awaitIdle();
       downloads.waitFor();
    }
 
@@ -92,12 +855,37 @@ public class Logic {
 
    public DownloadHeaderPacket requestDownloadHeader(URL url,
                                                      Channel<DownloadPacket> downloadChannel) throws IOException {
+      return requestDownloadHeader(url, 0, downloadChannel);
+   }
+
+   public DownloadHeaderPacket requestDownloadHeader(URL url,
+                                                     long offset,
+                                                     Channel<DownloadPacket> downloadChannel) throws IOException {
+      return requestDownloadHeader(url, offset, -1, downloadChannel);
+   }
+
+   public DownloadHeaderPacket requestDownloadHeader(URL url,
+                                                     long offset,
+                                                     long length,
+                                                     Channel<DownloadPacket> downloadChannel) throws IOException {
+      return requestDownloadHeader(url, offset, length, Collections.emptySet(), downloadChannel);
+   }
 
-      DownloadRequest request = new DownloadRequest(downloadChannel, url);
+   public DownloadHeaderPacket requestDownloadHeader(URL url,
+                                                     long offset,
+                                                     long length,
+                                                     Set<PayloadCodec> codecs,
+                                                     Channel<DownloadPacket> downloadChannel) throws IOException {
+
+      DownloadRequest request = new DownloadRequest(downloadChannel, url, offset, length, codecs);
       LOGGER.info(String.format("Sending download request from \"%s\" to the server", url.toString()));
 
       try {
-         return request.request();
+         long start = System.nanoTime();
+         DownloadHeaderPacket header = request.request();
+         metrics.getHeaderRoundTrip()
+                .recordSince(start);
+         return header;
       } catch (IOException e) {
          String errorMsg = String.format("Could not send download request from \"%s\".",
                                          url.toString());
@@ -111,13 +899,61 @@ public class Logic {
       }
    }
 
+   /**
+    * Sends a download request without waiting for the header.
+    * The headers of requests on different channels are awaited concurrently,
+    * so requesting many downloads at once costs about a single round trip.
+    *
+    * @return A future, that is completed with the header or exceptionally if the request failed or timed out
+    */
+   public CompletableFuture<DownloadHeaderPacket> requestDownloadHeaderAsync(URL url,
+                                                                           long offset,
+                                                                           long length,
+                                                                           Set<PayloadCodec> codecs,
+                                                                           Channel<DownloadPacket> downloadChannel) {
+      DownloadRequest request = new DownloadRequest(downloadChannel, url, offset, length, codecs);
+      LOGGER.info(String.format("Sending download request from \"%s\" to the server", url.toString()));
+      long start = System.nanoTime();
+      CompletableFuture<DownloadHeaderPacket> header = request.requestAsync();
+      header.thenRun(() -> metrics.getHeaderRoundTrip().recordSince(start));
+      return header;
+   }
+
+   private static DownloadHeaderPacket awaitHeader(CompletableFuture<DownloadHeaderPacket> header) throws IOException,
+                                                                                                      InterruptedException,
+                                                                                                      TimeoutException {
+      try {
+         return header.get();
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof TimeoutException)
+            throw (TimeoutException) cause;
+         if (cause instanceof DownloadRequest.DeclinedException)
+            throw (DownloadRequest.DeclinedException) cause;
+
+         throw new IOException("Could not request the download", cause);
+      }
+   }
+
    public void startDownload(Channel<DownloadPacket> downloadChannel, ClientDownload download) throws IOException {
       LOGGER.info("Starting download");
-      download.start();
+      Executor executor = downloadExecutor;
+      if (executor == null)
+         download.start();
+      else
+         download.start(executor);
+      if (download.isServed()) {
+         LOGGER.debug("The download has been served from the cache. Telling the server not to send anything.");
+         cancelDownload(downloadChannel, "Served from the cache");
+         controller.closeDownloadChannel(downloadChannel);
+         return;
+      }
       LOGGER.debug("Download prepared. Telling the server, that everything is ready for the download "
                    + "by sending a DownloadReadyPacket.");
       try {
          downloadChannel.send(new DownloadReadyPacket());
+         for (Channel<DownloadPacket> segmentChannel : download.getSegmentChannels())
+            segmentChannel.send(new DownloadReadyPacket());
       } catch (IOException e) {
          download.cancel();
          throw new IOException("Could not send DownloadReadyPacket to server");
@@ -125,17 +961,551 @@ public class Logic {
       LOGGER.info("Download initiated");
    }
 
+   /**
+    * Detaches the running downloads, that are loaded over any of the <code>lost</code> channels,
+    * e.g. because the connection to the server has been closed.
+    * The detached downloads keep running and wait to be resumed by {@link #resumeDetachedDownloads()}.
+    *
+    * @return The number of downloads, that wait to be resumed
+    */
+   public int detachDownloads(Collection<? extends Channel<?>> lost) {
+      if (lost.isEmpty())
+         return detached.size();
+
+      for (DownloadMetrics.Tracked tracked : metrics.getTrackedDownloads()) {
+         ClientDownload download = tracked.getDownload();
+         if (download.getDownloadState() == DownloadState.RUNNING && download.detach(lost)) {
+            LOGGER.info("Lost the connection of " + tracked.getMetadata() + ". Waiting to resume it.");
+            detached.put(download, tracked.getMetadata());
+         }
+      }
+      return detached.size();
+   }
+
+   /**
+    * Resumes the detached downloads over new channels, starting behind the data,
+    * that each of them has received already.
+    * A download, that could not be resumed, stays detached and is retried by the next call.
+    * A download, whose length changed on the server meanwhile, is aborted,
+    * as well as a download, that would have to be resumed by a range request,
+    * if the server does not answer range requests.
+    *
+    * @return The number of downloads, that still wait to be resumed
+    */
+   public int resumeDetachedDownloads() {
+      for (Map.Entry<ClientDownload, DownloadMetadata> entry : detached.entrySet()) {
+         ClientDownload download = entry.getKey();
+         DownloadMetadata metadata = entry.getValue();
+         if (!download.isDetached() || download.getDownloadState() != DownloadState.RUNNING) {
+            detached.remove(download);
+            continue;
+         }
+
+         try {
+            Set<PayloadCodec> codecs = download.isCompressed() ? decodableCodecs() : Collections.emptySet();
+            download.resume(new ChannelRangeRequester(metadata, codecs));
+            detached.remove(download);
+            LOGGER.info("Resumed " + metadata);
+         } catch (NotResumableException e) {
+            LOGGER.error("Could not resume " + metadata, e);
+            detached.remove(download);
+            download.abort(e);
+         } catch (IOException e) {
+            LOGGER.warn("Could not resume " + metadata + " yet", e);
+         }
+      }
+      return detached.size();
+   }
+
+   /**
+    * Establishes a new channel and requests a range of the download on it
+    * after checking, that the file on the server has not changed.
+    *
+    * @param codecs The codecs, that the download has been requested with
+    */
+   private Channel<DownloadPacket> requestRange(DownloadMetadata metadata,
+                                                long position,
+                                                long length,
+                                                Set<PayloadCodec> codecs) throws IOException {
+      boolean ranged = position > 0 || length != -1 || !codecs.isEmpty();
+      if (ranged && !isRangeRequestEnabled()) {
+         throw new NotResumableException("The server does not answer range requests, so " + metadata.getUrl()
+                                         + " can not be resumed at " + position);
+      }
+
+      Channel<DownloadPacket> channel;
+      try {
+         channel = controller.establishDownloadChannel();
+      } catch (ChannelDeclinedException | InterruptedException | TimeoutException e) {
+         throw new IOException("Could not establish a channel to resume " + metadata, e);
+      }
+
+      DownloadHeaderPacket header;
+      try {
+         header = requestDownloadHeader(metadata.getUrl(), position, length, codecs, channel);
+      } catch (IOException e) {
+         controller.closeDownloadChannel(channel);
+         throw e;
+      }
+      if (metadata.getLength() >= 0 && header.getLength() != metadata.getLength()) {
+         cancelDownload(channel, "Download not needed anymore");
+         controller.closeDownloadChannel(channel);
+         throw new NotResumableException(String.format("The length of %s changed from %s to %s bytes",
+                                                          metadata.getUrl(),
+                                                          metadata.getLength(),
+                                                          header.getLength()));
+      }
+      return channel;
+   }
+
+   /**
+    * Aborts the detached downloads, because they can not be resumed anymore.
+    */
+   public void abortDetachedDownloads(String msg) {
+      for (ClientDownload download : detached.keySet()) {
+         detached.remove(download);
+         download.abort(new IOException(msg));
+      }
+   }
+
+   public int detachedDownloadCount() {
+      return detached.size();
+   }
+
    public void cancelDownloads() {
       LOGGER.debug("Canceling downloads");
+      for (DownloadBatch batch : batches)
+         batch.cancel();
+
+      int queued = scheduler.clearQueue();
+      if (queued > 0)
+         LOGGER.debug("Removed " + queued + " queued downloads");
+
       for (ClientDownload download : downloads)
          download.cancel();
+
+      detached.clear();
    }
 
    public int activeDownloadCount() {
       return downloads.size();
    }
 
+   public int queuedDownloadCount() {
+      return scheduler.getQueuedCount();
+   }
+
+   public int runningDownloadCount() {
+      return scheduler.getRunningCount();
+   }
+
+   public long finishedDownloadCount() {
+      return scheduler.getFinishedCount();
+   }
+
+   public int getMaxRunningDownloads() {
+      return scheduler.getMaxRunning();
+   }
+
+   /**
+    * Sets the maximum number of downloads, that may run at the same time.
+    * Every further download is queued until a running download has terminated.
+    */
+   public void setMaxRunningDownloads(int maxRunningDownloads) {
+      scheduler.setMaxRunning(maxRunningDownloads);
+   }
+
+   /**
+    * @return The pool of heap buffers, that is shared by all the downloads writing to an OutputStream
+    */
+   public BufferPool getHeapBufferPool() {
+      return heapBuffers;
+   }
+
+   /**
+    * @return The pool of direct buffers, that is shared by all the downloads writing to a FileChannel
+    */
+   public BufferPool getDirectBufferPool() {
+      return directBuffers;
+   }
+
+   public boolean isGatheringWrites() {
+      return gatheringWrites;
+   }
+
+   /**
+    * If set to <code>true</code> the download targets are opened as FileChannels
+    * and all pending payloads of a download are written with a single gathering write.
+    */
+   public void setGatheringWrites(boolean gatheringWrites) {
+      this.gatheringWrites = gatheringWrites;
+   }
+
+   public int getSegmentCount() {
+      return segmentCount;
+   }
+
+   /**
+    * Sets the number of segments, that downloads bigger than the segment threshold are split into.
+    * Each segment is loaded over its own channel. A count of 1 disables segmented downloads.
+    */
+   public void setSegmentCount(int segmentCount) {
+      if (segmentCount < 1)
+         throw new IllegalArgumentException("The segment count must be positive: " + segmentCount);
+
+      this.segmentCount = segmentCount;
+   }
+
+   public long getSegmentThreshold() {
+      return segmentThreshold;
+   }
+
+   /**
+    * Sets the length in bytes, that a download has to exceed to be split into segments.
+    */
+   public void setSegmentThreshold(long segmentThreshold) {
+      if (segmentThreshold < 0)
+         throw new IllegalArgumentException("The segment threshold must not be negative: " + segmentThreshold);
+
+      this.segmentThreshold = segmentThreshold;
+   }
+
+   public boolean isCompression() {
+      return compression;
+   }
+
+   /**
+    * Tells whether range requests may be sent to the server.
+    * The {@link de.dk.bininja.client.net.DownloadRangeRequestPacket} is not part of the protocol of bininja-core,
+    * so a server, that does not know it, can not even deserialize it and may close the whole connection.
+    * So range requests are only sent, if the user has enabled them, and the server is never probed for them.
+    *
+    * @return <code>true</code> if range requests are enabled
+    */
+   public boolean isRangeRequestEnabled() {
+      return rangeRequests;
+   }
+
+   /**
+    * Enables range requests for the downloads, that are requested afterwards.
+    * Only enable them, if the server knows the {@link de.dk.bininja.client.net.DownloadRangeRequestPacket}.
+    * Resuming partial downloads, splitting downloads into segments, compressed payloads,
+    * continuing downloads after the connection has been lost and pausing downloads all need range requests.
+    */
+   public void setRangeRequests(boolean rangeRequests) {
+      this.rangeRequests = rangeRequests;
+   }
+
+   public boolean isZeroFill() {
+      return zeroFill;
+   }
+
+   /**
+    * If set to <code>true</code> the blocks of preallocated targets are allocated by writing zeros
+    * up to their final length, before the downloads are loaded. Otherwise the targets are only extended
+    * to their final length and their blocks are allocated by the writes of the downloads.
+    * Zero-filling writes every byte of these downloads twice. Applies to downloads, that are requested afterwards.
+    */
+   public void setZeroFill(boolean zeroFill) {
+      this.zeroFill = zeroFill;
+   }
+
+   /**
+    * If set to <code>true</code> the server is asked to compress the payloads of the downloads,
+    * that are requested afterwards. Needs a server, that supports compressed payloads.
+    * Only a range request can ask for compression, so without range requests the payloads are uncompressed.
+    */
+   public void setCompression(boolean compression) {
+      this.compression = compression;
+   }
+
+   public Executor getDownloadExecutor() {
+      return downloadExecutor;
+   }
+
+   /**
+    * Sets the executor, that the downloads, that are started afterwards, are written on.
+    * A download, that waits for data, does not occupy a thread of the executor.
+    * If the executor is <code>null</code>, every download is written by a thread of its own.
+    */
+   public synchronized void setDownloadExecutor(Executor downloadExecutor) {
+      this.downloadExecutor = downloadExecutor;
+      this.writerPool = null;
+   }
+
+   /**
+    * Writes the downloads, that are started afterwards, on a shared pool of <code>count</code> threads.
+    * A count of 0 starts a thread per download.
+    * Downloads, that are running already, keep the pool they have been started on,
+    * whose threads terminate when they are idle.
+    */
+   public synchronized void setWriterThreads(int count) {
+      if (count < 0)
+         throw new IllegalArgumentException("The number of writer threads must not be negative: " + count);
+
+      if (count == 0) {
+         setDownloadExecutor(null);
+         return;
+      }
+
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(count,
+                                                       count,
+                                                       WRITER_KEEP_ALIVE,
+                                                       TimeUnit.MILLISECONDS,
+                                                       new LinkedBlockingQueue<>(),
+                                                       r -> {
+         Thread thread = new Thread(r, "download-writer-" + threadCount.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      });
+      pool.allowCoreThreadTimeOut(true);
+      setDownloadExecutor(pool);
+      this.writerPool = pool;
+   }
+
+   /**
+    * @return The maximum number of bytes per second, that all the downloads together may receive, 0 if unlimited
+    */
+   public long getRateLimit() {
+      return rateLimiter.getRate();
+   }
+
+   /**
+    * Sets the maximum number of bytes per second, that all the downloads together may receive.
+    * The downloads take turns in receiving. Takes effect for the running downloads immediately.
+    *
+    * @param rateLimit The limit or 0 for unlimited
+    */
+   public void setRateLimit(long rateLimit) {
+      rateLimiter.setRate(rateLimit);
+      LOGGER.info("Global rate limit set to " + (rateLimit == 0 ? "unlimited" : rateLimit + " bytes/s"));
+   }
+
+   public WriteMode getWriteMode() {
+      return writeMode;
+   }
+
+   /**
+    * Sets the way, that downloads of known length are written to their targets.
+    * Downloads of unknown length are always streamed.
+    * Segmented downloads are always preallocated and written at the positions of their data,
+    * and copied into memory-mapped windows of their targets in {@link WriteMode#MAPPED}.
+    * Applies to downloads, that are requested afterwards.
+    */
+   public void setWriteMode(WriteMode writeMode) {
+      this.writeMode = Objects.requireNonNull(writeMode);
+   }
+
+   public ChecksumAlgorithm getChecksumAlgorithm() {
+      return checksumAlgorithm;
+   }
+
+   /**
+    * Sets the algorithm, that the downloads are checksummed with while they are written.
+    * Downloads with an expected checksum are always checksummed with the algorithm of that checksum.
+    * The data of segmented downloads is not written in order, so it can not be checksummed while it is written.
+    * Therefore no download is split into segments, while an algorithm is set,
+    * and downloads with an expected checksum are never split.
+    *
+    * @param checksumAlgorithm The algorithm or <code>null</code> to only checksum downloads with an expected checksum
+    */
+   public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+      this.checksumAlgorithm = checksumAlgorithm;
+   }
+
+   public synchronized long getProgressInterval() {
+      return progressInterval;
+   }
+
+   /**
+    * Sets the interval, in which the listeners of a download are notified about its progress.
+    * The bytes received and written in an interval are delivered as one event.
+    * Final states of the downloads are delivered immediately.
+    * A new interval takes effect for the running downloads as well.
+    * Turning the intervals off only takes effect for the downloads, that are created afterwards.
+    *
+    * @param progressInterval The interval in milliseconds or 0 to notify the listeners for every packet
+    */
+   public synchronized void setProgressInterval(long progressInterval) {
+      if (progressInterval < 0)
+         throw new IllegalArgumentException("The progress interval must not be negative: " + progressInterval);
+
+      if (progressDispatcher != null && progressInterval > 0)
+         progressDispatcher.setInterval(progressInterval);
+
+      this.progressInterval = progressInterval;
+   }
+
+   public long getReceiveWindowSize() {
+      return receiveWindowSize;
+   }
+
+   /**
+    * Sets the maximum number of bytes per download, that may be received but not yet written.
+    * A download, whose window is full, is paused, if range requests are enabled, and cancelled otherwise.
+    * Applies to downloads, that are requested afterwards.
+    */
+   public void setReceiveWindowSize(long receiveWindowSize) {
+      if (receiveWindowSize <= 0)
+         throw new IllegalArgumentException("The receive window size must be positive: " + receiveWindowSize);
+
+      this.receiveWindowSize = receiveWindowSize;
+   }
+
+   /**
+    * Starts to report the metrics of the downloads periodically to the log.
+    *
+    * @param interval The interval between two reports in milliseconds
+    * @param csvFile A file to append the reports to or <code>null</code>
+    *
+    * @throws IOException If the <code>csvFile</code> could not be opened
+    */
+   public synchronized void startMetricsReporter(long interval, File csvFile) throws IOException {
+      stopMetricsReporter();
+      MetricsReporter reporter = new MetricsReporter(metrics, interval, csvFile);
+      reporter.start();
+      this.metricsReporter = reporter;
+   }
+
+   public synchronized void stopMetricsReporter() {
+      if (metricsReporter != null) {
+         metricsReporter.stop();
+         metricsReporter = null;
+      }
+   }
+
+   public DownloadMetrics getMetrics() {
+      return metrics;
+   }
+
+   public ContentCache getContentCache() {
+      return contentCache;
+   }
+
+   /**
+    * Sets the cache, that downloads are served from and stored in.
+    * The previous cache is closed.
+    *
+    * @param contentCache The cache or <code>null</code> to load every download from the server
+    */
+   public synchronized void setContentCache(ContentCache contentCache) {
+      ContentCache old = this.contentCache;
+      this.contentCache = contentCache;
+      metrics.setContentCache(contentCache);
+      if (old != null && old != contentCache)
+         old.close();
+   }
+
    public void close() {
       cancelDownloads();
+      stopMetricsReporter();
+      metrics.unregisterMBean();
+      scheduler.close();
+      synchronized (this) {
+         if (writerPool != null)
+            writerPool.shutdown();
+         if (checksumPool != null)
+            checksumPool.shutdown();
+         if (progressDispatcher != null)
+            progressDispatcher.close();
+         if (contentCache != null)
+            contentCache.close();
+      }
+   }
+
+   /**
+    * Thrown, if a download can not be resumed at all,
+    * e.g. because its file has changed on the server or the server does not answer range requests.
+    */
+   private static class NotResumableException extends IOException {
+      private static final long serialVersionUID = 6180327593174260915L;
+
+      private NotResumableException(String msg) {
+         super(msg);
+      }
+   }
+
+   /**
+    * Requests the ranges of a download, that is resumed or paused, on new channels of the controller.
+    */
+   private class ChannelRangeRequester implements ClientDownload.RangeRequester {
+      private final DownloadMetadata metadata;
+      /** The codecs, that the download has been requested with. */
+      private final Set<PayloadCodec> codecs;
+
+      private ChannelRangeRequester(DownloadMetadata metadata, Set<PayloadCodec> codecs) {
+         this.metadata = metadata;
+         this.codecs = codecs;
+      }
+
+      @Override
+      public Channel<DownloadPacket> request(long position, long length) throws IOException {
+         return requestRange(metadata, position, length, codecs);
+      }
+
+      @Override
+      public void release(Channel<DownloadPacket> channel) {
+         controller.closeDownloadChannel(channel);
+      }
+   }
+
+   /**
+    * A download, that has been requested, but is not created yet.
+    */
+   private static class Preparation {
+      private final DownloadMetadata metadata;
+      private Channel<DownloadPacket> channel;
+      private final DownloadBatch.Item item;
+      private DownloadSidecar partial;
+      private boolean partialLookedUp;
+      private long offset;
+      /** The codecs, that the download is requested with. */
+      private Set<PayloadCodec> codecs = Collections.emptySet();
+      private CompletableFuture<DownloadHeaderPacket> header;
+      private String validator;
+      private ClientDownload download;
+
+      private Preparation(DownloadMetadata metadata, DownloadBatch.Item item, Channel<DownloadPacket> channel) {
+         this.metadata = metadata;
+         this.item = item;
+         this.channel = channel;
+         if (metadata.isTargetSpecified())
+            findPartial();
+      }
+
+      /**
+       * Looks for a partial download of the target, that is to be resumed.
+       *
+       * @return <code>true</code> if a partial download has been found
+       */
+      private boolean findPartial() {
+         File target = targetOf(metadata);
+         this.partialLookedUp = true;
+         this.partial = DownloadSidecar.findPartial(target, metadata.getUrl());
+         if (partial == null)
+            return false;
+
+         this.offset = target.length();
+         LOGGER.info("Found partial download " + partial + ". Resuming at " + offset);
+         return true;
+      }
+
+      /**
+       * Gives up the partial download, so the download is loaded from the beginning.
+       */
+      private void restart() {
+         partial.delete();
+         this.partial = null;
+         this.offset = 0;
+      }
+
+      private Preparation(DownloadMetadata metadata, Channel<DownloadPacket> channel) {
+         this(metadata, null, channel);
+      }
+
+      private Preparation(DownloadBatch.Item item, Channel<DownloadPacket> channel) {
+         this(item.getMetadata(), item, channel);
+      }
    }
 }
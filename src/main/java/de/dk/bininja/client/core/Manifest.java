@@ -0,0 +1,318 @@
+package de.dk.bininja.client.core;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.util.StringUtils;
+
+/**
+ * Reads the downloads of a manifest one line at a time, so manifests of any size can be processed.
+ * Every line is either a JSON object with the fields <code>url</code>, <code>target</code>,
+ * <code>checksum</code> and <code>limit</code> or a CSV record with these fields in this order.
+ * Only the url is mandatory. A target, that ends with a separator or is an existing directory,
+ * is the directory, that the file is stored in under the name announced by the server.
+ * The target defaults to the working directory. A first CSV record starting with <code>url</code> is a header.
+ * Blank lines and lines starting with <code>#</code> are skipped.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class Manifest implements Closeable {
+   private static final String KEY_URL = "url";
+   private static final String KEY_TARGET = "target";
+   private static final String KEY_CHECKSUM = "checksum";
+   private static final String KEY_LIMIT = "limit";
+   private static final String[] CSV_FIELDS = {KEY_URL, KEY_TARGET, KEY_CHECKSUM, KEY_LIMIT};
+
+   private final File file;
+   private final BufferedReader in;
+   private long line;
+
+   public Manifest(File file) throws IOException {
+      this.file = file;
+      this.in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+   }
+
+   /**
+    * Reads the next download of the manifest.
+    * A line, that can not be parsed, is returned as an entry with an error instead of metadata,
+    * so a single broken line does not stop the whole manifest.
+    *
+    * @return The next entry or <code>null</code> if the end of the manifest has been reached
+    *
+    * @throws IOException If the manifest could not be read
+    */
+   public Entry next() throws IOException {
+      while (true) {
+         String text = in.readLine();
+         if (text == null)
+            return null;
+
+         line++;
+         text = text.trim();
+         if (text.isEmpty() || text.startsWith("#"))
+            continue;
+
+         Map<String, String> fields;
+         try {
+            fields = text.startsWith("{") ? parseJson(text) : parseCsv(text);
+         } catch (IllegalArgumentException e) {
+            return new Entry(line, null, "Invalid line: " + e.getMessage());
+         }
+         if (fields == null)
+            continue;
+
+         try {
+            return new Entry(line, toMetadata(fields), null);
+         } catch (MalformedURLException | IllegalArgumentException e) {
+            return new Entry(line, null, e.getMessage());
+         }
+      }
+   }
+
+   private DownloadMetadata toMetadata(Map<String, String> fields) throws MalformedURLException {
+      String url = fields.get(KEY_URL);
+      if (StringUtils.isBlank(url))
+         throw new IllegalArgumentException("The url is missing");
+
+      DownloadMetadata metadata = new DownloadMetadata(new URL(url.trim()));
+      String target = fields.get(KEY_TARGET);
+      if (StringUtils.isBlank(target)) {
+         metadata.setTargetDirectory(new File("."));
+      } else {
+         File targetFile = new File(target.trim());
+         if (target.endsWith("/") || target.endsWith(File.separator) || targetFile.isDirectory()) {
+            metadata.setTargetDirectory(targetFile);
+         } else {
+            File directory = targetFile.getParentFile();
+            metadata.setTargetDirectory(directory == null ? new File(".") : directory);
+            metadata.setFileName(targetFile.getName());
+         }
+      }
+
+      String checksum = fields.get(KEY_CHECKSUM);
+      if (!StringUtils.isBlank(checksum))
+         metadata.setChecksum(checksum.trim());
+
+      String limit = fields.get(KEY_LIMIT);
+      if (!StringUtils.isBlank(limit)) {
+         try {
+            metadata.setRateLimit(Long.parseLong(limit.trim()));
+         } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+         }
+      }
+      return metadata;
+   }
+
+   /**
+    * @return The fields of the record or <code>null</code> if the record is the header
+    */
+   private Map<String, String> parseCsv(String text) {
+      List<String> values = new ArrayList<>(CSV_FIELDS.length);
+      StringBuilder value = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < text.length(); i++) {
+         char c = text.charAt(i);
+         if (quoted) {
+            if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+               value.append('"');
+               i++;
+            } else if (c == '"') {
+               quoted = false;
+            } else {
+               value.append(c);
+            }
+         } else if (c == '"') {
+            quoted = true;
+         } else if (c == ',') {
+            values.add(value.toString());
+            value.setLength(0);
+         } else {
+            value.append(c);
+         }
+      }
+      if (quoted)
+         throw new IllegalArgumentException("Unterminated quote");
+
+      values.add(value.toString());
+      if (values.size() > CSV_FIELDS.length)
+         throw new IllegalArgumentException("Too many fields: " + values.size());
+
+      if (line == 1 && values.get(0).trim().equalsIgnoreCase(KEY_URL))
+         return null;
+
+      Map<String, String> fields = new HashMap<>();
+      for (int i = 0; i < values.size(); i++)
+         fields.put(CSV_FIELDS[i], values.get(i));
+
+      return fields;
+   }
+
+   /**
+    * Parses a flat JSON object, whose values are strings, numbers, booleans or null.
+    */
+   private static Map<String, String> parseJson(String text) {
+      Map<String, String> fields = new HashMap<>();
+      int[] pos = {1};
+      skipWhitespace(text, pos);
+      if (peek(text, pos) == '}')
+         return fields;
+
+      while (true) {
+         skipWhitespace(text, pos);
+         String key = parseString(text, pos);
+         skipWhitespace(text, pos);
+         expect(text, pos, ':');
+         skipWhitespace(text, pos);
+         String value;
+         if (peek(text, pos) == '"') {
+            value = parseString(text, pos);
+         } else {
+            int start = pos[0];
+            while (pos[0] < text.length() && ",} \t".indexOf(text.charAt(pos[0])) < 0)
+               pos[0]++;
+            value = text.substring(start, pos[0]);
+            if (value.isEmpty())
+               throw new IllegalArgumentException("Missing value of " + key);
+            if (value.equals("null"))
+               value = null;
+         }
+         fields.put(key, value);
+         skipWhitespace(text, pos);
+         char c = peek(text, pos);
+         pos[0]++;
+         if (c == '}')
+            return fields;
+         if (c != ',')
+            throw new IllegalArgumentException("Expected , or } at " + (pos[0] - 1));
+      }
+   }
+
+   private static String parseString(String text, int[] pos) {
+      expect(text, pos, '"');
+      StringBuilder result = new StringBuilder();
+      while (true) {
+         char c = peek(text, pos);
+         pos[0]++;
+         if (c == '"')
+            return result.toString();
+         if (c != '\\') {
+            result.append(c);
+            continue;
+         }
+
+         char escaped = peek(text, pos);
+         pos[0]++;
+         switch (escaped) {
+         case 'n':
+            result.append('\n');
+            break;
+         case 't':
+            result.append('\t');
+            break;
+         case 'r':
+            result.append('\r');
+            break;
+         case 'b':
+            result.append('\b');
+            break;
+         case 'f':
+            result.append('\f');
+            break;
+         case 'u':
+            if (pos[0] + 4 > text.length())
+               throw new IllegalArgumentException("Incomplete unicode escape");
+            try {
+               result.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+            } catch (NumberFormatException e) {
+               throw new IllegalArgumentException("Invalid unicode escape at " + pos[0]);
+            }
+            pos[0] += 4;
+            break;
+         default:
+            result.append(escaped);
+         }
+      }
+   }
+
+   private static char peek(String text, int[] pos) {
+      if (pos[0] >= text.length())
+         throw new IllegalArgumentException("Unexpected end of line");
+
+      return text.charAt(pos[0]);
+   }
+
+   private static void expect(String text, int[] pos, char expected) {
+      if (peek(text, pos) != expected)
+         throw new IllegalArgumentException("Expected " + expected + " at " + pos[0]);
+
+      pos[0]++;
+   }
+
+   private static void skipWhitespace(String text, int[] pos) {
+      while (pos[0] < text.length() && Character.isWhitespace(text.charAt(pos[0])))
+         pos[0]++;
+   }
+
+   /**
+    * @return The number of the line, that has been read last, starting at 1
+    */
+   public long getLine() {
+      return line;
+   }
+
+   public File getFile() {
+      return file;
+   }
+
+   @Override
+   public void close() throws IOException {
+      in.close();
+   }
+
+   /**
+    * A download of the manifest or a line, that could not be parsed.
+    */
+   public static class Entry {
+      private final long line;
+      private final DownloadMetadata metadata;
+      private final String error;
+
+      private Entry(long line, DownloadMetadata metadata, String error) {
+         this.line = line;
+         this.metadata = metadata;
+         this.error = error;
+      }
+
+      public long getLine() {
+         return line;
+      }
+
+      /**
+       * @return The metadata of the download or <code>null</code> if the line could not be parsed
+       */
+      public DownloadMetadata getMetadata() {
+         return metadata;
+      }
+
+      /**
+       * @return Why the line could not be parsed or <code>null</code>
+       */
+      public String getError() {
+         return error;
+      }
+   }
+}
@@ -0,0 +1,408 @@
+package de.dk.bininja.client.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.client.net.StreamingChecksum;
+import de.dk.bininja.net.DownloadState;
+
+/**
+ * Loads the downloads of a {@link Manifest} while it is read.
+ * At most <code>window</code> downloads are in flight at a time. The next line is only read,
+ * when a download has terminated, so the memory needed does not depend on the size of the manifest.
+ * <p>
+ * The outcome of every line is appended to the result log as a JSON object.
+ * A checkpoint file next to the manifest records the line, up to which every line has been finished.
+ * An interrupted run continues behind that line, when the same manifest is run again.
+ * The checkpoint is deleted after the run has finished all the lines.
+ * </p>
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ManifestRun {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ManifestRun.class);
+
+   public static final int DEFAULT_WINDOW = 64;
+   public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+   public static final String RESULTS_SUFFIX = ".results.jsonl";
+
+   private static final String KEY_MANIFEST = "manifest";
+   private static final String KEY_LINE = "line";
+   private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+   private final File manifestFile;
+   private final File checkpointFile;
+   private final File resultsFile;
+   private final Semaphore window;
+
+   /** The lines, that are in flight. */
+   private final TreeSet<Long> pending = new TreeSet<>();
+   /** The last line, that has been read. */
+   private long lastLine;
+   private long lastCheckpoint = System.nanoTime();
+   private Writer results;
+   private volatile boolean cancelled;
+
+   private long skipped;
+   private long complete;
+   private long cached;
+   private long failed;
+   private long bytes;
+
+   /**
+    * @param manifestFile The manifest to load
+    * @param window The maximum number of downloads in flight
+    * @param resultsFile The file to append the results to
+    * or <code>null</code> to append them to the manifest name with {@link #RESULTS_SUFFIX}
+    */
+   public ManifestRun(File manifestFile, int window, File resultsFile) {
+      if (window <= 0)
+         throw new IllegalArgumentException("The window must be positive: " + window);
+
+      this.manifestFile = Objects.requireNonNull(manifestFile);
+      this.checkpointFile = new File(manifestFile.getPath() + CHECKPOINT_SUFFIX);
+      this.resultsFile = resultsFile == null ? new File(manifestFile.getPath() + RESULTS_SUFFIX) : resultsFile;
+      this.window = new Semaphore(window);
+   }
+
+   /**
+    * Reads the manifest and hands every download to the <code>loader</code>.
+    * Returns after all the downloads have terminated or the run has been cancelled.
+    *
+    * @throws IOException If the manifest could not be read or the results could not be written
+    * @throws InterruptedException If the calling thread is interrupted while waiting for the downloads
+    */
+   public void run(Loader loader) throws IOException, InterruptedException {
+      long resumeAfter = readCheckpoint();
+      if (resumeAfter > 0)
+         LOGGER.info("Continuing the manifest " + manifestFile.getAbsolutePath() + " behind line " + resumeAfter);
+
+      OutputStream out = new FileOutputStream(resultsFile, true);
+      try (Manifest manifest = new Manifest(manifestFile);
+           Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+         synchronized (this) {
+            this.results = writer;
+         }
+
+         Manifest.Entry entry;
+         while (!cancelled && (entry = manifest.next()) != null) {
+            if (entry.getLine() <= resumeAfter) {
+               skipped++;
+               continue;
+            }
+
+            window.acquire();
+            Item item = new Item(entry);
+            synchronized (this) {
+               pending.add(entry.getLine());
+               this.lastLine = entry.getLine();
+            }
+            if (entry.getMetadata() == null) {
+               item.finish("INVALID", 0, null, entry.getError());
+               continue;
+            }
+
+            try {
+               loader.load(item);
+            } catch (RuntimeException e) {
+               LOGGER.error("Error loading line " + entry.getLine() + " of the manifest", e);
+               item.failed(e.toString());
+            }
+         }
+
+         synchronized (this) {
+            while (!cancelled && !pending.isEmpty())
+               wait();
+
+            checkpoint();
+            this.results = null;
+         }
+      }
+
+      if (!cancelled && checkpointFile.exists() && !checkpointFile.delete())
+         LOGGER.warn("Could not delete the checkpoint " + checkpointFile.getAbsolutePath());
+   }
+
+   /**
+    * Stops reading the manifest. The downloads in flight are not waited for.
+    * The checkpoint keeps the lines, that have not been finished, for the next run.
+    */
+   public void cancel() {
+      this.cancelled = true;
+      synchronized (this) {
+         notifyAll();
+      }
+   }
+
+   /**
+    * @return The line, behind which the last run of the manifest has stopped
+    * or 0 if there is no checkpoint of this manifest
+    */
+   private long readCheckpoint() {
+      if (!checkpointFile.isFile())
+         return 0;
+
+      Properties properties = new Properties();
+      try (InputStream in = new FileInputStream(checkpointFile)) {
+         properties.load(in);
+         if (!manifestFile.getAbsolutePath().equals(properties.getProperty(KEY_MANIFEST))) {
+            LOGGER.warn("The checkpoint " + checkpointFile.getAbsolutePath() + " belongs to another manifest.");
+            return 0;
+         }
+         return Long.parseLong(properties.getProperty(KEY_LINE, "0"));
+      } catch (IOException | NumberFormatException e) {
+         LOGGER.warn("Could not read the checkpoint " + checkpointFile.getAbsolutePath(), e);
+         return 0;
+      }
+   }
+
+   /**
+    * Flushes the results and records the line, up to which every line has been finished.
+    * The results are flushed first, so the checkpoint never covers a line without a result.
+    */
+   private synchronized void checkpoint() {
+      long line = pending.isEmpty() ? lastLine : pending.first() - 1;
+      Properties properties = new Properties();
+      properties.setProperty(KEY_MANIFEST, manifestFile.getAbsolutePath());
+      properties.setProperty(KEY_LINE, Long.toString(line));
+      File temp = new File(checkpointFile.getPath() + ".tmp");
+      try {
+         if (results != null)
+            results.flush();
+
+         try (OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, "Progress of the BiNinja manifest " + manifestFile.getName());
+         }
+         Files.move(temp.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+         LOGGER.warn("Could not write the checkpoint " + checkpointFile.getAbsolutePath(), e);
+      }
+      this.lastCheckpoint = System.nanoTime();
+   }
+
+   private synchronized void finished(Item item, String result, long written, String checksum, String error) {
+      DownloadMetadata metadata = item.entry.getMetadata();
+      StringBuilder json = new StringBuilder(256);
+      json.append("{\"line\":").append(item.entry.getLine());
+      if (metadata != null) {
+         appendField(json, "url", metadata.getUrl().toString());
+         if (metadata.isTargetSpecified())
+            appendField(json, "target", new File(metadata.getTargetDirectory(), metadata.getFileName()).getPath());
+      }
+      appendField(json, "result", result);
+      json.append(",\"bytes\":").append(written);
+      json.append(",\"millis\":").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - item.startNanos));
+      if (checksum != null)
+         appendField(json, "checksum", checksum);
+      if (error != null)
+         appendField(json, "error", error);
+      json.append("}\n");
+
+      if (results != null) {
+         try {
+            results.write(json.toString());
+         } catch (IOException e) {
+            LOGGER.error("Could not write the result of line " + item.entry.getLine() + " to "
+                         + resultsFile.getAbsolutePath(), e);
+         }
+      }
+
+      switch (result) {
+      case "COMPLETE":
+         complete++;
+         bytes += written;
+         break;
+      case "CACHED":
+         cached++;
+         break;
+      default:
+         failed++;
+      }
+
+      pending.remove(item.entry.getLine());
+      if (System.nanoTime() - lastCheckpoint >= CHECKPOINT_INTERVAL)
+         checkpoint();
+
+      notifyAll();
+   }
+
+   private static void appendField(StringBuilder json, String name, String value) {
+      json.append(",\"").append(name).append("\":\"");
+      for (int i = 0; i < value.length(); i++) {
+         char c = value.charAt(i);
+         switch (c) {
+         case '"':
+            json.append("\\\"");
+            break;
+         case '\\':
+            json.append("\\\\");
+            break;
+         case '\n':
+            json.append("\\n");
+            break;
+         case '\r':
+            json.append("\\r");
+            break;
+         case '\t':
+            json.append("\\t");
+            break;
+         default:
+            if (c < 0x20)
+               json.append(String.format("\\u%04x", (int) c));
+            else
+               json.append(c);
+         }
+      }
+      json.append('"');
+   }
+
+   public File getResultsFile() {
+      return resultsFile;
+   }
+
+   public File getCheckpointFile() {
+      return checkpointFile;
+   }
+
+   /**
+    * @return The number of lines, that have been skipped, because a previous run has finished them
+    */
+   public synchronized long getSkippedCount() {
+      return skipped;
+   }
+
+   public synchronized long getCompleteCount() {
+      return complete;
+   }
+
+   public synchronized long getCachedCount() {
+      return cached;
+   }
+
+   /**
+    * @return The number of lines, that could not be parsed or whose downloads failed or have been cancelled
+    */
+   public synchronized long getFailedCount() {
+      return failed;
+   }
+
+   /**
+    * @return The number of bytes written by the complete downloads
+    */
+   public synchronized long getBytes() {
+      return bytes;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return String.format("ManifestRun { manifest=%s, complete=%d, cached=%d, failed=%d, skipped=%d, pending=%d }",
+                           manifestFile.getPath(),
+                           complete,
+                           cached,
+                           failed,
+                           skipped,
+                           pending.size());
+   }
+
+   /**
+    * Requests the downloads of a manifest.
+    */
+   @FunctionalInterface
+   public static interface Loader {
+      /**
+       * Requests the download of the <code>item</code>. May return before the download has been started.
+       * The outcome has to be reported to the item exactly once, by any thread.
+       */
+      public void load(Item item);
+   }
+
+   /**
+    * A download of the manifest, that is in flight.
+    */
+   public class Item {
+      private final Manifest.Entry entry;
+      private final long startNanos = System.nanoTime();
+      private final AtomicBoolean finished = new AtomicBoolean();
+
+      private Item(Manifest.Entry entry) {
+         this.entry = entry;
+      }
+
+      public DownloadMetadata getMetadata() {
+         return entry.getMetadata();
+      }
+
+      public long getLine() {
+         return entry.getLine();
+      }
+
+      /**
+       * Reports, that the download has been started. Its result is recorded, as soon as it has terminated.
+       */
+      public void started(ClientDownload download) {
+         download.whenTerminated(this::terminated);
+      }
+
+      private void terminated(ClientDownload download) {
+         DownloadState state = download.getDownloadState();
+         StreamingChecksum checksum = download.getChecksum();
+         String error = null;
+         if (download.getException() != null)
+            error = download.getException().getMessage();
+         else if (download.getBreakUpMessage() != null)
+            error = download.getBreakUpMessage();
+
+         finish(state.name(),
+                download.getWrittenBytes(),
+                checksum == null ? null : checksum.getChecksum(),
+                error);
+      }
+
+      /**
+       * Reports, that the download has been served from the content cache.
+       */
+      public void cached() {
+         finish("CACHED", 0, null, null);
+      }
+
+      /**
+       * Reports, that the download could not be requested or started.
+       */
+      public void failed(String error) {
+         finish("FAILED", 0, null, error);
+      }
+
+      private void finish(String result, long written, String checksum, String error) {
+         if (!finished.compareAndSet(false, true))
+            return;
+
+         try {
+            finished(this, result, written, checksum, error);
+         } finally {
+            window.release();
+         }
+      }
+   }
+}
@@ -0,0 +1,152 @@
+package de.dk.bininja.client.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically reports the {@link DownloadMetrics} to the log and optionally appends them to a CSV file.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class MetricsReporter {
+   private static final Logger LOGGER = LoggerFactory.getLogger(MetricsReporter.class);
+
+   public static final long DEFAULT_INTERVAL = 10000;
+
+   private static final String CSV_HEADER = "timestamp,active,finished,queue_depth,wire_bytes,written_bytes,"
+                                            + "throughput,write_p50_ms,write_p99_ms,header_p50_ms,header_p99_ms,"
+                                            + "channel_p50_ms,channel_p99_ms,connection_p50_ms,connection_p99_ms,"
+                                            + "key_p50_ms,key_p99_ms";
+
+   private final DownloadMetrics metrics;
+   private final long interval;
+   private final File csvFile;
+
+   private ScheduledExecutorService timer;
+   private Writer csv;
+
+   /**
+    * @param metrics The metrics to report
+    * @param interval The interval between two reports in milliseconds
+    * @param csvFile The file to append the reports to or <code>null</code> to only log them
+    */
+   public MetricsReporter(DownloadMetrics metrics, long interval, File csvFile) {
+      if (interval <= 0)
+         throw new IllegalArgumentException("The interval must be positive: " + interval);
+
+      this.metrics = Objects.requireNonNull(metrics);
+      this.interval = interval;
+      this.csvFile = csvFile;
+   }
+
+   public synchronized void start() throws IOException {
+      if (timer != null)
+         throw new IllegalStateException("The reporter has already been started.");
+
+      if (csvFile != null) {
+         boolean exists = csvFile.length() > 0;
+         this.csv = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile, true),
+                                                              StandardCharsets.UTF_8));
+         if (!exists) {
+            csv.write(CSV_HEADER);
+            csv.write(System.lineSeparator());
+         }
+      }
+
+      this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread thread = new Thread(r, "metrics-reporter");
+         thread.setDaemon(true);
+         return thread;
+      });
+      timer.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+   }
+
+   private synchronized void report() {
+      LOGGER.info(String.format("Downloads: %d active, %d finished, %d buffers queued, %.0f bytes/s, "
+                                + "%d bytes on the wire, %d bytes written, write %s, header %s, channel %s, "
+                                + "connection %s, key %s",
+                                metrics.getActiveDownloads(),
+                                metrics.getFinishedDownloads(),
+                                metrics.getQueueDepth(),
+                                metrics.getThroughput(),
+                                metrics.getWireBytes(),
+                                metrics.getWrittenBytes(),
+                                metrics.getWriteLatency(),
+                                metrics.getHeaderRoundTrip(),
+                                metrics.getChannelSetup(),
+                                metrics.getConnectionSetup(),
+                                metrics.getKeyArrangement()));
+
+      ContentCache cache = metrics.getContentCache();
+      if (cache != null)
+         LOGGER.info(cache.toString());
+
+      for (String summary : metrics.getDownloadSummaries())
+         LOGGER.debug(summary);
+
+      if (csv == null)
+         return;
+
+      try {
+         csv.write(String.format(Locale.ROOT,
+                                 "%d,%d,%d,%d,%d,%d,%.0f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                                 System.currentTimeMillis(),
+                                 metrics.getActiveDownloads(),
+                                 metrics.getFinishedDownloads(),
+                                 metrics.getQueueDepth(),
+                                 metrics.getWireBytes(),
+                                 metrics.getWrittenBytes(),
+                                 metrics.getThroughput(),
+                                 metrics.getWriteLatencyMedian(),
+                                 metrics.getWriteLatency99thPercentile(),
+                                 metrics.getHeaderRoundTripMedian(),
+                                 metrics.getHeaderRoundTrip99thPercentile(),
+                                 metrics.getChannelSetupMedian(),
+                                 metrics.getChannelSetup99thPercentile(),
+                                 metrics.getConnectionSetupMedian(),
+                                 metrics.getConnectionSetup99thPercentile(),
+                                 metrics.getKeyArrangementMedian(),
+                                 metrics.getKeyArrangement99thPercentile()));
+         csv.write(System.lineSeparator());
+         csv.flush();
+      } catch (IOException e) {
+         LOGGER.warn("Could not write the metrics to " + csvFile.getAbsolutePath() + ". Only logging them anymore.", e);
+         closeCsv();
+      }
+   }
+
+   private void closeCsv() {
+      try {
+         csv.close();
+      } catch (IOException e) {
+         LOGGER.warn("Error closing " + csvFile.getAbsolutePath(), e);
+      }
+      csv = null;
+   }
+
+   public synchronized void stop() {
+      if (timer == null)
+         return;
+
+      timer.shutdownNow();
+      timer = null;
+      if (csv != null) {
+         report();
+         closeCsv();
+      }
+   }
+}
@@ -0,0 +1,58 @@
+package de.dk.bininja.client.core;
+
+/**
+ * The ways, that a download of known length can be written to its target.
+ * Downloads of unknown length are always streamed.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public enum WriteMode {
+   /** The target is created empty and extended by every write. */
+   STREAM("stream"),
+   /**
+    * The target is extended to the length of the download before it is loaded
+    * and the data is written at its position through a FileChannel.
+    * The download can not be resumed, because the length of the target does not tell the written bytes.
+    */
+   POSITIONAL("positional"),
+   /**
+    * The target is extended to the length of the download before it is loaded
+    * and the data is copied into memory-mapped windows of the target.
+    * The download can not be resumed, because the length of the target does not tell the written bytes.
+    */
+   MAPPED("mapped");
+
+   private final String name;
+
+   private WriteMode(String name) {
+      this.name = name;
+   }
+
+   /**
+    * @return The write mode of that name, case insensitive, or <code>null</code> if there is none
+    */
+   public static WriteMode byName(String name) {
+      for (WriteMode mode : values()) {
+         if (mode.name.equalsIgnoreCase(name))
+            return mode;
+      }
+      return null;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   /**
+    * @return <code>true</code> if the target is extended to its final length before it is loaded
+    */
+   public boolean isPreallocating() {
+      return this != STREAM;
+   }
+
+   @Override
+   public String toString() {
+      return name;
+   }
+}
@@ -12,6 +12,8 @@ import org.slf4j.LoggerFactory;
 import de.dk.bininja.InvalidArgumentException;
 import de.dk.bininja.client.controller.MasterControlProgram;
 import de.dk.bininja.client.core.Logic;
+import de.dk.bininja.client.core.WriteMode;
+import de.dk.bininja.client.net.ChecksumAlgorithm;
 import de.dk.bininja.client.ui.UI;
 import de.dk.bininja.client.ui.UIController;
 import de.dk.bininja.opt.ParsedSecurityArguments;
@@ -35,6 +37,7 @@ public class Entrypoint {
    }
 
    public static void main(String... args) {
+      StartupTimer timer = new StartupTimer();
       ParsedArguments parsedArgs;
       try {
          parsedArgs = parseArgs(args);
@@ -46,7 +49,9 @@ public class Entrypoint {
       if (parsedArgs == null)
          return;
 
+      timer.phase("arguments");
       MasterControlProgram mcp = new MasterControlProgram();
+      mcp.setStartupTimer(timer);
       Logic processor = new Logic(mcp);
       UI ui = null;
       String className = parsedArgs.isCli() ? COMMANDLINE_UI_CLASSNAME : GRAPHICAL_UI_CLASSNAME;
@@ -67,6 +72,7 @@ public class Entrypoint {
       if (ui == null)
          System.exit(0);
 
+      timer.phase("ui");
       mcp.start(processor, ui, parsedArgs);
    }
 
@@ -158,14 +164,134 @@ public class Entrypoint {
          parsedArgs.setScript(script);
       }
       parsedArgs.setCommand(result.getOptionValue(Option.COMMAND.getLongKey()));
+      parsedArgs.setGatheringWrites(result.isOptionPresent(Option.GATHER.getLongKey()));
+      parsedArgs.setCompression(result.isOptionPresent(Option.COMPRESS.getLongKey()));
+      parsedArgs.setRangeRequests(result.isOptionPresent(Option.RANGE_REQUESTS.getLongKey()));
+      parsedArgs.setZeroFill(result.isOptionPresent(Option.ZERO_FILL.getLongKey()));
 
-      try {
-         parsedArgs.setSecArgs(ParsedSecurityArguments.parse(result.getCommandValue(ParsedSecurityArguments.NAME)));
-      } catch (IOException e) {
-         System.out.println(e.getMessage());
-         throw new ArgumentParseException(e);
+      String windowOption = result.getOptionValue(Option.RECEIVE_WINDOW.getLongKey());
+      if (windowOption != null)
+         parsedArgs.setReceiveWindowSize(parsePositive(windowOption, "receive window size"));
+
+      String segmentsOption = result.getOptionValue(Option.SEGMENTS.getLongKey());
+      if (segmentsOption != null)
+         parsedArgs.setSegmentCount(parsePositiveInt(segmentsOption, "segment count"));
+
+      String thresholdOption = result.getOptionValue(Option.SEGMENT_THRESHOLD.getLongKey());
+      if (thresholdOption != null)
+         parsedArgs.setSegmentThreshold(parsePositive(thresholdOption, "segment threshold"));
+
+      String connectionsOption = result.getOptionValue(Option.CONNECTIONS.getLongKey());
+      if (connectionsOption != null)
+         parsedArgs.setConnectionCount(parsePositiveInt(connectionsOption, "connection count"));
+
+      String maxDownloadsOption = result.getOptionValue(Option.MAX_DOWNLOADS.getLongKey());
+      if (maxDownloadsOption != null)
+         parsedArgs.setMaxRunningDownloads(parsePositiveInt(maxDownloadsOption, "maximum of running downloads"));
+
+      String writerThreadsOption = result.getOptionValue(Option.WRITER_THREADS.getLongKey());
+      if (writerThreadsOption != null)
+         parsedArgs.setWriterThreads(parsePositiveInt(writerThreadsOption, "number of writer threads"));
+
+      String metricsOption = result.getOptionValue(Option.METRICS.getLongKey());
+      if (metricsOption != null)
+         parsedArgs.setMetricsInterval(parsePositive(metricsOption, "metrics interval"));
+
+      String metricsCsvOption = result.getOptionValue(Option.METRICS_CSV.getLongKey());
+      if (metricsCsvOption != null)
+         parsedArgs.setMetricsCsv(new File(metricsCsvOption));
+
+      String cacheOption = result.getOptionValue(Option.CACHE.getLongKey());
+      if (cacheOption != null)
+         parsedArgs.setCacheDirectory(new File(cacheOption));
+
+      String cacheSizeOption = result.getOptionValue(Option.CACHE_SIZE.getLongKey());
+      if (cacheSizeOption != null)
+         parsedArgs.setCacheSize(parsePositive(cacheSizeOption, "cache size"));
+
+      String cacheMaxAgeOption = result.getOptionValue(Option.CACHE_MAX_AGE.getLongKey());
+      if (cacheMaxAgeOption != null)
+         parsedArgs.setCacheMaxAge(parseNonNegative(cacheMaxAgeOption, "cache max age"));
+
+      parsedArgs.setCacheLinks(result.isOptionPresent(Option.CACHE_LINKS.getLongKey()));
+
+      String checksumOption = result.getOptionValue(Option.CHECKSUM.getLongKey());
+      if (checksumOption != null) {
+         ChecksumAlgorithm algorithm = ChecksumAlgorithm.byName(checksumOption);
+         if (algorithm == null)
+            throw new InvalidArgumentException("Invalid checksum algorithm: " + checksumOption);
+
+         parsedArgs.setChecksumAlgorithm(algorithm);
       }
 
+      String writeModeOption = result.getOptionValue(Option.WRITE_MODE.getLongKey());
+      if (writeModeOption != null) {
+         WriteMode mode = WriteMode.byName(writeModeOption);
+         if (mode == null)
+            throw new InvalidArgumentException("Invalid write mode: " + writeModeOption);
+
+         parsedArgs.setWriteMode(mode);
+      }
+
+      String limitOption = result.getOptionValue(Option.LIMIT.getLongKey());
+      if (limitOption != null)
+         parsedArgs.setRateLimit(parsePositive(limitOption, "rate limit"));
+
+      String reconnectOption = result.getOptionValue(Option.RECONNECT.getLongKey());
+      if (reconnectOption != null)
+         parsedArgs.setReconnectAttempts(parseNonNegativeInt(reconnectOption, "number of reconnect attempts"));
+
+      String scriptParallelismOption = result.getOptionValue(Option.SCRIPT_PARALLELISM.getLongKey());
+      if (scriptParallelismOption != null)
+         parsedArgs.setScriptParallelism(parsePositiveInt(scriptParallelismOption, "script parallelism"));
+
+      String manifestOption = result.getOptionValue(Option.MANIFEST.getLongKey());
+      if (manifestOption != null)
+         parsedArgs.setManifest(new File(manifestOption));
+
+      String manifestWindowOption = result.getOptionValue(Option.MANIFEST_WINDOW.getLongKey());
+      if (manifestWindowOption != null)
+         parsedArgs.setManifestWindow(parsePositiveInt(manifestWindowOption, "manifest window"));
+
+      String manifestResultsOption = result.getOptionValue(Option.MANIFEST_RESULTS.getLongKey());
+      if (manifestResultsOption != null)
+         parsedArgs.setManifestResults(new File(manifestResultsOption));
+
+      String progressIntervalOption = result.getOptionValue(Option.PROGRESS_INTERVAL.getLongKey());
+      if (progressIntervalOption != null)
+         parsedArgs.setProgressInterval(parseNonNegative(progressIntervalOption, "progress interval"));
+
+      parsedArgs.setSecModel(result.getCommandValue(ParsedSecurityArguments.NAME));
+
       return parsedArgs;
    }
+
+   private static long parsePositive(String value, String name) throws InvalidArgumentException {
+      long number;
+      try {
+         number = Long.parseLong(value);
+      } catch (NumberFormatException e) {
+         throw new InvalidArgumentException("Invalid " + name + ": " + value);
+      }
+      if (number <= 0)
+         throw new InvalidArgumentException("Invalid " + name + ": " + value);
+
+      return number;
+   }
+
+   private static long parseNonNegative(String value, String name) throws InvalidArgumentException {
+      return "0".equals(value.trim()) ? 0 : parsePositive(value.trim(), name);
+   }
+
+   private static int parseNonNegativeInt(String value, String name) throws InvalidArgumentException {
+      return "0".equals(value.trim()) ? 0 : parsePositiveInt(value.trim(), name);
+   }
+
+   private static int parsePositiveInt(String value, String name) throws InvalidArgumentException {
+      long number = parsePositive(value, name);
+      if (number > Integer.MAX_VALUE)
+         throw new InvalidArgumentException("Invalid " + name + ": " + value);
+
+      return (int) number;
+   }
 }
\ No newline at end of file
@@ -2,6 +2,11 @@ package de.dk.bininja.client.entrypoint;
 
 import java.util.Objects;
 
+import de.dk.bininja.client.controller.MasterControlProgram;
+import de.dk.bininja.client.core.ContentCache;
+import de.dk.bininja.client.core.ManifestRun;
+import de.dk.bininja.client.core.MetricsReporter;
+import de.dk.bininja.client.net.ProgressDispatcher;
 import de.dk.bininja.net.Base64Connection;
 import de.dk.opt.ArgumentParserBuilder;
 import de.dk.opt.ExpectedOption;
@@ -28,7 +33,106 @@ public enum Option {
    SCRIPT('f',
           "script",
           "Specify a script to be executed. If this option is given, the application will start in headless mode.",
-          true);
+          true),
+   GATHER("gather",
+          "Write the downloads through FileChannels, gathering all pending packets of a download into a single write."),
+   RECEIVE_WINDOW("receive-window",
+                  "The maximum number of bytes per download, that may be received but not yet written to the disk. "
+                  + "A full window pauses the download with the range-requests option and cancels it otherwise.",
+                  true),
+   SEGMENTS("segments",
+            "Split downloads bigger than the segment threshold into this number of segments, "
+            + "each loaded over its own channel. Needs the range-requests option.",
+            true),
+   SEGMENT_THRESHOLD("segment-threshold",
+                     "The length in bytes, that a download has to exceed to be split into segments.",
+                     true),
+   CONNECTIONS("connections",
+               "The number of connections to open to the server. "
+               + "New downloads are placed on the connection with the least open channels.",
+               true),
+   COMPRESS("compress",
+            "Ask the server to compress the data of the downloads. "
+            + "Needs the range-requests option and a server, that supports compressed data."),
+   RANGE_REQUESTS("range-requests",
+                  "Send range requests to the server to resume partial downloads, split downloads into segments, "
+                  + "ask for compressed data and continue downloads after the connection has been lost. "
+                  + "Only use it, if the server knows the range requests of this client. "
+                  + "Without this option only plain download requests are sent."),
+   MAX_DOWNLOADS("max-downloads",
+                 "The maximum number of downloads running at the same time. "
+                 + "Further downloads are queued until a running download has terminated.",
+                 true),
+   WRITER_THREADS("writer-threads",
+                  "Write the downloads on a shared pool of this number of threads "
+                  + "instead of starting a thread per download.",
+                  true),
+   METRICS("metrics",
+           "Report the metrics of the downloads to the log in this interval of milliseconds.",
+           true),
+   METRICS_CSV("metrics-csv",
+               "Append the reported metrics of the downloads to this CSV file. "
+               + "Without the metrics option they are reported every " + MetricsReporter.DEFAULT_INTERVAL + " ms.",
+               true),
+   CACHE("cache",
+         "Cache the downloaded files in this directory. "
+         + "A download is served from the cache, if the server announces the same length and filename for its url "
+         + "and the download has the same expected checksum.",
+         true),
+   CACHE_SIZE("cache-size",
+              "The maximum number of bytes of the cached files. The least recently used files are evicted first. "
+              + "Default is " + ContentCache.DEFAULT_QUOTA + " bytes.",
+              true),
+   CACHE_MAX_AGE("cache-max-age",
+                 "The age in milliseconds, after which a cached file is loaded from the server again, "
+                 + "even if the server announces the same length and filename. 0 never expires cached files. "
+                 + "Default is " + ContentCache.DEFAULT_MAX_AGE + " ms.",
+                 true),
+   CACHE_LINKS("cache-links",
+               "Serve cached files by hard links to the cache instead of copies. "
+               + "Only use it, if the downloaded files are never modified."),
+   CHECKSUM("checksum",
+            "Compute the checksum of every download while it is written. One of SHA-256 and CRC32C. "
+            + "Downloads with this option are not split into segments.",
+            true),
+   WRITE_MODE("write-mode",
+              "How downloads of known length are written. \"stream\" extends the file by every write (default). "
+              + "\"positional\" extends the file to its final length first and writes the data at its position. "
+              + "\"mapped\" extends the file first and copies the data into memory-mapped windows of the file. "
+              + "Downloads written positional or mapped can not be resumed.",
+              true),
+   ZERO_FILL("zero-fill",
+             "Fill the files of segmented downloads and downloads written positional or mapped with zeros, "
+             + "before they are loaded. Writes every byte of these downloads twice, but a disk, that is too small, fails right away."),
+   LIMIT("limit",
+         "The maximum number of bytes per second, that all the downloads together may receive.",
+         true),
+   RECONNECT("reconnect",
+             "The number of attempts to reconnect to the server with exponential backoff, "
+             + "after the connection has been lost. Interrupted downloads continue where they stopped. "
+             + "0 disables reconnecting. Default is " + MasterControlProgram.DEFAULT_RECONNECT_ATTEMPTS + ".",
+             true),
+   SCRIPT_PARALLELISM("script-parallelism",
+                      "The maximum number of download commands of a script, that are executed at the same time. "
+                      + "Any other command waits for the commands before it. Default is 1.",
+                      true),
+   MANIFEST("manifest",
+            "Load the downloads listed in this file, one per line as CSV \"url,target,checksum,limit\" "
+            + "or as JSON object with these fields. The file is streamed, so it may have any number of lines. "
+            + "An interrupted run continues where it stopped, when it is started again.",
+            true),
+   MANIFEST_WINDOW("manifest-window",
+                   "The maximum number of downloads of the manifest in flight. Default is "
+                   + ManifestRun.DEFAULT_WINDOW + ".",
+                   true),
+   MANIFEST_RESULTS("manifest-results",
+                    "Append the result of every line of the manifest as JSON object to this file. "
+                    + "Default is the manifest file with the suffix " + ManifestRun.RESULTS_SUFFIX + ".",
+                    true),
+   PROGRESS_INTERVAL("progress-interval",
+                     "The interval in milliseconds, in which the progress of a download is reported to the ui. "
+                     + "0 reports every packet. Default is " + ProgressDispatcher.DEFAULT_INTERVAL + ".",
+                     true);
 
    private final char key;
    private final String longKey;
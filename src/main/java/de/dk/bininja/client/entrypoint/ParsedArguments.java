@@ -1,8 +1,12 @@
 package de.dk.bininja.client.entrypoint;
 
 import java.io.File;
+import java.io.IOException;
 
+import de.dk.bininja.client.core.WriteMode;
+import de.dk.bininja.client.net.ChecksumAlgorithm;
 import de.dk.bininja.opt.ParsedSecurityArguments;
+import de.dk.opt.ArgumentModel;
 
 /**
  * @author David Koettlitz
@@ -14,7 +18,34 @@ public class ParsedArguments {
    private String command;
    private File script;
    private boolean cli;
+   private boolean gatheringWrites;
+   private boolean compression;
+   private boolean rangeRequests;
+   private boolean zeroFill;
+   private long receiveWindowSize = -1;
+   private int segmentCount = -1;
+   private long segmentThreshold = -1;
+   private int connectionCount = -1;
+   private int maxRunningDownloads = -1;
+   private int writerThreads = -1;
+   private long metricsInterval = -1;
+   private File metricsCsv;
+   private File cacheDirectory;
+   private long cacheSize = -1;
+   private long cacheMaxAge = -1;
+   private boolean cacheLinks;
+   private ChecksumAlgorithm checksumAlgorithm;
+   private WriteMode writeMode;
+   private long rateLimit = -1;
+   private int reconnectAttempts = -1;
+   private int scriptParallelism = -1;
+   private File manifest;
+   private int manifestWindow = -1;
+   private File manifestResults;
+   private long progressInterval = -1;
 
+   /** The unparsed security arguments, that are parsed on first use, because parsing loads the keys. */
+   private ArgumentModel secModel;
    private ParsedSecurityArguments secArgs;
 
    public ParsedArguments() {
@@ -62,23 +93,299 @@ public class ParsedArguments {
    }
 
    public boolean isHeadless() {
-      return command != null || script != null;
+      return command != null || script != null || manifest != null;
    }
 
    public void setCli(boolean cli) {
       this.cli = cli;
    }
 
-   public ParsedSecurityArguments getSecArgs() {
+   public boolean isGatheringWrites() {
+      return gatheringWrites;
+   }
+
+   public void setGatheringWrites(boolean gatheringWrites) {
+      this.gatheringWrites = gatheringWrites;
+   }
+
+   public boolean isCompression() {
+      return compression;
+   }
+
+   public void setCompression(boolean compression) {
+      this.compression = compression;
+   }
+
+   public boolean isRangeRequests() {
+      return rangeRequests;
+   }
+
+   public void setRangeRequests(boolean rangeRequests) {
+      this.rangeRequests = rangeRequests;
+   }
+
+   public boolean isZeroFill() {
+      return zeroFill;
+   }
+
+   public void setZeroFill(boolean zeroFill) {
+      this.zeroFill = zeroFill;
+   }
+
+   public long getReceiveWindowSize() {
+      return receiveWindowSize;
+   }
+
+   public void setReceiveWindowSize(long receiveWindowSize) {
+      this.receiveWindowSize = receiveWindowSize;
+   }
+
+   public boolean isReceiveWindowSizeSpecified() {
+      return receiveWindowSize != -1;
+   }
+
+   public int getSegmentCount() {
+      return segmentCount;
+   }
+
+   public void setSegmentCount(int segmentCount) {
+      this.segmentCount = segmentCount;
+   }
+
+   public boolean isSegmentCountSpecified() {
+      return segmentCount != -1;
+   }
+
+   public long getSegmentThreshold() {
+      return segmentThreshold;
+   }
+
+   public void setSegmentThreshold(long segmentThreshold) {
+      this.segmentThreshold = segmentThreshold;
+   }
+
+   public boolean isSegmentThresholdSpecified() {
+      return segmentThreshold != -1;
+   }
+
+   public int getConnectionCount() {
+      return connectionCount;
+   }
+
+   public void setConnectionCount(int connectionCount) {
+      this.connectionCount = connectionCount;
+   }
+
+   public boolean isConnectionCountSpecified() {
+      return connectionCount != -1;
+   }
+
+   public int getMaxRunningDownloads() {
+      return maxRunningDownloads;
+   }
+
+   public void setMaxRunningDownloads(int maxRunningDownloads) {
+      this.maxRunningDownloads = maxRunningDownloads;
+   }
+
+   public boolean isMaxRunningDownloadsSpecified() {
+      return maxRunningDownloads != -1;
+   }
+
+   public int getWriterThreads() {
+      return writerThreads;
+   }
+
+   public void setWriterThreads(int writerThreads) {
+      this.writerThreads = writerThreads;
+   }
+
+   public boolean isWriterThreadsSpecified() {
+      return writerThreads != -1;
+   }
+
+   public long getMetricsInterval() {
+      return metricsInterval;
+   }
+
+   public void setMetricsInterval(long metricsInterval) {
+      this.metricsInterval = metricsInterval;
+   }
+
+   public boolean isMetricsIntervalSpecified() {
+      return metricsInterval != -1;
+   }
+
+   public File getMetricsCsv() {
+      return metricsCsv;
+   }
+
+   public void setMetricsCsv(File metricsCsv) {
+      this.metricsCsv = metricsCsv;
+   }
+
+   public File getCacheDirectory() {
+      return cacheDirectory;
+   }
+
+   public void setCacheDirectory(File cacheDirectory) {
+      this.cacheDirectory = cacheDirectory;
+   }
+
+   public long getCacheSize() {
+      return cacheSize;
+   }
+
+   public void setCacheSize(long cacheSize) {
+      this.cacheSize = cacheSize;
+   }
+
+   public boolean isCacheSizeSpecified() {
+      return cacheSize != -1;
+   }
+
+   public long getCacheMaxAge() {
+      return cacheMaxAge;
+   }
+
+   public void setCacheMaxAge(long cacheMaxAge) {
+      this.cacheMaxAge = cacheMaxAge;
+   }
+
+   public boolean isCacheMaxAgeSpecified() {
+      return cacheMaxAge != -1;
+   }
+
+   public boolean isCacheLinks() {
+      return cacheLinks;
+   }
+
+   public void setCacheLinks(boolean cacheLinks) {
+      this.cacheLinks = cacheLinks;
+   }
+
+   public ChecksumAlgorithm getChecksumAlgorithm() {
+      return checksumAlgorithm;
+   }
+
+   public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+      this.checksumAlgorithm = checksumAlgorithm;
+   }
+
+   public WriteMode getWriteMode() {
+      return writeMode;
+   }
+
+   public void setWriteMode(WriteMode writeMode) {
+      this.writeMode = writeMode;
+   }
+
+   public long getRateLimit() {
+      return rateLimit;
+   }
+
+   public void setRateLimit(long rateLimit) {
+      this.rateLimit = rateLimit;
+   }
+
+   public boolean isRateLimitSpecified() {
+      return rateLimit != -1;
+   }
+
+   public int getReconnectAttempts() {
+      return reconnectAttempts;
+   }
+
+   public void setReconnectAttempts(int reconnectAttempts) {
+      this.reconnectAttempts = reconnectAttempts;
+   }
+
+   public boolean isReconnectAttemptsSpecified() {
+      return reconnectAttempts != -1;
+   }
+
+   public int getScriptParallelism() {
+      return scriptParallelism;
+   }
+
+   public void setScriptParallelism(int scriptParallelism) {
+      this.scriptParallelism = scriptParallelism;
+   }
+
+   public boolean isScriptParallelismSpecified() {
+      return scriptParallelism != -1;
+   }
+
+   public File getManifest() {
+      return manifest;
+   }
+
+   public void setManifest(File manifest) {
+      this.manifest = manifest;
+   }
+
+   public int getManifestWindow() {
+      return manifestWindow;
+   }
+
+   public void setManifestWindow(int manifestWindow) {
+      this.manifestWindow = manifestWindow;
+   }
+
+   public boolean isManifestWindowSpecified() {
+      return manifestWindow != -1;
+   }
+
+   public File getManifestResults() {
+      return manifestResults;
+   }
+
+   public void setManifestResults(File manifestResults) {
+      this.manifestResults = manifestResults;
+   }
+
+   public long getProgressInterval() {
+      return progressInterval;
+   }
+
+   public void setProgressInterval(long progressInterval) {
+      this.progressInterval = progressInterval;
+   }
+
+   public boolean isProgressIntervalSpecified() {
+      return progressInterval != -1;
+   }
+
+   /**
+    * Parses the security arguments, if this has not been done yet, and loads their keys.
+    *
+    * @return The security arguments or <code>null</code> if none have been given
+    *
+    * @throws IOException If a key could not be loaded
+    */
+   public synchronized ParsedSecurityArguments getSecArgs() throws IOException {
+      if (secArgs == null && secModel != null) {
+         this.secArgs = ParsedSecurityArguments.parse(secModel);
+         this.secModel = null;
+      }
       return secArgs;
    }
 
-   public void setSecArgs(ParsedSecurityArguments secArgs) {
+   public synchronized void setSecArgs(ParsedSecurityArguments secArgs) {
       this.secArgs = secArgs;
+      this.secModel = null;
+   }
+
+   /**
+    * Sets the security arguments, that are parsed by the first call of {@link #getSecArgs()}.
+    */
+   public synchronized void setSecModel(ArgumentModel secModel) {
+      this.secModel = secModel;
+      this.secArgs = null;
    }
 
-   public boolean isSecure() {
-      return secArgs != null;
+   public synchronized boolean isSecure() {
+      return secArgs != null || secModel != null;
    }
 
 }
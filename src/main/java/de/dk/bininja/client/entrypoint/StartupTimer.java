@@ -0,0 +1,63 @@
+package de.dk.bininja.client.entrypoint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the phases of the startup of the application, e.g. parsing the arguments,
+ * loading the user interface and connecting to the server.
+ * Every phase lasts from the end of the previous phase or the creation of the timer to its end.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class StartupTimer {
+   private final long startNanos = System.nanoTime();
+   private final Map<String, Long> phases = new LinkedHashMap<>();
+   private long lastNanos = startNanos;
+
+   public StartupTimer() {
+
+   }
+
+   /**
+    * Ends the phase with the given <code>name</code>.
+    */
+   public synchronized void phase(String name) {
+      long now = System.nanoTime();
+      phases.merge(name, now - lastNanos, Long::sum);
+      this.lastNanos = now;
+   }
+
+   /**
+    * @param nanos A timestamp of {@link System#nanoTime()}
+    *
+    * @return The milliseconds from the creation of this timer until <code>nanos</code>
+    */
+   public long millisSinceStart(long nanos) {
+      return TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+   }
+
+   /**
+    * @return The milliseconds from the creation of this timer until the end of the last phase
+    */
+   public synchronized long getTotalMillis() {
+      return millisSinceStart(lastNanos);
+   }
+
+   @Override
+   public synchronized String toString() {
+      StringBuilder builder = new StringBuilder();
+      for (Map.Entry<String, Long> phase : phases.entrySet()) {
+         builder.append(phase.getKey())
+                .append(' ')
+                .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue()))
+                .append(" ms, ");
+      }
+      return builder.append("total ")
+                    .append(getTotalMillis())
+                    .append(" ms")
+                    .toString();
+   }
+}
@@ -19,6 +19,9 @@ public class DownloadMetadata {
    private String fileName;
    private URL url;
    private long length = -1;
+   private int priority = 0;
+   private String checksum;
+   private long rateLimit = 0;
 
    public DownloadMetadata(URL url) {
       this.id = idCounter++;
@@ -69,12 +72,55 @@ public class DownloadMetadata {
       this.length = length;
    }
 
+   public int getPriority() {
+      return priority;
+   }
+
+   /**
+    * Sets the priority of the download. If the download has to be queued,
+    * downloads with a higher priority are started first.
+    */
+   public void setPriority(int priority) {
+      this.priority = priority;
+   }
+
+   public String getChecksum() {
+      return checksum;
+   }
+
+   /**
+    * Sets the expected checksum of the download as hexadecimal string.
+    * The algorithm is determined by the length of the checksum, e.g. 64 digits for SHA-256 and 8 for CRC32C.
+    * A download, whose checksum differs, is marked as failed.
+    */
+   public void setChecksum(String checksum) {
+      this.checksum = checksum;
+   }
+
+   public long getRateLimit() {
+      return rateLimit;
+   }
+
+   /**
+    * Sets the maximum number of bytes per second, that this download may receive, in addition to the global limit.
+    * A limit of 0 is unlimited.
+    */
+   public void setRateLimit(long rateLimit) {
+      if (rateLimit < 0)
+         throw new IllegalArgumentException("The rate limit must not be negative: " + rateLimit);
+
+      this.rateLimit = rateLimit;
+   }
+
    @Override
    public String toString() {
       return "Download {\n"
              + "\tid = " + id + "\n"
              + "\turl = " + objectOrNullString(url) + "\n"
              + "\tlength = " + (length == -1 ? "not set" : length) + "\n"
+             + "\tpriority = " + priority + "\n"
+             + "\tchecksum = " + objectOrNullString(checksum) + "\n"
+             + "\trateLimit = " + (rateLimit == 0 ? "unlimited" : rateLimit) + "\n"
              + "\ttargetDirectory = " + objectOrNullString(targetDirectory) + "\n"
              + "\tfileName = " + objectOrNullString(fileName) + "\n"
              + "}";
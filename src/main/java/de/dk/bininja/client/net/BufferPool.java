@@ -0,0 +1,135 @@
+package de.dk.bininja.client.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of equally sized ByteBuffers, that are recycled instead of being allocated for every payload.
+ * The pool is thread safe. Buffers, that are given back while the pool is full, are left to the garbage collector.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class BufferPool {
+   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+   public static final int DEFAULT_CAPACITY = 512;
+
+   private final int bufferSize;
+   private final int capacity;
+   private final boolean direct;
+
+   private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+   private final AtomicInteger freeCount = new AtomicInteger();
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong outstandingBytes = new AtomicLong();
+
+   /**
+    * @param bufferSize The size of each buffer in bytes
+    * @param capacity The maximum number of free buffers, that are kept in the pool
+    * @param direct Whether to allocate direct buffers instead of heap buffers
+    */
+   public BufferPool(int bufferSize, int capacity, boolean direct) {
+      if (bufferSize <= 0)
+         throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+      if (capacity < 0)
+         throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+
+      this.bufferSize = bufferSize;
+      this.capacity = capacity;
+      this.direct = direct;
+   }
+
+   public BufferPool(boolean direct) {
+      this(DEFAULT_BUFFER_SIZE, DEFAULT_CAPACITY, direct);
+   }
+
+   /**
+    * Takes a cleared buffer out of the pool or allocates a new one, if the pool is empty.
+    * The buffer has to be given back by {@link #release(ByteBuffer)} after use.
+    *
+    * @return A cleared buffer of {@link #getBufferSize()} bytes
+    */
+   public ByteBuffer borrow() {
+      ByteBuffer buffer = free.poll();
+      if (buffer == null) {
+         misses.incrementAndGet();
+         buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+      } else {
+         freeCount.decrementAndGet();
+         hits.incrementAndGet();
+         buffer.clear();
+      }
+      outstandingBytes.addAndGet(bufferSize);
+      return buffer;
+   }
+
+   /**
+    * Gives a borrowed buffer back to the pool.
+    * The buffer must not be used by the caller anymore.
+    *
+    * @param buffer The buffer, that has been borrowed from this pool
+    */
+   public void release(ByteBuffer buffer) {
+      if (buffer.capacity() != bufferSize || buffer.isDirect() != direct)
+         throw new IllegalArgumentException("The buffer " + buffer + " was not borrowed from this pool.");
+
+      outstandingBytes.addAndGet(-bufferSize);
+      if (freeCount.incrementAndGet() > capacity) {
+         freeCount.decrementAndGet();
+         return;
+      }
+      buffer.clear();
+      free.offer(buffer);
+   }
+
+   public int getBufferSize() {
+      return bufferSize;
+   }
+
+   public boolean isDirect() {
+      return direct;
+   }
+
+   /**
+    * @return The number of borrowed buffers, that have been taken out of the pool
+    */
+   public long getHits() {
+      return hits.get();
+   }
+
+   /**
+    * @return The number of borrowed buffers, that had to be allocated, because the pool was empty
+    */
+   public long getMisses() {
+      return misses.get();
+   }
+
+   /**
+    * @return The number of bytes of all the buffers, that are currently borrowed
+    */
+   public long getOutstandingBytes() {
+      return outstandingBytes.get();
+   }
+
+   /**
+    * @return The number of free buffers in the pool
+    */
+   public int getFreeCount() {
+      return freeCount.get();
+   }
+
+   @Override
+   public String toString() {
+      return "BufferPool { bufferSize=" + bufferSize
+             + ", direct=" + direct
+             + ", hits=" + hits
+             + ", misses=" + misses
+             + ", outstandingBytes=" + outstandingBytes
+             + ", free=" + freeCount
+             + " }";
+   }
+}
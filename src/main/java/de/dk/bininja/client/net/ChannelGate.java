@@ -0,0 +1,72 @@
+package de.dk.bininja.client.net;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import de.dk.bininja.net.Download;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.ChannelListener;
+
+/**
+ * Hands the packets of a channel to a download or a segment of a download, until the gate is closed.
+ * A download, that stops listening to a channel, closes the gate instead of removing itself from the channel,
+ * because it may do so on the thread, that is just handing a packet of the channel to its listeners.
+ * The packets, that have passed the gate before it has been closed, can be awaited by {@link #awaitPassed()}.
+ * So no packet of the old channel is received anymore, when the download continues over a new channel.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+class ChannelGate implements ChannelListener<DownloadPacket> {
+   private static final long AWAIT_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+   private final Download target;
+   private final AtomicInteger passing = new AtomicInteger();
+   private volatile boolean open = true;
+
+   ChannelGate(Download target) {
+      this.target = Objects.requireNonNull(target);
+   }
+
+   @Override
+   public void received(DownloadPacket packet) {
+      if (!open)
+         return;
+
+      passing.incrementAndGet();
+      try {
+         if (open)
+            target.received(packet);
+      } finally {
+         passing.decrementAndGet();
+      }
+   }
+
+   void close() {
+      this.open = false;
+   }
+
+   boolean isOpen() {
+      return open;
+   }
+
+   Download getTarget() {
+      return target;
+   }
+
+   /**
+    * Waits until the packets, that passed the gate before it has been closed, have been handled by the target.
+    * Has to be called after {@link #close()} without holding any lock, that the target needs to handle a packet.
+    */
+   void awaitPassed() {
+      while (passing.get() > 0)
+         LockSupport.parkNanos(AWAIT_INTERVAL_NANOS);
+   }
+
+   @Override
+   public String toString() {
+      return "ChannelGate { open=" + open + ", target=" + target + " }";
+   }
+}
@@ -0,0 +1,117 @@
+package de.dk.bininja.client.net;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The algorithms, that a download can be checksummed with while it is written.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public enum ChecksumAlgorithm {
+   SHA_256("SHA-256", 32) {
+      @Override
+      Hasher newHasher() {
+         MessageDigest digest;
+         try {
+            digest = MessageDigest.getInstance(getName());
+         } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(getName() + " is not available", e);
+         }
+         return new Hasher() {
+            @Override
+            public void update(ByteBuffer data) {
+               digest.update(data);
+            }
+
+            @Override
+            public byte[] digest() {
+               return digest.digest();
+            }
+         };
+      }
+   },
+   CRC32C("CRC32C", 4) {
+      @Override
+      Hasher newHasher() {
+         Crc32C crc = new Crc32C();
+         return new Hasher() {
+            @Override
+            public void update(ByteBuffer data) {
+               crc.update(data);
+            }
+
+            @Override
+            public byte[] digest() {
+               long value = crc.getValue();
+               return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+            }
+         };
+      }
+   };
+
+   private final String name;
+   private final int digestLength;
+
+   private ChecksumAlgorithm(String name, int digestLength) {
+      this.name = name;
+      this.digestLength = digestLength;
+   }
+
+   abstract Hasher newHasher();
+
+   /**
+    * @param name The name of the algorithm, e.g. <code>SHA-256</code>, case insensitive
+    *
+    * @return The algorithm of that name or <code>null</code> if there is none
+    */
+   public static ChecksumAlgorithm byName(String name) {
+      for (ChecksumAlgorithm algorithm : values()) {
+         if (algorithm.name.equalsIgnoreCase(name) || algorithm.name().equalsIgnoreCase(name))
+            return algorithm;
+      }
+      return null;
+   }
+
+   /**
+    * Finds the algorithm, that produces a checksum of the length of the hexadecimal <code>checksum</code>.
+    *
+    * @return The algorithm or <code>null</code> if no algorithm produces checksums of that length
+    */
+   public static ChecksumAlgorithm ofChecksum(String checksum) {
+      for (ChecksumAlgorithm algorithm : values()) {
+         if (algorithm.digestLength * 2 == checksum.length())
+            return algorithm;
+      }
+      return null;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   /**
+    * @return The length of a checksum of this algorithm in bytes
+    */
+   public int getDigestLength() {
+      return digestLength;
+   }
+
+   @Override
+   public String toString() {
+      return name;
+   }
+
+   /**
+    * Computes a checksum incrementally.
+    */
+   static interface Hasher {
+      /**
+       * Updates the checksum with the remaining bytes of the <code>data</code> and consumes them.
+       */
+      public void update(ByteBuffer data);
+      public byte[] digest();
+   }
+}
@@ -8,13 +8,31 @@ import static de.dk.bininja.net.DownloadState.RUNNING;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.dk.bininja.net.Download;
+import de.dk.bininja.net.DownloadState;
 import de.dk.bininja.net.packet.download.DownloadCancelPacket;
 import de.dk.bininja.net.packet.download.DownloadDataPacket;
 import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
@@ -30,58 +48,1005 @@ import de.dk.ch.Channel;
 public class ClientDownload extends Download {
    private static final Logger LOGGER = LoggerFactory.getLogger(ClientDownload.class);
 
-   private final Channel<DownloadPacket> channel;
+   /**
+    * Put into the queue to wake up the writing thread after a state change.
+    * The writing thread must not be interrupted, because that would close an interruptible FileChannel.
+    */
+   private static final Chunk WAKE_UP = new Chunk(ByteBuffer.allocate(0), -1);
+
+   private static final int RESUMER_THREADS = 4;
+   private static final int MAX_RESUME_ATTEMPTS = 3;
+   private static final long RESUME_RETRY_DELAY = 1000;
+
+   /** Requests the paused parts of the downloads again, so neither the receiver nor the writer waits for the server. */
+   private static final AtomicInteger RESUMER_COUNT = new AtomicInteger();
+   private static final ScheduledExecutorService RESUMER = Executors.newScheduledThreadPool(RESUMER_THREADS, r -> {
+      Thread thread = new Thread(r, "download-resume-" + RESUMER_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private volatile Channel<DownloadPacket> channel;
+   /** Lets the packets of the own channel through to this download. Replaced along with the own channel. */
+   private volatile ChannelGate gate;
    private final OutputStream out;
-   private final LinkedBlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+   private final FileChannel fileChannel;
+   private MappedTarget mapped;
+   private final BufferPool bufferPool;
+   /** Whether the data is in the target already, so nothing is loaded. */
+   private final boolean served;
+   private final LinkedBlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+   private final List<Chunk> drained = new ArrayList<>();
+   private final ReceiveWindow window = new ReceiveWindow();
+   private final RateLimiter rateLimiter = new RateLimiter();
+   private volatile RateLimiter sharedRateLimiter;
+   private final List<Consumer<ClientDownload>> terminationHandlers = new ArrayList<>();
+   private boolean terminated;
+   private final long offset;
+
+   /** Runs the writer as a task, if this download has been started on an executor instead of its own thread. */
+   private volatile Executor executor;
+   private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+   private final Object fillLock = new Object();
+   private ByteBuffer filling;
+
+   /** The segment loaded over the own channel, if this download is split into segments. */
+   private DownloadSegment primary;
+   private final List<DownloadSegment> segments = new ArrayList<>();
+   private int completeSegments;
+
+   /** Whether the own channel has been lost before the download is loaded. Guarded by the fill lock. */
+   private boolean detached;
+   /** The segments, whose channels have been lost before they are complete. Guarded by the fill lock. */
+   private final List<DownloadSegment> detachedSegments = new ArrayList<>();
+   /** Serializes the resuming of the detached parts. */
+   private final Object resumeLock = new Object();
+
+   /** Requests the parts of this download again after they have been paused or <code>null</code> to never pause. */
+   private volatile RangeRequester pauseRequester;
+   /** Whether parts of this download are paused, because the receive window has been full. */
+   private volatile boolean paused;
+   /** The channels of the paused parts, that are to be released. Guarded by the fill lock. */
+   private final List<Channel<DownloadPacket>> pausedChannels = new ArrayList<>();
+   private final AtomicBoolean resumeScheduled = new AtomicBoolean();
+   /** The failed attempts to resume the paused parts in a row. Only accessed by the resuming task. */
+   private int resumeAttempts;
+   private final AtomicLong pauses = new AtomicLong();
+
+   /** Decodes compressed payloads or <code>null</code> if the payloads are not compressed. */
+   private PayloadDecoder decoder;
+   private final AtomicLong transferredBytes = new AtomicLong();
+   private final AtomicLong decodedBytes = new AtomicLong();
+   private final AtomicLong writtenBytes = new AtomicLong();
+   /** Receives the duration of every write in nanoseconds or <code>null</code>. */
+   private volatile LongConsumer writeLatencyRecorder;
+   private StreamingChecksum checksum;
+   private String expectedChecksum;
+
+   /** Delivers the progress in intervals or <code>null</code> to deliver it for every packet. */
+   private volatile ProgressDispatcher progressDispatcher;
+   private final Object progressLock = new Object();
+   private final AtomicLong pendingReceived = new AtomicLong();
+   private final AtomicLong pendingWritten = new AtomicLong();
 
    private IOException exception;
    private String breakeUpMessage;
+   private volatile boolean checksumMismatch;
 
-   public ClientDownload(Channel<DownloadPacket> channel, OutputStream out, long length) {
+   private ClientDownload(Channel<DownloadPacket> channel,
+                          OutputStream out,
+                          FileChannel fileChannel,
+                          long offset,
+                          long length,
+                          BufferPool bufferPool) {
+      this.channel = Objects.requireNonNull(channel);
+      this.out = out;
+      this.fileChannel = fileChannel;
+      this.offset = offset;
+      this.bufferPool = Objects.requireNonNull(bufferPool);
+      this.served = false;
+      this.gate = new ChannelGate(this);
+      channel.addListener(gate);
+      this.length = length;
+   }
+
+   /**
+    * Creates a served download, that has neither a target to write to nor buffers to fill.
+    * It does not listen to its channel.
+    */
+   private ClientDownload(Channel<DownloadPacket> channel, long length) {
       this.channel = Objects.requireNonNull(channel);
-      this.out = Objects.requireNonNull(out);
-      channel.addListener(this);
+      this.out = null;
+      this.fileChannel = null;
+      this.offset = 0;
+      this.bufferPool = null;
+      this.served = true;
+      this.gate = new ChannelGate(this);
+      gate.close();
       this.length = length;
    }
 
+   /**
+    * Creates a download, that writes to the <code>out</code> stream.
+    * The payloads are copied into buffers borrowed from the <code>bufferPool</code>,
+    * which therefore has to provide heap buffers.
+    */
+   public ClientDownload(Channel<DownloadPacket> channel, OutputStream out, long length, BufferPool bufferPool) {
+      this(channel, Objects.requireNonNull(out), null, 0, length, bufferPool);
+      if (bufferPool.isDirect())
+         throw new IllegalArgumentException("A download writing to an OutputStream needs a pool of heap buffers.");
+   }
+
+   public ClientDownload(Channel<DownloadPacket> channel, OutputStream out, long length) {
+      this(channel, out, length, new BufferPool(false));
+   }
+
    public ClientDownload(Channel<DownloadPacket> channel, OutputStream out) {
       this(channel, out, -1);
    }
 
+   /**
+    * Creates a download, whose data is in its target already, e.g. because it has been served from a cache.
+    * It does not load anything and completes on the calling thread as soon as it is started,
+    * so its listeners see it complete like any other download.
+    * The server has to be told not to send anything over the <code>channel</code>.
+    *
+    * @param channel The channel, that the download has been requested over
+    * @param length The length of the target
+    */
+   public static ClientDownload served(Channel<DownloadPacket> channel, long length) {
+      return new ClientDownload(channel, length);
+   }
+
+   /**
+    * Creates a download, that drains all the queued payloads at once
+    * and writes them with a single gathering write to the <code>fileChannel</code>.
+    * The <code>fileChannel</code> has to be positioned at <code>offset</code> already.
+    *
+    * @param offset The position in the file, where the received data starts
+    * @param length The number of bytes, that are going to be received
+    */
+   public ClientDownload(Channel<DownloadPacket> channel,
+                         FileChannel fileChannel,
+                         long offset,
+                         long length,
+                         BufferPool bufferPool) {
+      this(channel, null, Objects.requireNonNull(fileChannel), offset, length, bufferPool);
+      if (offset < 0)
+         throw new IllegalArgumentException("The offset must not be negative: " + offset);
+   }
+
+   public ClientDownload(Channel<DownloadPacket> channel, FileChannel fileChannel, long length, BufferPool bufferPool) {
+      this(channel, fileChannel, 0, length, bufferPool);
+   }
+
+   public ClientDownload(Channel<DownloadPacket> channel, FileChannel fileChannel, long length) {
+      this(channel, fileChannel, length, new BufferPool(true));
+   }
+
+   /**
+    * Lets the data be copied into memory-mapped windows of the target instead of being written through the FileChannel.
+    * The FileChannel has to be opened for reading and writing and the target has to have its final length already.
+    * Has to be called before the download is started.
+    * Every segment writes into a window of its own, that is dropped, as soon as it has been written completely.
+    * The windows, that are still mapped, are forced to the disk, when the download is complete.
+    *
+    * @param windowSize The number of bytes of the target, that are mapped by one window
+    */
+   public void mapTarget(long windowSize) {
+      if (fileChannel == null)
+         throw new IllegalStateException("Only a download writing to a FileChannel can map its target.");
+      if (length < 0)
+         throw new IllegalStateException("Only a download of known length can map its target.");
+      if (isStarted())
+         throw new IllegalStateException("The target can only be mapped before the download is started.");
+
+      this.mapped = new MappedTarget(fileChannel, offset, offset + length, windowSize);
+   }
+
+   public void mapTarget() {
+      mapTarget(MappedTarget.DEFAULT_WINDOW_SIZE);
+   }
+
+   /**
+    * @return <code>true</code> if the data is copied into memory-mapped windows of the target
+    */
+   public boolean isMapped() {
+      return mapped != null;
+   }
+
+   /**
+    * Splits off the range <code>[start, end)</code> of the file, that is loaded over the <code>segmentChannel</code>.
+    * The server has to be requested for exactly this range on the <code>segmentChannel</code> already.
+    * The segments have to be added in the order of their ranges.
+    * The first segment starts where the range of the own channel of this download ends.
+    * So the server is told to stop sending over the own channel, as soon as that range is complete.
+    * Segments can only be added to a download writing to a FileChannel, before it is started.
+    *
+    * @param segmentChannel The channel, that the segment is loaded over
+    * @param start The position in the file, where the segment starts
+    * @param end The position in the file, where the segment ends (exclusive)
+    */
+   public void addSegment(Channel<DownloadPacket> segmentChannel, long start, long end) {
+      if (fileChannel == null)
+         throw new IllegalStateException("Only a download writing to a FileChannel can be split into segments.");
+      if (isStarted())
+         throw new IllegalStateException("Segments can only be added before the download is started.");
+
+      synchronized (fillLock) {
+         if (primary == null) {
+            if (start <= offset)
+               throw new IllegalArgumentException("The first segment has to start behind offset " + offset);
+
+            this.primary = new DownloadSegment(this, channel, offset, start);
+         }
+         long previousEnd = segments.isEmpty() ? primary.getEnd() : segments.get(segments.size() - 1).getEnd();
+         if (start != previousEnd)
+            throw new IllegalArgumentException("The segment has to start at " + previousEnd + " but starts at " + start);
+
+         DownloadSegment segment = new DownloadSegment(this, segmentChannel, start, end);
+         segments.add(segment);
+         segment.listen();
+      }
+   }
+
+   /**
+    * Starts this download on a thread of its own.
+    * A {@link #isServed() served} download completes on the calling thread instead.
+    */
+   @Override
+   public synchronized void start() {
+      if (served)
+         complete();
+      else
+         super.start();
+   }
+
    @Override
    public void run() {
-      setState(RUNNING);
+      begin();
+
+      while (getDownloadState() == RUNNING || !queue.isEmpty())
+         write();
 
-      while (getDownloadState() == RUNNING || !queue.isEmpty()) {
+      terminate();
+   }
+
+   /**
+    * Starts this download without a thread of its own.
+    * Whenever data is queued or the state changes, a task is submitted to the <code>executor</code>,
+    * that writes all the queued data and returns. So a download, that waits for data, does not occupy a thread.
+    * The tasks of one download never run concurrently.
+    * The executor may be shared by any number of downloads.
+    * A throttled download waits for its rate limit in the task, but writes only one chunk per task,
+    * so the tasks of the other downloads are not stuck behind it.
+    *
+    * @param executor The executor to run the writer on
+    */
+   public void start(Executor executor) {
+      if (isStarted())
+         throw new IllegalStateException("The download has already been started.");
+
+      if (served) {
+         complete();
+         return;
+      }
+
+      this.executor = Objects.requireNonNull(executor);
+      begin();
+      scheduleDrain();
+   }
+
+   /**
+    * Completes a served download, that has nothing to load or write.
+    */
+   private void complete() {
+      synchronized (terminationHandlers) {
+         if (terminated)
+            throw new IllegalStateException("The download has already been started.");
+      }
+
+      begin();
+      terminate();
+   }
+
+   /**
+    * Sets the state to running, unless the download has been cancelled before it has been started.
+    */
+   private void begin() {
+      if (getDownloadState() != CANCELLED && getDownloadState() != ERROR) {
+         setState(RUNNING);
+         if (served)
+            setState(LOADING_FINISHED);
+      }
+   }
+
+   private boolean isStarted() {
+      return getState() != State.NEW || executor != null;
+   }
+
+   private void scheduleDrain() {
+      if (!drainScheduled.compareAndSet(false, true))
+         return;
+
+      try {
+         executor.execute(this::drain);
+      } catch (RejectedExecutionException e) {
+         LOGGER.error("The executor rejected to write the download", e);
+         cancel();
+         terminate();
+      }
+   }
+
+   private void drain() {
+      while (!queue.isEmpty()) {
+         write();
+         if (isThrottled())
+            break;
+      }
+
+      if (getDownloadState() != RUNNING && queue.isEmpty()) {
+         terminate();
+         return;
+      }
+
+      drainScheduled.set(false);
+      if (!queue.isEmpty() || getDownloadState() != RUNNING)
+         scheduleDrain();
+   }
+
+   private void write() {
+      try {
+         if (fileChannel == null)
+            writeNext();
+         else
+            writeQueued();
+      } catch (InterruptedException e) {
+         // Nothing to do here
+      } catch (IOException e) {
+         fail(e);
+      }
+   }
+
+   private void terminate() {
+      window.close();
+      releaseFilling();
+      releasePausedChannels();
+      if (mapped != null && getDownloadState() != CANCELLED && getDownloadState() != ERROR)
+         forceMapped();
+      if (getDownloadState() != CANCELLED && getDownloadState() != ERROR)
+         verifyChecksum();
+      else if (checksum != null)
+         checksum.discard();
+
+      if (getDownloadState() != CANCELLED && getDownloadState() != ERROR) {
+         setState(COMPLETE);
+         LOGGER.info(checksum == null ? "Download complete" : "Download complete, " + checksum);
+      }
+
+      try {
+         if (fileChannel != null)
+            fileChannel.close();
+         else if (out != null)
+            out.close();
+      } catch (IOException e) {
+         LOGGER.warn("Could not close Outputstream of of download");
+      }
+
+      for (DownloadSegment segment : segments) {
          try {
-            byte[] bytes = queue.take();
-            out.write(bytes);
-            written(bytes.length);
-         } catch (InterruptedException e) {
-            // Nothing to do here
+            segment.getChannel().close();
          } catch (IOException e) {
-            LOGGER.error("Error while downloading", e);
-            this.exception = e;
-            setState(ERROR);
-            try {
-               channel.send(new DownloadCancelPacket());
-            } catch (IOException ex) {
-               // Cannot do anything here
+            LOGGER.warn("Error closing the channel of " + segment, e);
+         }
+      }
+
+      List<Consumer<ClientDownload>> handlers;
+      synchronized (terminationHandlers) {
+         terminated = true;
+         handlers = new ArrayList<>(terminationHandlers);
+      }
+      for (Consumer<ClientDownload> handler : handlers) {
+         try {
+            handler.accept(this);
+         } catch (RuntimeException e) {
+            LOGGER.warn("Error in termination handler of download", e);
+         }
+      }
+   }
+
+   /**
+    * Forces the windows of the mapped target, that have not been forced yet, to the disk.
+    * Marks the download as failed, if they could not be written.
+    */
+   private void forceMapped() {
+      try {
+         mapped.force();
+      } catch (IOException e) {
+         LOGGER.error("Could not write the mapped target of the download to the disk", e);
+         this.exception = e;
+         setState(ERROR);
+      }
+   }
+
+   /**
+    * Waits for the checksum of the written data and compares it with the expected checksum.
+    * Marks the download as failed, if they differ.
+    */
+   private void verifyChecksum() {
+      if (checksum == null)
+         return;
+
+      try {
+         checksum.await();
+      } catch (IOException e) {
+         LOGGER.error("Could not compute the checksum of the download", e);
+         this.exception = e;
+         setState(ERROR);
+         return;
+      } catch (InterruptedException e) {
+         LOGGER.warn("Interrupted while waiting for the checksum of the download");
+         Thread.currentThread().interrupt();
+         this.breakeUpMessage = "Interrupted while waiting for the checksum";
+         setState(ERROR);
+         return;
+      }
+
+      if (expectedChecksum != null && !checksum.matches(expectedChecksum)) {
+         String msg = String.format("Checksum mismatch: expected %s %s but the download has %s",
+                                    checksum.getAlgorithm(),
+                                    expectedChecksum,
+                                    checksum.getChecksum());
+         LOGGER.error(msg);
+         this.exception = new IOException(msg);
+         this.checksumMismatch = true;
+         setState(ERROR);
+      }
+   }
+
+   private void fail(IOException e) {
+      LOGGER.error("Error while downloading", e);
+      this.exception = e;
+      setState(ERROR);
+      cancelOnServer();
+      wakeUp();
+   }
+
+   /**
+    * Marks the download as failed, e.g. because it could not be resumed after its channels have been lost.
+    */
+   public void abort(IOException cause) {
+      fail(cause);
+   }
+
+   private void cancelOnServer() {
+      cancelOnServer(channel);
+      for (DownloadSegment segment : segments)
+         cancelOnServer(segment.getChannel());
+   }
+
+   private static void cancelOnServer(Channel<DownloadPacket> channel) {
+      try {
+         channel.send(new DownloadCancelPacket());
+      } catch (IOException e) {
+         // Cannot do anything here
+      }
+   }
+
+   private void writeNext() throws InterruptedException, IOException {
+      Chunk chunk = queue.take();
+      if (chunk == WAKE_UP)
+         return;
+
+      ByteBuffer buffer = chunk.buffer;
+      int count = buffer.remaining();
+      boolean handedOver = false;
+      try {
+         if (!throttle(count))
+            return;
+
+         long start = System.nanoTime();
+         out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+         recordWriteLatency(start);
+         writtenBytes.addAndGet(count);
+         reportWritten(count);
+         if (checksum != null) {
+            checksum.update(new ByteBuffer[] {buffer}, () -> release(buffer, count));
+            handedOver = true;
+         }
+      } finally {
+         if (!handedOver)
+            release(buffer, count);
+      }
+   }
+
+   private void release(ByteBuffer buffer, int count) {
+      window.release(count);
+      bufferPool.release(buffer);
+      resumeIfDrained();
+   }
+
+   /**
+    * Writes the queued chunks. All of them are written at once, unless the download is throttled.
+    * A throttled download writes one chunk at a time, so the downloads sharing a rate limit
+    * take turns with chunks of the same size.
+    */
+   private void writeQueued() throws InterruptedException, IOException {
+      drained.add(queue.take());
+      if (!isThrottled())
+         queue.drainTo(drained);
+
+      drained.removeIf(chunk -> chunk == WAKE_UP);
+
+      int total = 0;
+      ByteBuffer[] buffers = new ByteBuffer[drained.size()];
+      for (int i = 0; i < buffers.length; i++) {
+         buffers[i] = drained.get(i).buffer;
+         total += buffers[i].remaining();
+      }
+
+      boolean handedOver = false;
+      try {
+         if (!throttle(total))
+            return;
+
+         ByteBuffer[] written = checksum == null ? null : duplicates(buffers);
+         long start = System.nanoTime();
+         if (mapped != null) {
+            writeMapped();
+         } else {
+            int first = 0;
+            while (first < drained.size()) {
+               int last = endOfRun(first);
+               writeRun(first, last);
+               first = last;
             }
          }
+         recordWriteLatency(start);
+         if (written != null) {
+            int count = total;
+            checksum.update(written, () -> release(buffers, count));
+            handedOver = true;
+         }
+      } finally {
+         if (!handedOver)
+            release(buffers, total);
+
+         drained.clear();
       }
-      if (getDownloadState() != CANCELLED && getDownloadState() != ERROR) {
-         setState(COMPLETE);
-         LOGGER.info("Download complete");
+   }
+
+   private static ByteBuffer[] duplicates(ByteBuffer[] buffers) {
+      ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++)
+         duplicates[i] = buffers[i].duplicate();
+
+      return duplicates;
+   }
+
+   private void release(ByteBuffer[] buffers, int count) {
+      window.release(count);
+      for (ByteBuffer buffer : buffers)
+         bufferPool.release(buffer);
+
+      resumeIfDrained();
+   }
+
+   private void reportReceived(int count) {
+      if (progressDispatcher == null)
+         received(count);
+      else
+         pendingReceived.addAndGet(count);
+   }
+
+   private void reportWritten(int count) {
+      if (progressDispatcher == null)
+         written(count);
+      else
+         pendingWritten.addAndGet(count);
+   }
+
+   /**
+    * Hands the bytes, that have been received and written since the last call, to the listeners as one event each.
+    */
+   void flushProgress() {
+      synchronized (progressLock) {
+         for (long count = pendingReceived.getAndSet(0); count > 0; count -= Integer.MAX_VALUE)
+            received((int) Math.min(count, Integer.MAX_VALUE));
+
+         for (long count = pendingWritten.getAndSet(0); count > 0; count -= Integer.MAX_VALUE)
+            written((int) Math.min(count, Integer.MAX_VALUE));
+      }
+   }
+
+   /**
+    * Delivers the pending progress before a final state, so the listeners see the complete progress first.
+    */
+   @Override
+   protected void setState(DownloadState state) {
+      if (progressDispatcher != null && (state == COMPLETE || state == ERROR || state == CANCELLED))
+         flushProgress();
+
+      super.setState(state);
+   }
+
+   private void recordWriteLatency(long startNanos) {
+      LongConsumer recorder = writeLatencyRecorder;
+      if (recorder != null)
+         recorder.accept(System.nanoTime() - startNanos);
+   }
+
+   /**
+    * @return The index behind the last drained chunk, that directly follows the chunk at <code>first</code> in the file
+    */
+   private int endOfRun(int first) {
+      Chunk previous = drained.get(first);
+      int i = first + 1;
+      for (; i < drained.size(); i++) {
+         Chunk chunk = drained.get(i);
+         if (chunk.position >= 0 && chunk.position != previous.position + previous.buffer.remaining())
+            break;
+
+         previous = chunk;
       }
+      return i;
+   }
+
+   private void writeRun(int first, int last) throws IOException {
+      if (drained.get(first).position >= 0)
+         fileChannel.position(drained.get(first).position);
+
+      ByteBuffer[] gathered = new ByteBuffer[last - first];
+      for (int i = 0; i < gathered.length; i++)
+         gathered[i] = drained.get(first + i).buffer;
+
+      int next = 0;
+      while (next < gathered.length) {
+         long count = fileChannel.write(gathered, next, gathered.length - next);
+         if (count > 0) {
+            writtenBytes.addAndGet(count);
+            reportWritten((int) count);
+         }
+
+         while (next < gathered.length && !gathered[next].hasRemaining())
+            next++;
+      }
+   }
+
+   private void writeMapped() throws IOException {
+      for (Chunk chunk : drained) {
+         int count = mapped.write(chunk.buffer, chunk.position);
+         writtenBytes.addAndGet(count);
+         reportWritten(count);
+      }
+   }
+
+   /**
+    * Copies <code>length</code> bytes of the payload into pooled buffers
+    * and queues every filled buffer for the writer.
+    * A partially filled buffer is queued as well, if the writer is idle.
+    * Otherwise it is kept to be filled up by the next payload.
+    *
+    * @param segment The segment, that the payload belongs to or <code>null</code> if the download is not segmented
+    */
+   private void enqueue(DownloadSegment segment, byte[] payload, int length) throws InterruptedException {
+      synchronized (fillLock) {
+         int offset = 0;
+         while (offset < length) {
+            ByteBuffer buffer = filling(segment, offset);
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.put(payload, offset, count);
+            offset += count;
+            if (!buffer.hasRemaining())
+               flushFilling(segment);
+         }
+         if (queue.isEmpty())
+            flushFilling(segment);
+      }
+   }
+
+   private ByteBuffer filling(DownloadSegment segment, int payloadOffset) {
+      if (segment == null) {
+         if (filling == null)
+            filling = bufferPool.borrow();
+
+         return filling;
+      }
+      if (segment.filling == null) {
+         segment.filling = bufferPool.borrow();
+         segment.fillingPosition = segment.position + payloadOffset;
+      }
+      return segment.filling;
+   }
+
+   private void flushFilling(DownloadSegment segment) throws InterruptedException {
+      synchronized (fillLock) {
+         ByteBuffer buffer = segment == null ? filling : segment.filling;
+         if (buffer == null)
+            return;
+
+         buffer.flip();
+         queue.put(new Chunk(buffer, segment == null ? -1 : segment.fillingPosition));
+         if (segment == null)
+            filling = null;
+         else
+            segment.filling = null;
+      }
+      if (executor != null)
+         scheduleDrain();
+   }
+
+   private void releaseFilling() {
+      synchronized (fillLock) {
+         if (filling != null) {
+            window.release(filling.position());
+            bufferPool.release(filling);
+            filling = null;
+         }
+         if (primary != null)
+            releaseFilling(primary);
+
+         for (DownloadSegment segment : segments)
+            releaseFilling(segment);
+      }
+   }
+
+   private void releaseFilling(DownloadSegment segment) {
+      if (segment.filling != null) {
+         window.release(segment.filling.position());
+         bufferPool.release(segment.filling);
+         segment.filling = null;
+      }
+   }
+
+   private void wakeUp() {
+      queue.offer(WAKE_UP);
+      if (executor != null)
+         scheduleDrain();
+   }
+
+   void segmentData(DownloadSegment segment, byte[] payload) {
+      receive(segment, payload);
+   }
 
+   /**
+    * Decodes the payload, if the payloads of this download are compressed, and hands the data to the writer.
+    * Runs on the thread, that reads the connection, so it must not wait for anything.
+    *
+    * @param segment The segment, that the payload belongs to or <code>null</code> if the download is not segmented
+    */
+   private void receive(DownloadSegment segment, byte[] payload) {
+      transferredBytes.addAndGet(payload.length);
+      if (decoder == null) {
+         accept(segment, payload, payload.length);
+         return;
+      }
+
+      synchronized (decoder) {
+         int length;
+         try {
+            length = decoder.decode(payload);
+         } catch (IOException e) {
+            fail(e);
+            return;
+         }
+         accept(segment, decoder.getBuffer(), length);
+      }
+   }
+
+   /**
+    * Blocks the writer while the own or the shared rate limit is exceeded.
+    *
+    * @return <code>false</code> if the download has been stopped meanwhile
+    */
+   private boolean throttle(int bytes) {
+      try {
+         if (!rateLimiter.acquire(bytes, this::isStopped))
+            return false;
+
+         RateLimiter shared = this.sharedRateLimiter;
+         return shared == null || shared.acquire(bytes, this::isStopped);
+      } catch (InterruptedException e) {
+         return false;
+      }
+   }
+
+   private boolean isThrottled() {
+      RateLimiter shared = this.sharedRateLimiter;
+      return rateLimiter.isLimited() || shared != null && shared.isLimited();
+   }
+
+   private boolean isStopped() {
+      return getDownloadState() == CANCELLED || getDownloadState() == ERROR;
+   }
+
+   /**
+    * Hands the data to the writer, unless the part of the download, that it belongs to, has been detached
+    * or paused meanwhile. A paused part is requested again behind the data, that has been accepted.
+    */
+   private void accept(DownloadSegment segment, byte[] data, int length) {
+      synchronized (fillLock) {
+         if (!isListening(segment))
+            return;
+
+         if (segment != null) {
+            length = segment.accept(length);
+            if (length <= 0)
+               return;
+         }
+      }
+      if (!window.tryAcquire(length)) {
+         if (!window.isClosed())
+            windowFull(segment);
+         return;
+      }
+
+      try {
+         synchronized (fillLock) {
+            if (!isListening(segment)) {
+               window.release(length);
+               return;
+            }
+            reportReceived(length);
+            decodedBytes.addAndGet(length);
+            enqueue(segment, data, length);
+            if (segment != null) {
+               segment.position += length;
+               if (segment.isComplete())
+                  segmentComplete(segment);
+            }
+         }
+      } catch (InterruptedException e) {
+         // Nothing to do here
+      }
+   }
+
+   /**
+    * @return <code>true</code> if the data of the <code>segment</code> is still received over its channel.
+    * Has to be called with the fill lock.
+    */
+   private boolean isListening(DownloadSegment segment) {
+      if (segment == null || segment == primary)
+         return gate.isOpen();
+      else
+         return segment.isListening();
+   }
+
+   /**
+    * Handles a payload, that does not fit into the full receive window.
+    * The receiver must not wait for the writer and the window must not be exceeded,
+    * so the download is paused, if the server can resume it, and cancelled otherwise.
+    */
+   private void windowFull(DownloadSegment segment) {
+      if (pauseRequester != null && pause(segment) || getDownloadState() != RUNNING)
+         return;
+
+      fail(new IOException("The receive window of " + window.getSize() + " bytes is full, "
+                           + "because the data can not be written as fast as it is received. "
+                           + "Enlarge the receive window or enable range requests to pause the download instead."));
+   }
+
+   /**
+    * Pauses the parts of this download, that are not loaded yet, because the receive window is full.
+    * Their gates are closed and the server is told to stop sending over their channels.
+    * The data, that is still received over these channels, is dropped.
+    * As soon as the writer has drained half of the window, the parts are requested again
+    * behind the data, that has been accepted of them.
+    * So the thread, that reads the connection, does not wait for a slow or throttled writer of one download
+    * and the other downloads over the same connection keep being received.
+    *
+    * @param segment The segment of the received payload or <code>null</code> if the download is not segmented
+    *
+    * @return <code>true</code> if the part of the payload is paused, so the payload has to be dropped
+    */
+   private boolean pause(DownloadSegment segment) {
+      List<Channel<DownloadPacket>> stopped;
+      boolean dropped;
+      synchronized (fillLock) {
+         stopped = detachParts(channel -> true);
+         if (!stopped.isEmpty()) {
+            this.paused = true;
+            pausedChannels.addAll(stopped);
+         }
+         dropped = !isListening(segment);
+      }
+      if (!stopped.isEmpty()) {
+         pauses.incrementAndGet();
+         LOGGER.debug("Pausing " + stopped.size() + " channel(s) of the download, because its receive window is full");
+         for (Channel<DownloadPacket> stoppedChannel : stopped)
+            cancelOnServer(stoppedChannel);
+      }
+      resumeIfDrained();
+      return dropped;
+   }
+
+   /**
+    * Requests the paused parts again, if the writer has drained at least half of the receive window.
+    */
+   private void resumeIfDrained() {
+      if (paused && window.getUsed() <= window.getSize() / 2 && resumeScheduled.compareAndSet(false, true))
+         RESUMER.execute(this::resumePaused);
+   }
+
+   private void resumePaused() {
+      RangeRequester requester = pauseRequester;
+      boolean retry = false;
       try {
-         out.close();
+         synchronized (resumeLock) {
+            if (getDownloadState() == RUNNING)
+               resumeParts(requester, true);
+         }
+         this.resumeAttempts = 0;
       } catch (IOException e) {
-         LOGGER.warn("Could not close Outputstream of of download");
+         if (++resumeAttempts < MAX_RESUME_ATTEMPTS) {
+            LOGGER.warn("Could not resume the paused download. Retrying in " + RESUME_RETRY_DELAY + " ms.", e);
+            retry = true;
+         } else {
+            fail(new IOException("Could not resume the download after it has been paused", e));
+         }
+      } finally {
+         releasePausedChannels();
+         synchronized (fillLock) {
+            this.paused = isDetached();
+         }
+      }
+
+      if (retry && getDownloadState() == RUNNING) {
+         RESUMER.schedule(this::resumePaused, RESUME_RETRY_DELAY, TimeUnit.MILLISECONDS);
+      } else {
+         resumeScheduled.set(false);
+         resumeIfDrained();
       }
    }
 
+   private void releasePausedChannels() {
+      RangeRequester requester = pauseRequester;
+      if (requester == null)
+         return;
+
+      List<Channel<DownloadPacket>> released;
+      synchronized (fillLock) {
+         released = new ArrayList<>(pausedChannels);
+         pausedChannels.clear();
+      }
+      for (Channel<DownloadPacket> releasedChannel : released)
+         requester.release(releasedChannel);
+   }
+
+   private void segmentComplete(DownloadSegment segment) throws InterruptedException {
+      LOGGER.debug("Segment complete: " + segment);
+      flushFilling(segment);
+      if (segment == primary) {
+         LOGGER.debug("Telling the server to stop sending over the own channel behind " + segment.getEnd());
+         cancelOnServer(channel);
+      }
+
+      if (++completeSegments == segments.size() + 1) {
+         setState(LOADING_FINISHED);
+         wakeUp();
+      }
+   }
+
+   void segmentFinished(DownloadSegment segment) {
+      synchronized (fillLock) {
+         if (segment.isComplete())
+            return;
+      }
+
+      fail(new IOException("The server finished " + segment + " before all of its data has been received."));
+   }
+
+   void segmentCancelled(DownloadSegment segment, DownloadCancelPacket packet) {
+      synchronized (fillLock) {
+         if (segment.isComplete())
+            return;
+      }
+
+      serverCancelled(packet.getMsg());
+      cancelOnServer();
+   }
+
    @Override
    protected void request(DownloadRequestPacket packet) {
       LOGGER.warn("Download client received DownloadRequestPacket.");
@@ -97,46 +1062,537 @@ public class ClientDownload extends Download {
       LOGGER.warn("Download client received DownloadReadyPacket.");
    }
 
+   /**
+    * Hands the data to the writer or pauses the channels of this download, while its receive window is full.
+    * The window is released by the writing thread.
+    */
    @Override
    protected void data(DownloadDataPacket packet) {
-      try {
-         received(packet.getPayload().length);
-         queue.put(packet.getPayload());
-      } catch (InterruptedException e) {
-         // Nothing to do here
-      }
+      receive(primary, packet.getPayload());
    }
 
    @Override
    protected void finish() {
+      if (primary != null) {
+         segmentFinished(primary);
+         return;
+      }
+
+      try {
+         flushFilling(null);
+      } catch (InterruptedException e) {
+         // Nothing to do here
+      }
       setState(LOADING_FINISHED);
-      interrupt();
+      wakeUp();
    }
 
    @Override
    protected void cancel(DownloadCancelPacket packet) {
-      LOGGER.error("The server canceled the download: " + packet.getMsg());
+      if (primary != null && primary.isComplete()) {
+         LOGGER.debug("The server confirmed to stop sending over the own channel: " + packet.getMsg());
+         return;
+      }
+
+      serverCancelled(packet.getMsg());
+   }
+
+   private void serverCancelled(String msg) {
+      LOGGER.error("The server canceled the download: " + msg);
       setState(ERROR);
-      this.breakeUpMessage = packet.getMsg();
-      interrupt();
+      this.breakeUpMessage = msg;
+      wakeUp();
    }
 
    public void cancel() {
       LOGGER.debug("Canceling the download");
       setState(CANCELLED);
-      interrupt();
+      wakeUp();
+      cancelOnServer();
+   }
+
+   /**
+    * Detaches the parts of this download, that are loaded over any of the <code>lost</code> channels,
+    * e.g. because the connection of these channels has been closed.
+    * The data, that has been received so far, is still written and the download keeps running,
+    * until the detached parts are resumed over new channels by {@link #resume(RangeRequester)}
+    * or the download is cancelled or aborted.
+    *
+    * @param lost The channels, that can not be used anymore
+    *
+    * @return <code>true</code> if any part of this download, that has not been loaded yet, is detached
+    */
+   public boolean detach(Collection<? extends Channel<?>> lost) {
+      synchronized (fillLock) {
+         detachParts(lost::contains);
+         return isDetached();
+      }
+   }
+
+   /**
+    * Closes the gates of the parts of this download, that have not been loaded yet
+    * and whose channels match the <code>filter</code>, and queues their partially filled buffers.
+    * The parts wait to be resumed over new channels. Has to be called with the fill lock.
+    *
+    * @return The channels of the parts, that have been detached
+    */
+   private List<Channel<DownloadPacket>> detachParts(Predicate<Channel<?>> filter) {
+      List<Channel<DownloadPacket>> detachedChannels = new ArrayList<>();
+      if (primary == null) {
+         if (gate.isOpen() && getDownloadState() == RUNNING && filter.test(channel)) {
+            gate.close();
+            this.detached = true;
+            detachedChannels.add(channel);
+            flush(null);
+         }
+         return detachedChannels;
+      }
+
+      if (!primary.isComplete() && gate.isOpen() && filter.test(channel)) {
+         gate.close();
+         detachedSegments.add(primary);
+         detachedChannels.add(channel);
+         flush(primary);
+      }
+      for (DownloadSegment segment : segments) {
+         if (!segment.isComplete() && segment.isListening() && filter.test(segment.getChannel())) {
+            segment.ignore();
+            detachedSegments.add(segment);
+            detachedChannels.add(segment.getChannel());
+            flush(segment);
+         }
+      }
+      return detachedChannels;
+   }
+
+   /**
+    * Queues the partially filled buffer of the <code>segment</code>,
+    * so it does not wait for data of a channel, that has been lost.
+    */
+   private void flush(DownloadSegment segment) {
       try {
-         channel.send(new DownloadCancelPacket());
+         flushFilling(segment);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /**
+    * Resumes the detached parts of this download over new channels.
+    * Every detached part is requested from the position behind the last byte, that has been received of it.
+    * The server is told to start sending over a new channel, as soon as the part listens to it.
+    *
+    * @param requester Establishes a new channel and requests a range of this download on it
+    *
+    * @return The channels, that the detached parts are loaded over now
+    *
+    * @throws IOException If a part could not be requested. The parts, that have not been resumed, stay detached.
+    */
+   public List<Channel<DownloadPacket>> resume(RangeRequester requester) throws IOException {
+      synchronized (resumeLock) {
+         return resumeParts(requester, false);
+      }
+   }
+
+   /**
+    * @param drained Whether to stop resuming parts, as soon as the receive window is more than half full
+    */
+   private List<Channel<DownloadPacket>> resumeParts(RangeRequester requester, boolean drained) throws IOException {
+      List<Channel<DownloadPacket>> resumed = new ArrayList<>();
+      if (isDetachedOwnChannel()) {
+         gate.awaitPassed();
+         long position;
+         synchronized (fillLock) {
+            position = offset + decodedBytes.get();
+         }
+         long end = length < 0 ? -1 : offset + length;
+         if (end >= 0 && position >= end) {
+            LOGGER.debug("All the data of the detached download has been received already");
+            synchronized (fillLock) {
+               this.detached = false;
+            }
+            finish();
+         } else {
+            LOGGER.info("Resuming the download at " + position);
+            Channel<DownloadPacket> newChannel = requester.request(position, end < 0 ? -1 : end - position);
+            if (!bind(newChannel, requester))
+               return resumed;
+
+            resumed.add(newChannel);
+         }
+      }
+
+      while (!drained || window.getUsed() <= window.getSize() / 2) {
+         DownloadSegment segment;
+         ChannelGate lostGate;
+         synchronized (fillLock) {
+            if (detachedSegments.isEmpty())
+               break;
+
+            segment = detachedSegments.get(0);
+            lostGate = segment == primary ? gate : segment.getGate();
+         }
+         lostGate.awaitPassed();
+         long position;
+         synchronized (fillLock) {
+            position = segment.position;
+         }
+         LOGGER.info("Resuming " + segment + " at " + position);
+         Channel<DownloadPacket> segmentChannel = requester.request(position, segment.getEnd() - position);
+         if (segment == primary) {
+            if (!bind(segmentChannel, requester))
+               return resumed;
+
+            primary.setChannel(segmentChannel);
+         } else if (!bind(segment, segmentChannel, requester)) {
+            return resumed;
+         }
+         resumed.add(segmentChannel);
+      }
+      return resumed;
+   }
+
+   private boolean isDetachedOwnChannel() {
+      synchronized (fillLock) {
+         return detached;
+      }
+   }
+
+   /**
+    * Replaces the own channel by the <code>newChannel</code>, that the rest of the own part has been requested on,
+    * and tells the server to start sending.
+    * The part is not detached anymore before the server starts sending, so it can be paused again right away.
+    *
+    * @return <code>false</code> if the download has been stopped meanwhile, so the new channel has been released
+    *
+    * @throws IOException If the server could not be told to start sending. The part stays detached then.
+    */
+   private boolean bind(Channel<DownloadPacket> newChannel, RangeRequester requester) throws IOException {
+      ChannelGate newGate = new ChannelGate(this);
+      synchronized (fillLock) {
+         if (getDownloadState() != RUNNING) {
+            abandon(newChannel, requester);
+            return false;
+         }
+         this.channel = newChannel;
+         this.gate = newGate;
+         if (primary == null)
+            this.detached = false;
+         else
+            detachedSegments.remove(primary);
+      }
+      newChannel.addListener(newGate);
+      try {
+         newChannel.send(new DownloadReadyPacket());
       } catch (IOException e) {
-         // Cannot do anything here
+         synchronized (fillLock) {
+            detachParts(c -> c == newChannel);
+         }
+         throw e;
+      }
+      return true;
+   }
+
+   /**
+    * Replaces the channel of the <code>segment</code> by the <code>newChannel</code>,
+    * that the rest of the segment has been requested on, and tells the server to start sending.
+    *
+    * @see #bind(Channel, RangeRequester)
+    */
+   private boolean bind(DownloadSegment segment,
+                        Channel<DownloadPacket> newChannel,
+                        RangeRequester requester) throws IOException {
+      ChannelGate newGate;
+      synchronized (fillLock) {
+         if (getDownloadState() != RUNNING) {
+            abandon(newChannel, requester);
+            return false;
+         }
+         newGate = segment.rebind(newChannel);
+         detachedSegments.remove(segment);
       }
+      newChannel.addListener(newGate);
+      try {
+         newChannel.send(new DownloadReadyPacket());
+      } catch (IOException e) {
+         synchronized (fillLock) {
+            detachParts(c -> c == newChannel);
+         }
+         throw e;
+      }
+      return true;
+   }
+
+   private static void abandon(Channel<DownloadPacket> channel, RangeRequester requester) {
+      cancelOnServer(channel);
+      requester.release(channel);
+   }
+
+   /**
+    * @return <code>true</code> if any part of this download waits to be resumed over a new channel
+    */
+   public boolean isDetached() {
+      synchronized (fillLock) {
+         return detached || !detachedSegments.isEmpty();
+      }
+   }
+
+   /**
+    * Registers a handler, that is called by the writer after the download has terminated
+    * and its target has been closed. If the download has already terminated,
+    * the handler is called immediately by the calling thread.
+    */
+   public void whenTerminated(Consumer<ClientDownload> handler) {
+      Objects.requireNonNull(handler);
+      synchronized (terminationHandlers) {
+         if (!terminated) {
+            terminationHandlers.add(handler);
+            return;
+         }
+      }
+      handler.accept(this);
+   }
+
+   /**
+    * @return The position in the target file, where this download started writing
+    */
+   public long getOffset() {
+      return offset;
+   }
+
+   /**
+    * @return <code>true</code> if this download has been started on an executor instead of its own thread
+    */
+   public boolean isExecuted() {
+      return executor != null;
+   }
+
+   public Channel<DownloadPacket> getChannel() {
+      return channel;
+   }
+
+   /**
+    * @return The channels of the segments, that have been split off this download
+    */
+   public List<Channel<DownloadPacket>> getSegmentChannels() {
+      List<Channel<DownloadPacket>> channels = new ArrayList<>(segments.size());
+      for (DownloadSegment segment : segments)
+         channels.add(segment.getChannel());
+
+      return Collections.unmodifiableList(channels);
+   }
+
+   public boolean isSegmented() {
+      return primary != null;
+   }
+
+   /**
+    * @return <code>true</code> if the data of this download has been in its target already, so nothing is loaded
+    */
+   public boolean isServed() {
+      return served;
+   }
+
+   /**
+    * Sets the decoder for the payloads of this download.
+    * Has to be set before the download is started, if the server has been asked for compressed payloads.
+    */
+   public void setPayloadDecoder(PayloadDecoder decoder) {
+      this.decoder = decoder;
+   }
+
+   public boolean isCompressed() {
+      return decoder != null;
+   }
+
+   /**
+    * @return The number of payload bytes, that have been received over the channels of this download
+    */
+   public long getTransferredBytes() {
+      return transferredBytes.get();
+   }
+
+   /**
+    * @return The number of bytes, that the received payloads have been decoded to
+    */
+   public long getDecodedBytes() {
+      return decodedBytes.get();
+   }
+
+   /**
+    * @return The number of bytes, that have been written to the target
+    */
+   public long getWrittenBytes() {
+      return writtenBytes.get();
+   }
+
+   /**
+    * @return The factor, that compression multiplied the effective bandwidth of this download with
+    */
+   public double getCompressionRatio() {
+      long transferred = transferredBytes.get();
+      return transferred == 0 ? 1 : (double) decodedBytes.get() / transferred;
+   }
+
+   /**
+    * Sets the maximum number of bytes, that may be received but not yet written.
+    * This is the ceiling of the memory, that this download occupies for pending data.
+    */
+   public void setReceiveWindowSize(long size) {
+      window.setSize(size);
+   }
+
+   /**
+    * @return The rate limiter of this download alone, which is unlimited by default.
+    * Its rate can be changed while the download is running.
+    */
+   public RateLimiter getRateLimiter() {
+      return rateLimiter;
+   }
+
+   /**
+    * Sets a rate limiter, that this download shares with other downloads, in addition to its own.
+    */
+   public void setSharedRateLimiter(RateLimiter sharedRateLimiter) {
+      this.sharedRateLimiter = sharedRateLimiter;
+   }
+
+   /**
+    * Lets this download pause its channels, as soon as its receive window is full,
+    * instead of blocking the thread, that reads the connection, which all the channels of the connection share.
+    * The paused parts are requested again by the <code>requester</code>,
+    * when the writer has drained half of the window.
+    * Should only be enabled, if the server answers range requests.
+    *
+    * @param requester Establishes new channels for the paused parts and releases the paused channels
+    */
+   public void enablePausing(RangeRequester requester) {
+      this.pauseRequester = Objects.requireNonNull(requester);
+   }
+
+   public boolean isPausable() {
+      return pauseRequester != null;
+   }
+
+   /**
+    * @return How often the channels of this download have been paused, because its receive window has been full
+    */
+   public long getPauseCount() {
+      return pauses.get();
+   }
+
+   /**
+    * Lets the progress of this download be delivered to its listeners by the <code>dispatcher</code> in intervals
+    * instead of once per packet. Has to be set before the download is started.
+    */
+   public void setProgressDispatcher(ProgressDispatcher dispatcher) {
+      if (isStarted())
+         throw new IllegalStateException("The progress dispatcher has to be set before the download is started.");
+
+      this.progressDispatcher = dispatcher;
+      if (dispatcher != null)
+         dispatcher.register(this);
+   }
+
+   /**
+    * Sets the recorder, that receives the duration of every write to the target in nanoseconds.
+    * A gathering write of all the queued data counts as a single write.
+    */
+   public void setWriteLatencyRecorder(LongConsumer writeLatencyRecorder) {
+      this.writeLatencyRecorder = writeLatencyRecorder;
+   }
+
+   /**
+    * @return The number of buffers, that are queued to be written
+    */
+   public int getQueueDepth() {
+      return queue.size();
+   }
+
+   public ReceiveWindow getReceiveWindow() {
+      return window;
+   }
+
+   public BufferPool getBufferPool() {
+      return bufferPool;
+   }
+
+   /**
+    * Lets the written data be checksummed off the writer.
+    * A download with an expected checksum is marked as failed instead of complete, if the checksums differ.
+    * Has to be called before the download is started. Not supported for segmented downloads,
+    * because their data is not written in order.
+    *
+    * @param checksum The checksum to hand the written data to
+    * @param expectedChecksum The expected checksum as hexadecimal string or <code>null</code> to only compute it
+    */
+   public void setChecksum(StreamingChecksum checksum, String expectedChecksum) {
+      if (isSegmented())
+         throw new IllegalStateException("A segmented download can not be checksummed while it is written.");
+
+      this.checksum = checksum;
+      this.expectedChecksum = expectedChecksum;
+   }
+
+   /**
+    * @return The checksum of the download or <code>null</code> if it is not checksummed
+    */
+   public StreamingChecksum getChecksum() {
+      return checksum;
    }
 
    public IOException getException() {
       return exception;
    }
 
+   /**
+    * @return <code>true</code> if the download failed, because its checksum differs from the expected checksum,
+    * so the data in its target is corrupt
+    */
+   public boolean isChecksumMismatch() {
+      return checksumMismatch;
+   }
+
    public String getBreakUpMessage() {
       return breakeUpMessage;
    }
+
+   /**
+    * Establishes a new channel and requests a range of a download on it.
+    */
+   @FunctionalInterface
+   public static interface RangeRequester {
+      /**
+       * @param position The position in the file, where the range starts
+       * @param length The length of the range or -1 to request everything behind the <code>position</code>
+       *
+       * @return The channel, whose server is ready to send the range, as soon as it is told so
+       *
+       * @throws IOException If the channel could not be established or the range could not be requested
+       */
+      public Channel<DownloadPacket> request(long position, long length) throws IOException;
+
+      /**
+       * Releases a channel, that has been returned by {@link #request(long, long)} and is not used anymore.
+       *
+       * @param channel The channel to release
+       */
+      public default void release(Channel<DownloadPacket> channel) {
+
+      }
+   }
+
+   /**
+    * A buffer of received data, that is queued to be written at a position in the file.
+    */
+   private static class Chunk {
+      private final ByteBuffer buffer;
+      /** The position in the file or -1 to write at the current position. */
+      private final long position;
+
+      private Chunk(ByteBuffer buffer, long position) {
+         this.buffer = buffer;
+         this.position = position;
+      }
+   }
 }
@@ -0,0 +1,189 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.dk.bininja.net.Base64Connection;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.Channel;
+import de.dk.ch.ChannelDeclinedException;
+import de.dk.ch.Multiplexer;
+import de.dk.util.net.Connection;
+
+/**
+ * A pool of connections to the same server, each with its own multiplexer.
+ * New download channels are established on the connection with the least open channels,
+ * so large and small downloads do not have to share a single TCP stream.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ConnectionPool {
+   private final List<PooledConnection> connections = new CopyOnWriteArrayList<>();
+   private final Map<Channel<?>, PooledConnection> channels = new ConcurrentHashMap<>();
+
+   public ConnectionPool() {
+
+   }
+
+   /**
+    * Adds the connection to the pool and attaches a multiplexer to it.
+    * The connection has to be started by the caller afterwards.
+    */
+   public void add(Base64Connection connection) {
+      connections.add(new PooledConnection(connection, connection.attachMultiplexer()));
+   }
+
+   /**
+    * Removes the connection from the pool.
+    * The channels of the connection are not counted anymore.
+    *
+    * @return <code>true</code> if the connection was part of the pool
+    */
+   public boolean remove(Connection connection) {
+      PooledConnection pooled = find(connection);
+      if (pooled == null)
+         return false;
+
+      connections.remove(pooled);
+      channels.values().removeIf(c -> c == pooled);
+      return true;
+   }
+
+   /**
+    * @return The download channels, that have been established on the <code>connection</code> and not released yet
+    */
+   public Set<Channel<?>> channelsOf(Connection connection) {
+      Set<Channel<?>> result = new HashSet<>();
+      for (Map.Entry<Channel<?>, PooledConnection> entry : channels.entrySet()) {
+         if (entry.getValue().connection == connection)
+            result.add(entry.getKey());
+      }
+      return result;
+   }
+
+   /**
+    * Establishes a new download channel on the least loaded connection.
+    * The channel has to be given back by {@link #release(Channel)} when it is not used anymore.
+    */
+   public Channel<DownloadPacket> establishNewChannel(long timeout) throws IOException,
+                                                                        ChannelDeclinedException,
+                                                                        InterruptedException,
+                                                                        TimeoutException {
+      PooledConnection connection = leastLoaded();
+      if (connection == null)
+         throw new IOException("Not connected to a server.");
+
+      connection.load.incrementAndGet();
+      Channel<DownloadPacket> channel;
+      try {
+         channel = connection.multiplexer.establishNewChannel(DownloadPacket.class, timeout);
+      } catch (IOException | ChannelDeclinedException | InterruptedException | TimeoutException e) {
+         connection.load.decrementAndGet();
+         throw e;
+      }
+      channels.put(channel, connection);
+      return channel;
+   }
+
+   /**
+    * Stops counting the channel as load of its connection.
+    * Releasing a channel more than once has no effect.
+    */
+   public void release(Channel<?> channel) {
+      PooledConnection connection = channels.remove(channel);
+      if (connection != null)
+         connection.load.decrementAndGet();
+   }
+
+   private PooledConnection leastLoaded() {
+      PooledConnection result = null;
+      for (PooledConnection connection : connections) {
+         if (result == null || connection.getLoad() < result.getLoad())
+            result = connection;
+      }
+      return result;
+   }
+
+   private PooledConnection find(Connection connection) {
+      for (PooledConnection pooled : connections) {
+         if (pooled.connection == connection)
+            return pooled;
+      }
+      return null;
+   }
+
+   public List<PooledConnection> getConnections() {
+      return new ArrayList<>(connections);
+   }
+
+   public Base64Connection get(int index) {
+      return connections.get(index).connection;
+   }
+
+   public int size() {
+      return connections.size();
+   }
+
+   public boolean isEmpty() {
+      return connections.isEmpty();
+   }
+
+   /**
+    * Removes all the connections from the pool without closing them.
+    *
+    * @return The connections, that have been part of the pool
+    */
+   public List<Base64Connection> clear() {
+      List<Base64Connection> result = new ArrayList<>(connections.size());
+      for (PooledConnection pooled : connections)
+         result.add(pooled.connection);
+
+      connections.clear();
+      channels.clear();
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "ConnectionPool " + connections;
+   }
+
+   /**
+    * A connection of the pool together with its multiplexer and the number of its open download channels.
+    */
+   public static class PooledConnection {
+      private final Base64Connection connection;
+      private final Multiplexer multiplexer;
+      private final AtomicInteger load = new AtomicInteger();
+
+      private PooledConnection(Base64Connection connection, Multiplexer multiplexer) {
+         this.connection = connection;
+         this.multiplexer = multiplexer;
+      }
+
+      public Base64Connection getConnection() {
+         return connection;
+      }
+
+      /**
+       * @return The number of download channels, that are currently open on this connection
+       */
+      public int getLoad() {
+         return load.get();
+      }
+
+      @Override
+      public String toString() {
+         return connection.getAddress() + " [" + load + " channels]";
+      }
+   }
+}
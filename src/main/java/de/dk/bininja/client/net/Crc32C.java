@@ -0,0 +1,95 @@
+package de.dk.bininja.client.net;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * The CRC-32C (Castagnoli) checksum, which is not part of the JDK before Java 9.
+ * Processes 8 bytes per step with the slicing-by-8 tables.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+final class Crc32C implements Checksum {
+   private static final int POLYNOMIAL = 0x82F63B78;
+   private static final int SCRATCH_SIZE = 8 * 1024;
+   private static final int[][] TABLES = new int[8][256];
+
+   static {
+      for (int n = 0; n < 256; n++) {
+         int crc = n;
+         for (int k = 0; k < 8; k++)
+            crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+
+         TABLES[0][n] = crc;
+      }
+      for (int n = 0; n < 256; n++) {
+         int crc = TABLES[0][n];
+         for (int t = 1; t < 8; t++) {
+            crc = TABLES[0][crc & 0xFF] ^ (crc >>> 8);
+            TABLES[t][n] = crc;
+         }
+      }
+   }
+
+   private int crc = 0xFFFFFFFF;
+   /** Takes the bytes of direct buffers, so they can be processed 8 at a time. */
+   private byte[] scratch;
+
+   @Override
+   public void update(int b) {
+      crc = TABLES[0][(crc ^ b) & 0xFF] ^ (crc >>> 8);
+   }
+
+   @Override
+   public void update(byte[] b, int off, int len) {
+      int c = crc;
+      int end = off + len;
+      while (end - off >= 8) {
+         c ^= (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+         c = TABLES[7][c & 0xFF]
+             ^ TABLES[6][(c >>> 8) & 0xFF]
+             ^ TABLES[5][(c >>> 16) & 0xFF]
+             ^ TABLES[4][c >>> 24]
+             ^ TABLES[3][b[off + 4] & 0xFF]
+             ^ TABLES[2][b[off + 5] & 0xFF]
+             ^ TABLES[1][b[off + 6] & 0xFF]
+             ^ TABLES[0][b[off + 7] & 0xFF];
+         off += 8;
+      }
+      while (off < end)
+         c = TABLES[0][(c ^ b[off++]) & 0xFF] ^ (c >>> 8);
+
+      crc = c;
+   }
+
+   /**
+    * Updates the checksum with the remaining bytes of the <code>buffer</code> and consumes them.
+    */
+   public void update(ByteBuffer buffer) {
+      if (buffer.hasArray()) {
+         update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+         buffer.position(buffer.limit());
+         return;
+      }
+
+      if (scratch == null)
+         scratch = new byte[SCRATCH_SIZE];
+
+      while (buffer.hasRemaining()) {
+         int count = Math.min(buffer.remaining(), scratch.length);
+         buffer.get(scratch, 0, count);
+         update(scratch, 0, count);
+      }
+   }
+
+   @Override
+   public long getValue() {
+      return ~crc & 0xFFFFFFFFL;
+   }
+
+   @Override
+   public void reset() {
+      crc = 0xFFFFFFFF;
+   }
+}
@@ -0,0 +1,93 @@
+package de.dk.bininja.client.net;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+
+/**
+ * A download request for a byte range of a file.
+ * The server answers with the usual header, which still announces the length of the whole file,
+ * but only sends the bytes of the range.
+ * The request may advertise the {@link PayloadCodec}s, that the client can decode.
+ * In that case the server sends every payload as a frame of one of these codecs.
+ * Only servers, that know this packet type, can answer it.
+ * So it is only sent to resume a partial download, to load a segment of a download or to ask for compression,
+ * and only if the user has enabled range requests. Otherwise the server only gets plain
+ * {@link DownloadRequestPacket}s.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadRangeRequestPacket extends DownloadRequestPacket {
+   private static final long serialVersionUID = -4083658624107285347L;
+
+   private final long offset;
+   private final long length;
+   private final byte[] codecs;
+
+   /**
+    * @param url The url of the file
+    * @param offset The position of the first requested byte
+    * @param length The number of requested bytes or -1 for all the bytes up to the end of the file
+    * @param codecs The codecs, that the client accepts for the payloads
+    */
+   public DownloadRangeRequestPacket(URL url, long offset, long length, Collection<PayloadCodec> codecs) {
+      super(url);
+      if (offset < 0)
+         throw new IllegalArgumentException("The offset must not be negative: " + offset);
+      if (length < -1)
+         throw new IllegalArgumentException("Invalid length: " + length);
+
+      this.offset = offset;
+      this.length = length;
+      this.codecs = new byte[codecs.size()];
+      int i = 0;
+      for (PayloadCodec codec : codecs)
+         this.codecs[i++] = codec.getId();
+   }
+
+   public DownloadRangeRequestPacket(URL url, long offset, long length) {
+      this(url, offset, length, Collections.emptySet());
+   }
+
+   public DownloadRangeRequestPacket(URL url, long offset) {
+      this(url, offset, -1);
+   }
+
+   public long getOffset() {
+      return offset;
+   }
+
+   public long getLength() {
+      return length;
+   }
+
+   /**
+    * @return The codecs, that the client accepts for the payloads.
+    * If empty, the payloads have to be sent as they are.
+    */
+   public Set<PayloadCodec> getCodecs() {
+      Set<PayloadCodec> result = EnumSet.noneOf(PayloadCodec.class);
+      for (PayloadCodec codec : PayloadCodec.values()) {
+         for (byte id : codecs) {
+            if (codec.getId() == id)
+               result.add(codec);
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadRangeRequestPacket { offset=" + offset
+             + ", length=" + length
+             + ", codecs=" + Arrays.toString(codecs)
+             + ", " + super.toString()
+             + " }";
+   }
+}
@@ -2,11 +2,21 @@ package de.dk.bininja.client.net;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
 import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
 import de.dk.bininja.net.packet.download.DownloadPacket;
 import de.dk.bininja.net.packet.download.DownloadRequestPacket;
@@ -22,69 +32,189 @@ public class DownloadRequest implements ChannelListener<DownloadPacket> {
 
    private static final long DEFAULT_TIMEOUT = 12000;
 
+   /**
+    * Times out all the pending requests, so an outstanding request does not occupy a thread.
+    * Also removes the requests from their channels, once they are answered.
+    */
+   private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "download-request-timer");
+      thread.setDaemon(true);
+      return thread;
+   });
+
    private Channel<DownloadPacket> channel;
    private URL url;
+   private long offset;
+   private long length;
+   private Set<PayloadCodec> codecs;
 
-   private DownloadHeaderPacket header;
+   private CompletableFuture<DownloadHeaderPacket> header;
+
+   /**
+    * Creates a request for <code>length</code> bytes of <code>url</code> starting at <code>offset</code>.
+    * A request for anything else than the whole file is sent as a {@link DownloadRangeRequestPacket}.
+    *
+    * @param length The number of requested bytes or -1 for all the bytes up to the end of the file
+    * @param codecs The codecs, that the payloads may be compressed with
+    */
+   public DownloadRequest(Channel<DownloadPacket> downloadChannel,
+                          URL url,
+                          long offset,
+                          long length,
+                          Set<PayloadCodec> codecs) {
+      if (offset < 0)
+         throw new IllegalArgumentException("The offset must not be negative: " + offset);
+      if (length < -1)
+         throw new IllegalArgumentException("Invalid length: " + length);
 
-   public DownloadRequest(Channel<DownloadPacket> downloadChannel, URL url) {
       this.channel = downloadChannel;
       this.url = url;
+      this.offset = offset;
+      this.length = length;
+      this.codecs = codecs.isEmpty() ? EnumSet.noneOf(PayloadCodec.class) : EnumSet.copyOf(codecs);
       channel.addListener(this);
    }
 
+   public DownloadRequest(Channel<DownloadPacket> downloadChannel, URL url, long offset, long length) {
+      this(downloadChannel, url, offset, length, Collections.emptySet());
+   }
+
+   public DownloadRequest(Channel<DownloadPacket> downloadChannel, URL url, long offset) {
+      this(downloadChannel, url, offset, -1);
+   }
+
+   public DownloadRequest(Channel<DownloadPacket> downloadChannel, URL url) {
+      this(downloadChannel, url, 0);
+   }
+
    public DownloadHeaderPacket request() throws IOException,
                                                 InterruptedException,
                                                 TimeoutException {
       return request(DEFAULT_TIMEOUT);
    }
 
-   public synchronized DownloadHeaderPacket request(long timeout) throws IOException,
-                                                                         InterruptedException,
-                                                                         TimeoutException {
-      DownloadRequestPacket requestPacket = new DownloadRequestPacket(url);
+   public DownloadHeaderPacket request(long timeout) throws IOException,
+                                                            InterruptedException,
+                                                            TimeoutException {
+      CompletableFuture<DownloadHeaderPacket> future = requestAsync(timeout);
+      LOGGER.debug("Waiting for the download header from the server.");
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         future.cancel(false);
+         throw e;
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException)
+            throw (IOException) cause;
+         if (cause instanceof TimeoutException)
+            throw (TimeoutException) cause;
+
+         throw new IOException("Error requesting the download header", cause);
+      }
+   }
+
+   public CompletableFuture<DownloadHeaderPacket> requestAsync() {
+      return requestAsync(DEFAULT_TIMEOUT);
+   }
+
+   /**
+    * Sends the request to the server without waiting for the response.
+    * The returned future is completed by the thread, that receives the header,
+    * or exceptionally with a {@link TimeoutException}, if the header is not received within <code>timeout</code>.
+    * Any number of requests on different channels can be outstanding at once,
+    * so the headers of many downloads are requested within a single round trip.
+    * A request can only be sent once.
+    * Once the future is completed, the request ignores any further packets of the channel.
+    * It is removed from the channel by another thread, because the future may be completed
+    * by the thread, that is just handing the packet to the listeners of the channel.
+    *
+    * @param timeout The timeout in milliseconds
+    *
+    * @return A future, that is completed with the download header
+    */
+   public CompletableFuture<DownloadHeaderPacket> requestAsync(long timeout) {
+      CompletableFuture<DownloadHeaderPacket> future = new CompletableFuture<>();
+      synchronized (this) {
+         if (header != null)
+            throw new IllegalStateException("The request has already been sent.");
+
+         this.header = future;
+      }
+      future.whenCompleteAsync((response, e) -> channel.removeListener(this), TIMER);
+
+      DownloadRequestPacket requestPacket;
+      if (offset > 0 || length != -1 || !codecs.isEmpty())
+         requestPacket = new DownloadRangeRequestPacket(url, offset, length, codecs);
+      else
+         requestPacket = new DownloadRequestPacket(url);
+
       LOGGER.debug("Sending " + requestPacket + " to the server");
       try {
          channel.send(requestPacket);
-         LOGGER.debug("Waiting for the download header from the server.");
-         wait(timeout);
-         if (header == null)
-            throw new TimeoutException("Server did not respond");
-
-         return header;
-      } finally {
-         channel.removeListener(this);
+      } catch (IOException e) {
+         future.completeExceptionally(e);
+         return future;
       }
+
+      ScheduledFuture<?> timer = TIMER.schedule(() -> future.completeExceptionally(new TimeoutException("Server did not respond")),
+                                                timeout,
+                                                TimeUnit.MILLISECONDS);
+      future.whenComplete((response, e) -> timer.cancel(false));
+      return future;
    }
 
    @Override
-   public synchronized void received(DownloadPacket packet) {
-      if (!(packet instanceof DownloadHeaderPacket)) {
+   public void received(DownloadPacket packet) {
+      CompletableFuture<DownloadHeaderPacket> future;
+      synchronized (this) {
+         future = header;
+      }
+      if (future == null) {
+         LOGGER.warn("DownloadRequest received a DownloadPacket before the request has been sent: " + packet);
+         return;
       }
+      if (future.isDone())
+         return;
 
-      try {
-         this.header = (DownloadHeaderPacket) packet;
-      } catch (ClassCastException e) {
+      if (packet instanceof DownloadHeaderPacket) {
+         LOGGER.debug("Received the download header: " + packet);
+         future.complete((DownloadHeaderPacket) packet);
+      } else if (packet instanceof DownloadCancelPacket) {
+         String msg = ((DownloadCancelPacket) packet).getMsg();
+         future.completeExceptionally(new DeclinedException(msg));
+      } else {
          String errorMsg = "DownloadRequest received a DownloadPacket, "
                            + "that was not the header: " + packet;
-         LOGGER.warn(errorMsg, e);
-         return;
+         LOGGER.warn(errorMsg);
       }
-
-      LOGGER.debug("Received the download header: " + header);
-      notify();
    }
 
    protected URL getUrl() {
       return url;
    }
 
+   protected long getOffset() {
+      return offset;
+   }
+
+   protected long getLength() {
+      return length;
+   }
+
+   protected Set<PayloadCodec> getCodecs() {
+      return codecs;
+   }
+
    @Override
    public int hashCode() {
       final int prime = 31;
       int result = 1;
       result = prime * result + ((this.channel == null) ? 0 : this.channel.hashCode());
       result = prime * result + ((this.url == null) ? 0 : this.url.hashCode());
+      result = prime * result + (int) (this.offset ^ (this.offset >>> 32));
+      result = prime * result + (int) (this.length ^ (this.length >>> 32));
+      result = prime * result + this.codecs.hashCode();
       return result;
    }
 
@@ -107,11 +237,33 @@ public class DownloadRequest implements ChannelListener<DownloadPacket> {
             return false;
       } else if (!this.url.equals(other.url))
          return false;
+      if (this.offset != other.offset)
+         return false;
+      if (this.length != other.length)
+         return false;
+      if (!this.codecs.equals(other.codecs))
+         return false;
       return true;
    }
 
    @Override
    public String toString() {
-      return "DownloadRequest { url=" + url + ", channel=" + channel + " }";
+      return "DownloadRequest { url=" + url
+             + ", offset=" + offset
+             + ", length=" + length
+             + ", codecs=" + codecs
+             + ", channel=" + channel
+             + " }";
+   }
+
+   /**
+    * Thrown, if the server has answered the request by cancelling the download.
+    */
+   public static class DeclinedException extends IOException {
+      private static final long serialVersionUID = -2270187419863101520L;
+
+      private DeclinedException(String msg) {
+         super("The server declined the download request: " + msg);
+      }
    }
 }
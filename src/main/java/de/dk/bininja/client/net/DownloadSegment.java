@@ -0,0 +1,153 @@
+package de.dk.bininja.client.net;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.net.Download;
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.ch.Channel;
+
+/**
+ * A byte range of a {@link ClientDownload}, that is loaded over its own channel.
+ * The segment is only a listener of its channel and is never started as a thread.
+ * It forwards everything it receives to the download, that it belongs to.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+class DownloadSegment extends Download {
+   private static final Logger LOGGER = LoggerFactory.getLogger(DownloadSegment.class);
+
+   private final ClientDownload download;
+   private volatile Channel<DownloadPacket> channel;
+   /** Lets the packets of the channel through to this segment. Guarded by the fill lock of the download. */
+   private ChannelGate gate;
+   private final long start;
+   private final long end;
+
+   /** The position in the file of the next received byte. Guarded by the fill lock of the download. */
+   long position;
+   /** The buffer, that is currently filled with the data of this segment. Guarded by the fill lock of the download. */
+   ByteBuffer filling;
+   /** The position in the file of the first byte in the filling buffer. */
+   long fillingPosition;
+
+   /**
+    * @param download The download, that this segment belongs to
+    * @param channel The channel, that the data of this segment is received on
+    * @param start The position in the file, where this segment starts
+    * @param end The position in the file, where this segment ends (exclusive)
+    */
+   DownloadSegment(ClientDownload download, Channel<DownloadPacket> channel, long start, long end) {
+      if (start < 0 || end < start)
+         throw new IllegalArgumentException("Invalid segment range [" + start + ", " + end + ")");
+
+      this.download = Objects.requireNonNull(download);
+      this.channel = Objects.requireNonNull(channel);
+      this.start = start;
+      this.end = end;
+      this.position = start;
+      this.length = end - start;
+   }
+
+   void listen() {
+      this.gate = new ChannelGate(this);
+      channel.addListener(gate);
+   }
+
+   /**
+    * Stops receiving the packets of the channel.
+    */
+   void ignore() {
+      gate.close();
+   }
+
+   boolean isListening() {
+      return gate != null && gate.isOpen();
+   }
+
+   ChannelGate getGate() {
+      return gate;
+   }
+
+   /**
+    * Replaces the channel of this segment, that is not used anymore, by the new <code>channel</code>.
+    *
+    * @return The gate, that is to be added to the new channel, to let its packets through to this segment
+    */
+   ChannelGate rebind(Channel<DownloadPacket> channel) {
+      setChannel(channel);
+      this.gate = new ChannelGate(this);
+      return gate;
+   }
+
+   void setChannel(Channel<DownloadPacket> channel) {
+      this.channel = Objects.requireNonNull(channel);
+   }
+
+   @Override
+   protected void request(DownloadRequestPacket packet) {
+      LOGGER.warn("Download segment received DownloadRequestPacket.");
+   }
+
+   @Override
+   protected void header(DownloadHeaderPacket packet) {
+      LOGGER.warn("Download segment received DownloadHeaderPacket.");
+   }
+
+   @Override
+   protected void ready(DownloadReadyPacket packet) {
+      LOGGER.warn("Download segment received DownloadReadyPacket.");
+   }
+
+   @Override
+   protected void data(DownloadDataPacket packet) {
+      download.segmentData(this, packet.getPayload());
+   }
+
+   @Override
+   protected void finish() {
+      download.segmentFinished(this);
+   }
+
+   @Override
+   protected void cancel(DownloadCancelPacket packet) {
+      download.segmentCancelled(this, packet);
+   }
+
+   /**
+    * @return The number of bytes of the payload, that belong into this segment
+    */
+   int accept(int payloadLength) {
+      return (int) Math.min(payloadLength, end - position);
+   }
+
+   boolean isComplete() {
+      return position >= end;
+   }
+
+   Channel<DownloadPacket> getChannel() {
+      return channel;
+   }
+
+   long getStart() {
+      return start;
+   }
+
+   long getEnd() {
+      return end;
+   }
+
+   @Override
+   public String toString() {
+      return "DownloadSegment { range=[" + start + ", " + end + "), position=" + position + ", channel=" + channel + " }";
+   }
+}
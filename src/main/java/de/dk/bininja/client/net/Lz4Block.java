@@ -0,0 +1,181 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressor and decompressor for the LZ4 block format.
+ * It trades compression ratio for speed, which suits payloads, that are compressed on the fly.
+ * The compressor uses a single hash table of 4 byte sequences and greedy matching.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+final class Lz4Block {
+   private static final int MIN_MATCH = 4;
+   private static final int LAST_LITERALS = 5;
+   private static final int MF_LIMIT = 12;
+   private static final int MAX_OFFSET = 0xFFFF;
+   private static final int HASH_LOG = 12;
+
+   private static final ThreadLocal<int[]> HASH_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+   private Lz4Block() {}
+
+   /**
+    * @return The maximum length of the compressed form of <code>length</code> bytes
+    */
+   static int maxCompressedLength(int length) {
+      return length + length / 255 + 16;
+   }
+
+   /**
+    * Compresses <code>src[0, srcLength)</code> into <code>dst</code>.
+    *
+    * @return The length of the compressed data or -1 if it would not fit into <code>dst</code>
+    */
+   static int compress(byte[] src, int srcLength, byte[] dst) {
+      int[] table = HASH_TABLE.get();
+      Arrays.fill(table, -1);
+
+      int anchor = 0;
+      int ip = 0;
+      int op = 0;
+      int matchLimit = srcLength - MF_LIMIT;
+      while (ip < matchLimit) {
+         int sequence = readInt(src, ip);
+         int hash = hash(sequence);
+         int ref = table[hash];
+         table[hash] = ip;
+         if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+            ip++;
+            continue;
+         }
+
+         int matchLength = MIN_MATCH;
+         int maxMatch = srcLength - LAST_LITERALS - ip;
+         while (matchLength < maxMatch && src[ref + matchLength] == src[ip + matchLength])
+            matchLength++;
+
+         op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+         if (op < 0)
+            return -1;
+
+         ip += matchLength;
+         anchor = ip;
+      }
+      return writeLastLiterals(src, anchor, srcLength - anchor, dst, op);
+   }
+
+   /**
+    * Decompresses <code>src[srcOffset, srcOffset + srcLength)</code> into <code>dst[0, dstLength)</code>.
+    *
+    * @throws IOException If the data is malformed or does not decompress to exactly <code>dstLength</code> bytes
+    */
+   static void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+      int ip = srcOffset;
+      int end = srcOffset + srcLength;
+      int op = 0;
+      try {
+         while (ip < end) {
+            int token = src[ip++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+               int b;
+               do {
+                  b = src[ip++] & 0xFF;
+                  literals += b;
+               } while (b == 255);
+            }
+            if (op + literals > dstLength || ip + literals > end)
+               throw new IOException("Malformed LZ4 block: literals exceed the block");
+
+            System.arraycopy(src, ip, dst, op, literals);
+            ip += literals;
+            op += literals;
+            if (ip == end)
+               break;
+
+            int offset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            if (offset == 0 || offset > op)
+               throw new IOException("Malformed LZ4 block: invalid match offset " + offset);
+
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+               int b;
+               do {
+                  b = src[ip++] & 0xFF;
+                  matchLength += b;
+               } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (op + matchLength > dstLength)
+               throw new IOException("Malformed LZ4 block: match exceeds the block");
+
+            int ref = op - offset;
+            for (int i = 0; i < matchLength; i++)
+               dst[op++] = dst[ref++];
+         }
+      } catch (ArrayIndexOutOfBoundsException e) {
+         throw new IOException("Malformed LZ4 block: unexpected end of data", e);
+      }
+      if (op != dstLength)
+         throw new IOException("Malformed LZ4 block: decompressed to " + op + " bytes instead of " + dstLength);
+   }
+
+   private static int writeSequence(byte[] src,
+                                    int literalStart,
+                                    int literals,
+                                    int offset,
+                                    int matchLength,
+                                    byte[] dst,
+                                    int op) {
+      int extra = matchLength - MIN_MATCH;
+      if (op + 1 + literals / 255 + 1 + literals + 2 + extra / 255 + 1 > dst.length)
+         return -1;
+
+      int token = op++;
+      dst[token] = (byte) ((Math.min(literals, 15) << 4) | Math.min(extra, 15));
+      op = writeLength(literals, dst, op);
+      System.arraycopy(src, literalStart, dst, op, literals);
+      op += literals;
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      return writeLength(extra, dst, op);
+   }
+
+   private static int writeLastLiterals(byte[] src, int literalStart, int literals, byte[] dst, int op) {
+      if (op + 1 + literals / 255 + 1 + literals > dst.length)
+         return -1;
+
+      dst[op++] = (byte) (Math.min(literals, 15) << 4);
+      op = writeLength(literals, dst, op);
+      System.arraycopy(src, literalStart, dst, op, literals);
+      return op + literals;
+   }
+
+   private static int writeLength(int length, byte[] dst, int op) {
+      if (length < 15)
+         return op;
+
+      length -= 15;
+      while (length >= 255) {
+         dst[op++] = (byte) 255;
+         length -= 255;
+      }
+      dst[op++] = (byte) length;
+      return op;
+   }
+
+   private static int readInt(byte[] src, int i) {
+      return (src[i] & 0xFF)
+             | (src[i + 1] & 0xFF) << 8
+             | (src[i + 2] & 0xFF) << 16
+             | (src[i + 3] & 0xFF) << 24;
+   }
+
+   private static int hash(int sequence) {
+      return (sequence * -1640531535) >>> (32 - HASH_LOG);
+   }
+}
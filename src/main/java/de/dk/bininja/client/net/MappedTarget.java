@@ -0,0 +1,141 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a download into memory-mapped windows of its target.
+ * The target is divided into windows of the window size, that are mapped, as soon as they are written first.
+ * A window is held, until all of its bytes have been written. Then it is forced to the disk and dropped.
+ * So every segment of a segmented download writes into a window of its own without remapping,
+ * while at most one window per segment is held.
+ * Java can not unmap a buffer explicitly though. A dropped window stays mapped,
+ * until its buffer is garbage collected, so the address space in use is not strictly bounded.
+ * The windows, that are still held, are forced to the disk by {@link #force()}.
+ * The target has to be opened for reading and writing and has to have the final length of the download.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+final class MappedTarget {
+   static final long DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+   private final FileChannel channel;
+   private final long end;
+   private final long windowSize;
+
+   /** The held windows by their index in the target. */
+   private final Map<Long, Window> windows = new HashMap<>();
+   /** The position behind the data, that has been written last. */
+   private long next;
+
+   /**
+    * @param channel The channel to the target
+    * @param start The position, where the data without an explicit position starts
+    * @param end The end of the data in the target (exclusive)
+    * @param windowSize The size of a mapped window
+    */
+   MappedTarget(FileChannel channel, long start, long end, long windowSize) {
+      if (windowSize <= 0 || windowSize > Integer.MAX_VALUE)
+         throw new IllegalArgumentException("The window size must be positive and fit into a buffer: " + windowSize);
+
+      this.channel = channel;
+      this.next = start;
+      this.end = end;
+      this.windowSize = windowSize;
+   }
+
+   /**
+    * Copies the remaining bytes of <code>data</code> into the target and consumes them.
+    *
+    * @param data The data to write
+    * @param position The position in the target or -1 to write behind the data, that has been written last
+    *
+    * @return The number of bytes written
+    *
+    * @throws IOException If the data exceeds the end or a window could not be mapped
+    */
+   int write(ByteBuffer data, long position) throws IOException {
+      if (position < 0)
+         position = next;
+
+      int count = data.remaining();
+      if (position + count > end)
+         throw new IOException("Received more data than announced. " + (position + count) + " > " + end);
+
+      while (data.hasRemaining()) {
+         long index = position / windowSize;
+         Window window = windowAt(index);
+         ByteBuffer target = window.buffer.duplicate();
+         target.position((int) (position - window.start));
+         int n = Math.min(data.remaining(), target.remaining());
+         ByteBuffer part = data.duplicate();
+         part.limit(part.position() + n);
+         target.put(part);
+         data.position(data.position() + n);
+         position += n;
+
+         window.written += n;
+         if (window.written >= window.buffer.capacity()) {
+            window.buffer.force();
+            windows.remove(index);
+         }
+      }
+      this.next = position;
+      return count;
+   }
+
+   private Window windowAt(long index) throws IOException {
+      Window window = windows.get(index);
+      if (window == null) {
+         long start = index * windowSize;
+         long size = Math.min(windowSize, end - start);
+         window = new Window(start, channel.map(MapMode.READ_WRITE, start, size));
+         windows.put(index, window);
+      }
+      return window;
+   }
+
+   /**
+    * Forces the windows, that are still held, to the disk and drops them.
+    * They are unmapped, as soon as their buffers are garbage collected.
+    * Has to be called, when the download is complete.
+    *
+    * @throws IOException If the windows could not be written to the disk
+    */
+   void force() throws IOException {
+      try {
+         for (Window window : windows.values())
+            window.buffer.force();
+      } catch (UncheckedIOException e) {
+         throw e.getCause();
+      } finally {
+         windows.clear();
+      }
+   }
+
+   /**
+    * @return The number of windows, that are held at the moment
+    */
+   int getMappedWindowCount() {
+      return windows.size();
+   }
+
+   private static class Window {
+      private final long start;
+      private final MappedByteBuffer buffer;
+      /** The number of bytes, that have been written into this window. */
+      private long written;
+
+      private Window(long start, MappedByteBuffer buffer) {
+         this.start = start;
+         this.buffer = buffer;
+      }
+   }
+}
@@ -0,0 +1,139 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The codecs, that the payloads of a download can be compressed with.
+ * If the client advertises codecs in its download request, the server sends every payload as a frame:
+ * <br>The id of the codec (1 byte), followed by the length of the original payload (4 bytes, big endian)
+ * and the compressed payload.
+ * <br>A payload, that does not get smaller by compression, is sent as a {@link #STORED} frame,
+ * which only consists of the id byte and the original payload.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public enum PayloadCodec {
+   STORED((byte) 0) {
+      @Override
+      protected int compress(byte[] src, int srcLength, byte[] dst) {
+         return -1;
+      }
+
+      @Override
+      protected void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) {
+         System.arraycopy(src, srcOffset, dst, 0, dstLength);
+      }
+   },
+   DEFLATE((byte) 1) {
+      @Override
+      protected int compress(byte[] src, int srcLength, byte[] dst) {
+         Deflater deflater = DEFLATERS.get();
+         deflater.reset();
+         deflater.setInput(src, 0, srcLength);
+         deflater.finish();
+         int length = deflater.deflate(dst, 0, dst.length);
+         return deflater.finished() ? length : -1;
+      }
+
+      @Override
+      protected void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+         Inflater inflater = INFLATERS.get();
+         inflater.reset();
+         inflater.setInput(src, srcOffset, srcLength);
+         try {
+            int length = inflater.inflate(dst, 0, dstLength);
+            if (length != dstLength || !inflater.finished())
+               throw new IOException("Deflated payload did not inflate to " + dstLength + " bytes");
+         } catch (DataFormatException e) {
+            throw new IOException("Malformed deflated payload", e);
+         }
+      }
+   },
+   LZ4((byte) 2) {
+      @Override
+      protected int compress(byte[] src, int srcLength, byte[] dst) {
+         return Lz4Block.compress(src, srcLength, dst);
+      }
+
+      @Override
+      protected void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+         Lz4Block.decompress(src, srcOffset, srcLength, dst, dstLength);
+      }
+   };
+
+   /** The length of the header of a compressed frame. */
+   public static final int HEADER_LENGTH = 5;
+
+   private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+   private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+   private final byte id;
+
+   private PayloadCodec(byte id) {
+      this.id = id;
+   }
+
+   public static PayloadCodec byId(byte id) throws IOException {
+      for (PayloadCodec codec : values()) {
+         if (codec.id == id)
+            return codec;
+      }
+      throw new IOException("Unknown payload codec: " + id);
+   }
+
+   /**
+    * Compresses <code>src[0, srcLength)</code> into <code>dst</code>.
+    *
+    * @return The length of the compressed data or -1 if it does not fit into <code>dst</code>
+    */
+   protected abstract int compress(byte[] src, int srcLength, byte[] dst);
+
+   /**
+    * Decompresses <code>src[srcOffset, srcOffset + srcLength)</code> into <code>dst[0, dstLength)</code>.
+    *
+    * @throws IOException If the data is malformed
+    */
+   protected abstract void decompress(byte[] src,
+                                      int srcOffset,
+                                      int srcLength,
+                                      byte[] dst,
+                                      int dstLength) throws IOException;
+
+   /**
+    * Builds the frame of the payload compressed with this codec.
+    * Falls back to a {@link #STORED} frame if the payload is incompressible.
+    *
+    * @param payload The original payload
+    *
+    * @return The frame to be sent as payload of a <code>DownloadDataPacket</code>
+    */
+   public byte[] frame(byte[] payload) {
+      if (this != STORED && payload.length > HEADER_LENGTH + 1) {
+         byte[] compressed = new byte[payload.length - HEADER_LENGTH - 1];
+         int length = compress(payload, payload.length, compressed);
+         if (length >= 0) {
+            byte[] frame = new byte[HEADER_LENGTH + length];
+            frame[0] = id;
+            frame[1] = (byte) (payload.length >>> 24);
+            frame[2] = (byte) (payload.length >>> 16);
+            frame[3] = (byte) (payload.length >>> 8);
+            frame[4] = (byte) payload.length;
+            System.arraycopy(compressed, 0, frame, HEADER_LENGTH, length);
+            return frame;
+         }
+      }
+
+      byte[] frame = new byte[payload.length + 1];
+      frame[0] = STORED.id;
+      System.arraycopy(payload, 0, frame, 1, payload.length);
+      return frame;
+   }
+
+   public byte getId() {
+      return id;
+   }
+}
@@ -0,0 +1,70 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+
+/**
+ * Decodes the payload frames of a download, whose payloads are compressed by a {@link PayloadCodec}.
+ * The decoded data is written into a buffer, that is reused for every frame.
+ * A decoder is not thread safe.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class PayloadDecoder {
+   private static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+   private byte[] buffer = new byte[BufferPool.DEFAULT_BUFFER_SIZE];
+
+   public PayloadDecoder() {
+
+   }
+
+   /**
+    * Decodes the frame into the buffer of this decoder.
+    *
+    * @param frame The payload frame, as it has been received
+    *
+    * @return The number of decoded bytes, that are in {@link #getBuffer()} now
+    *
+    * @throws IOException If the frame is malformed
+    */
+   public int decode(byte[] frame) throws IOException {
+      if (frame.length == 0)
+         throw new IOException("Empty payload frame");
+
+      PayloadCodec codec = PayloadCodec.byId(frame[0]);
+      if (codec == PayloadCodec.STORED) {
+         int length = frame.length - 1;
+         ensureCapacity(length);
+         codec.decompress(frame, 1, length, buffer, length);
+         return length;
+      }
+
+      if (frame.length < PayloadCodec.HEADER_LENGTH)
+         throw new IOException("Truncated payload frame");
+
+      int length = (frame[1] & 0xFF) << 24
+                   | (frame[2] & 0xFF) << 16
+                   | (frame[3] & 0xFF) << 8
+                   | (frame[4] & 0xFF);
+      if (length < 0 || length > MAX_PAYLOAD_LENGTH)
+         throw new IOException("Invalid length of payload frame: " + length);
+
+      ensureCapacity(length);
+      int offset = PayloadCodec.HEADER_LENGTH;
+      codec.decompress(frame, offset, frame.length - offset, buffer, length);
+      return length;
+   }
+
+   private void ensureCapacity(int length) {
+      if (buffer.length < length)
+         buffer = new byte[Math.max(length, buffer.length * 2)];
+   }
+
+   /**
+    * @return The buffer, that contains the data of the last decoded frame
+    */
+   public byte[] getBuffer() {
+      return buffer;
+   }
+}
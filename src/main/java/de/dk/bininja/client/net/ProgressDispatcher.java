@@ -0,0 +1,104 @@
+package de.dk.bininja.client.net;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the progress of downloads to their listeners in intervals instead of once per packet.
+ * The bytes received and written by a download are summed up and handed to its listeners
+ * as a single event per interval by the one thread of this dispatcher.
+ * So a listener, e.g. a user interface, is notified at most once per interval and download,
+ * no matter how many packets the download receives.
+ * The progress of a download, that is about to terminate, is delivered immediately before its final state.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ProgressDispatcher {
+   private static final Logger LOGGER = LoggerFactory.getLogger(ProgressDispatcher.class);
+
+   public static final long DEFAULT_INTERVAL = 100;
+
+   private final Set<ClientDownload> downloads = ConcurrentHashMap.newKeySet();
+   private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "download-progress");
+      thread.setDaemon(true);
+      return thread;
+   });
+   private long interval;
+   private ScheduledFuture<?> task;
+
+   /**
+    * @param interval The interval in milliseconds, in which the progress is delivered
+    */
+   public ProgressDispatcher(long interval) {
+      setInterval(interval);
+   }
+
+   public ProgressDispatcher() {
+      this(DEFAULT_INTERVAL);
+   }
+
+   /**
+    * Delivers the progress of the <code>download</code> until it has terminated.
+    */
+   void register(ClientDownload download) {
+      downloads.add(Objects.requireNonNull(download));
+      download.whenTerminated(downloads::remove);
+   }
+
+   private void dispatch() {
+      for (ClientDownload download : downloads) {
+         try {
+            download.flushProgress();
+         } catch (RuntimeException e) {
+            LOGGER.warn("Error delivering the progress of a download", e);
+         }
+      }
+   }
+
+   /**
+    * @return The number of downloads, whose progress is delivered by this dispatcher
+    */
+   public int getDownloadCount() {
+      return downloads.size();
+   }
+
+   public synchronized long getInterval() {
+      return interval;
+   }
+
+   /**
+    * Sets the interval in milliseconds, in which the progress is delivered. Takes effect immediately.
+    */
+   public synchronized void setInterval(long interval) {
+      if (interval <= 0)
+         throw new IllegalArgumentException("The interval must be positive: " + interval);
+      if (executor.isShutdown())
+         throw new IllegalStateException("The dispatcher has been closed.");
+
+      if (task != null)
+         task.cancel(false);
+
+      this.interval = interval;
+      this.task = executor.scheduleWithFixedDelay(this::dispatch, interval, interval, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Stops the dispatcher thread. The progress, that has not been delivered yet, is delivered first.
+    */
+   public void close() {
+      synchronized (this) {
+         executor.shutdown();
+      }
+      dispatch();
+   }
+}
@@ -0,0 +1,148 @@
+package de.dk.bininja.client.net;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A token bucket, that limits the rate of downloaded bytes.
+ * The bucket is refilled at the rate and holds at most the bytes of {@link #BURST_MILLIS} milliseconds.
+ * A receiver may take more bytes than the bucket holds and pays the debt by the waiting time of the next receiver.
+ * The receivers are served in the order of their arrival, so a limiter, that is shared by several downloads,
+ * serves them in turns and divides the rate evenly among downloads, that take chunks of the same size.
+ * <p>
+ * The limiter is acquired by the writer of a download, never by the thread, that reads the connection.
+ * While the writer waits, the received data piles up in the {@link ReceiveWindow} of the download.
+ * The rate can be changed at any time. Waiting receivers adopt the new rate immediately.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class RateLimiter {
+   public static final long UNLIMITED = 0;
+
+   /** The time span, whose bytes the bucket can hold at most. */
+   public static final long BURST_MILLIS = 100;
+   private static final long MIN_BURST = 16 * 1024;
+   /** The longest time, that a waiting receiver sleeps before it checks whether it has to abort. */
+   private static final long MAX_WAIT_MILLIS = 100;
+
+   private long rate;
+   private double tokens;
+   private long lastRefill = System.nanoTime();
+
+   private long nextTicket;
+   private long servedTicket;
+   private final Set<Long> left = new HashSet<>();
+
+   /**
+    * @param rate The maximum number of bytes per second or {@link #UNLIMITED}
+    */
+   public RateLimiter(long rate) {
+      setRate(rate);
+      this.tokens = burst();
+   }
+
+   public RateLimiter() {
+      this(UNLIMITED);
+   }
+
+   /**
+    * Takes <code>bytes</code> out of the bucket. Blocks until all the receivers,
+    * that have arrived before, have been served and the bucket is not empty.
+    *
+    * @param bytes The number of bytes, that have been received
+    * @param abort Tells whether to stop waiting, e.g. because the download has been cancelled
+    *
+    * @return <code>true</code> if the bytes have been taken, <code>false</code> if the waiting has been aborted
+    *
+    * @throws InterruptedException If the thread is interrupted while waiting
+    */
+   public synchronized boolean acquire(int bytes, BooleanSupplier abort) throws InterruptedException {
+      if (rate == UNLIMITED)
+         return true;
+
+      long ticket = nextTicket++;
+      try {
+         while (true) {
+            if (rate == UNLIMITED)
+               return true;
+            if (abort.getAsBoolean())
+               return false;
+
+            refill();
+            long waitNanos;
+            if (ticket != servedTicket) {
+               waitNanos = TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS);
+            } else if (tokens > 0) {
+               tokens -= bytes;
+               return true;
+            } else {
+               waitNanos = (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / rate);
+            }
+            waitNanos = Math.min(waitNanos, TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MILLIS));
+            TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, 1));
+         }
+      } finally {
+         leave(ticket);
+      }
+   }
+
+   /**
+    * Passes the turn on to the next receiver, that is still waiting.
+    * A receiver, that leaves before its turn, is skipped when its turn comes.
+    */
+   private void leave(long ticket) {
+      if (ticket != servedTicket) {
+         left.add(ticket);
+         return;
+      }
+
+      servedTicket++;
+      while (left.remove(servedTicket))
+         servedTicket++;
+
+      notifyAll();
+   }
+
+   private void refill() {
+      long now = System.nanoTime();
+      if (rate != UNLIMITED)
+         tokens = Math.min(burst(), tokens + (now - lastRefill) * (double) rate / TimeUnit.SECONDS.toNanos(1));
+
+      lastRefill = now;
+   }
+
+   private double burst() {
+      return Math.max(MIN_BURST, rate * BURST_MILLIS / 1000);
+   }
+
+   public synchronized long getRate() {
+      return rate;
+   }
+
+   /**
+    * Sets the maximum number of bytes per second. Takes effect for waiting receivers immediately.
+    *
+    * @param rate The maximum number of bytes per second or {@link #UNLIMITED}
+    */
+   public synchronized void setRate(long rate) {
+      if (rate < 0)
+         throw new IllegalArgumentException("The rate must not be negative: " + rate);
+
+      refill();
+      this.rate = rate;
+      this.tokens = Math.min(tokens, burst());
+      notifyAll();
+   }
+
+   public synchronized boolean isLimited() {
+      return rate != UNLIMITED;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "RateLimiter { rate=" + (rate == UNLIMITED ? "unlimited" : rate + " bytes/s") + " }";
+   }
+}
@@ -0,0 +1,91 @@
+package de.dk.bininja.client.net;
+
+/**
+ * The bounded amount of bytes, that may be received but not yet written for a download.
+ * <p>
+ * The receiver is the thread, that reads the connection shared by all the channels of the client.
+ * If it waited for the writer, no channel of the connection would receive anything,
+ * so a slow writer of one download would stall every other download over the same connection.
+ * That is why the receiver never waits for the window: {@link #tryAcquire(int)} either occupies the bytes
+ * or fails right away. A download, whose window is full, pauses its channels,
+ * if the server can resume them (see {@link ClientDownload#enablePausing(ClientDownload.RangeRequester)}),
+ * or is cancelled otherwise. The window is never exceeded,
+ * except by a single payload, that is bigger than the whole window.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ReceiveWindow {
+   public static final long DEFAULT_SIZE = 16 * 1024 * 1024;
+
+   private long size;
+   private long used;
+   private boolean closed;
+
+   public ReceiveWindow(long size) {
+      setSize(size);
+   }
+
+   public ReceiveWindow() {
+      this(DEFAULT_SIZE);
+   }
+
+   /**
+    * Occupies <code>bytes</code> of the window, if there is enough space left. Never waits.
+    * A payload that is bigger than the whole window is let through, if nothing else is pending.
+    *
+    * @param bytes The number of bytes to occupy
+    *
+    * @return <code>true</code> if the bytes have been occupied,
+    * <code>false</code> if the window is full or has been closed
+    */
+   public synchronized boolean tryAcquire(int bytes) {
+      if (closed || !hasRoomFor(bytes))
+         return false;
+
+      used += bytes;
+      return true;
+   }
+
+   public synchronized void release(int bytes) {
+      used = Math.max(0, used - bytes);
+   }
+
+   /**
+    * Closes the window. No bytes can be occupied afterwards.
+    */
+   public synchronized void close() {
+      this.closed = true;
+   }
+
+   public synchronized boolean isClosed() {
+      return closed;
+   }
+
+   public synchronized long getUsed() {
+      return used;
+   }
+
+   /**
+    * @return <code>true</code> if <code>bytes</code> can be occupied right now
+    */
+   public synchronized boolean hasRoomFor(long bytes) {
+      return used == 0 || used + bytes <= size;
+   }
+
+   public synchronized long getSize() {
+      return size;
+   }
+
+   public synchronized void setSize(long size) {
+      if (size <= 0)
+         throw new IllegalArgumentException("The size of the receive window must be positive: " + size);
+
+      this.size = size;
+   }
+
+   @Override
+   public synchronized String toString() {
+      return "ReceiveWindow { used=" + used + ", size=" + size + " }";
+   }
+}
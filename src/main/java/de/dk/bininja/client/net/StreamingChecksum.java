@@ -0,0 +1,195 @@
+package de.dk.bininja.client.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the checksum of a download from the buffers, that have been written,
+ * on an executor instead of the writer of the download.
+ * The buffers are handed over in the order, that they have been written in,
+ * and are given back by a callback, as soon as they have been processed.
+ * The tasks of one checksum never run concurrently, so the executor may be shared by any number of downloads.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class StreamingChecksum {
+   private static final Logger LOGGER = LoggerFactory.getLogger(StreamingChecksum.class);
+
+   private static final int PREFIX_BUFFER_SIZE = 64 * 1024;
+
+   private final ChecksumAlgorithm algorithm;
+   private final ChecksumAlgorithm.Hasher hasher;
+   private final Executor executor;
+   private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+   private final AtomicBoolean scheduled = new AtomicBoolean();
+
+   private int pending;
+   private volatile boolean discarded;
+   private IOException exception;
+   private String checksum;
+
+   public StreamingChecksum(ChecksumAlgorithm algorithm, Executor executor) {
+      this.algorithm = Objects.requireNonNull(algorithm);
+      this.hasher = algorithm.newHasher();
+      this.executor = Objects.requireNonNull(executor);
+   }
+
+   /**
+    * Reads the first <code>length</code> bytes of the <code>file</code> into the checksum.
+    * Used for a download, that is resumed, and has to be called before any data is written.
+    */
+   public void prefix(File file, long length) {
+      submit(() -> {
+         if (discarded)
+            return;
+
+         byte[] buffer = new byte[PREFIX_BUFFER_SIZE];
+         try (InputStream in = new FileInputStream(file)) {
+            long remaining = length;
+            while (remaining > 0) {
+               int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+               if (count < 0)
+                  throw new IOException("The file " + file.getAbsolutePath() + " is shorter than " + length + " bytes");
+
+               hasher.update(ByteBuffer.wrap(buffer, 0, count));
+               remaining -= count;
+            }
+         } catch (IOException e) {
+            synchronized (this) {
+               this.exception = e;
+            }
+         }
+      });
+   }
+
+   /**
+    * Hands the written <code>data</code> over to the checksum.
+    * The buffers must not be modified until <code>done</code> has been called.
+    *
+    * @param data The buffers in the order they have been written in, positioned at the written bytes
+    * @param done Called as soon as the buffers have been processed
+    */
+   void update(ByteBuffer[] data, Runnable done) {
+      submit(() -> {
+         try {
+            if (!discarded) {
+               for (ByteBuffer buffer : data)
+                  hasher.update(buffer);
+            }
+         } finally {
+            done.run();
+         }
+      });
+   }
+
+   private void submit(Runnable task) {
+      synchronized (this) {
+         pending++;
+      }
+      tasks.add(task);
+      schedule();
+   }
+
+   private void schedule() {
+      if (!scheduled.compareAndSet(false, true))
+         return;
+
+      try {
+         executor.execute(this::drain);
+      } catch (RejectedExecutionException e) {
+         LOGGER.warn("The executor rejected to compute the checksum. Computing it on the calling thread", e);
+         drain();
+      }
+   }
+
+   private void drain() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+         try {
+            task.run();
+         } catch (RuntimeException e) {
+            LOGGER.error("Error computing the checksum", e);
+         } finally {
+            synchronized (this) {
+               if (--pending == 0)
+                  notifyAll();
+            }
+         }
+      }
+      scheduled.set(false);
+      if (!tasks.isEmpty())
+         schedule();
+   }
+
+   /**
+    * Waits until all the data, that has been handed over, is processed and completes the checksum.
+    *
+    * @return The checksum as lower case hexadecimal string
+    *
+    * @throws IOException If the prefix of a resumed download could not be read
+    * @throws InterruptedException If the calling thread is interrupted while waiting
+    */
+   public synchronized String await() throws IOException, InterruptedException {
+      while (pending > 0)
+         wait();
+
+      if (exception != null)
+         throw exception;
+
+      if (checksum == null)
+         checksum = toHex(hasher.digest());
+
+      return checksum;
+   }
+
+   /**
+    * Stops computing the checksum. The data, that is handed over, is only given back.
+    */
+   public void discard() {
+      this.discarded = true;
+   }
+
+   /**
+    * @return <code>true</code> if the <code>expected</code> checksum equals the computed one, ignoring the case
+    */
+   public synchronized boolean matches(String expected) {
+      return checksum != null && checksum.equalsIgnoreCase(expected.trim());
+   }
+
+   private static String toHex(byte[] bytes) {
+      StringBuilder hex = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes)
+         hex.append(Character.forDigit((b >>> 4) & 0xF, 16))
+            .append(Character.forDigit(b & 0xF, 16));
+
+      return hex.toString();
+   }
+
+   public ChecksumAlgorithm getAlgorithm() {
+      return algorithm;
+   }
+
+   /**
+    * @return The completed checksum or <code>null</code> if it has not been completed yet
+    */
+   public synchronized String getChecksum() {
+      return checksum;
+   }
+
+   @Override
+   public String toString() {
+      return algorithm + " " + (checksum == null ? "pending" : checksum);
+   }
+}
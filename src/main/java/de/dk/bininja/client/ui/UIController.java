@@ -1,5 +1,8 @@
 package de.dk.bininja.client.ui;
 
+import java.util.Collection;
+
+import de.dk.bininja.client.core.DownloadBatch;
 import de.dk.bininja.client.model.DownloadMetadata;
 import de.dk.bininja.net.DownloadListener;
 import de.dk.bininja.ui.cli.CliController;
@@ -10,7 +13,15 @@ import de.dk.bininja.ui.cli.CliController;
  */
 public interface UIController extends CliController {
    public boolean requestDownloadFrom(DownloadMetadata metadata, DownloadListener listener);
+   public DownloadBatch requestDownloadsFrom(Collection<DownloadMetadata> metadata, DownloadListener listener);
    public int activeDownloadCount();
+   public int queuedDownloadCount();
+   public int runningDownloadCount();
+   public long finishedDownloadCount();
+   public long getRateLimit();
+   public void setRateLimit(long bytesPerSecond);
+   public int connectionCount();
+   public int activeChannelCount(int connection);
    public String getConnectionAsString();
    public void waitForDownloads() throws InterruptedException;
 }
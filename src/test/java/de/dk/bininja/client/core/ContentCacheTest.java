@@ -0,0 +1,110 @@
+package de.dk.bininja.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ContentCacheTest {
+   private static final byte[] DATA = "BiNinja".getBytes(StandardCharsets.US_ASCII);
+
+   @Test
+   public void servesAStoredFile() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      ContentCache cache = store(dir, false);
+      File target = new File(dir, "target");
+      assertTrue(cache.serve(url(), DATA.length, "v1", target));
+      assertEquals(DATA.length, target.length());
+      assertEquals(1, cache.getHits());
+   }
+
+   @Test
+   public void doesNotServeAnotherValidator() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      ContentCache cache = store(dir, false);
+      assertFalse(cache.serve(url(), DATA.length, "v2", new File(dir, "target")));
+      assertEquals(1, cache.getMisses());
+   }
+
+   @Test
+   public void removesACachedFileFailingTheVerification() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      ContentCache cache = store(dir, false);
+      File target = new File(dir, "target");
+      assertFalse(cache.serve(url(), DATA.length, "v1", target, cached -> false));
+      assertFalse(target.exists());
+      assertEquals(0, cache.getCount());
+      assertEquals(1, cache.getMisses());
+   }
+
+   @Test
+   public void removesACachedFileModifiedThroughAHardLink() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      ContentCache cache = store(dir, true);
+      File linked = new File(dir, "linked");
+      assertTrue(cache.serve(url(), DATA.length, "v1", linked));
+      Files.write(linked.toPath(), DATA, StandardOpenOption.APPEND);
+
+      assertFalse(cache.serve(url(), DATA.length, "v1", new File(dir, "target")));
+      assertEquals(0, cache.getCount());
+      assertEquals(0, cache.getSize());
+   }
+
+   @Test
+   public void removesAnExpiredFile() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      ContentCache cache = store(dir, false);
+      sleep(20);
+      cache.setMaxAge(10);
+      File target = new File(dir, "target");
+      assertFalse(cache.serve(url(), DATA.length, "v1", target));
+      assertFalse(target.exists());
+      assertEquals(0, cache.getCount());
+   }
+
+   @Test
+   public void keepsItsEntriesOverARestart() throws IOException {
+      File dir = Files.createTempDirectory("cache-test").toFile();
+      store(dir, false).close();
+      ContentCache reopened = new ContentCache(new File(dir, "cache"), 1024);
+      assertTrue(reopened.serve(url(), DATA.length, "v1", new File(dir, "target")));
+   }
+
+   private static ContentCache store(File dir, boolean hardLinks) throws IOException {
+      File file = new File(dir, "download");
+      Files.write(file.toPath(), DATA);
+      ContentCache cache = new ContentCache(new File(dir, "cache"), 1024);
+      cache.setHardLinks(hardLinks);
+      cache.store(url(), DATA.length, "v1", file);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (cache.getCount() == 0 && System.currentTimeMillis() < deadline)
+         sleep(10);
+
+      assertEquals(1, cache.getCount());
+      return cache;
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private static URL url() throws IOException {
+      return new URL("http://example.com/file");
+   }
+}
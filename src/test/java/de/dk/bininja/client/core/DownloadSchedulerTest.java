@@ -0,0 +1,78 @@
+package de.dk.bininja.client.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class DownloadSchedulerTest {
+   @Test
+   public void reservedSlotsCanNotBeTaken() throws InterruptedException {
+      DownloadScheduler scheduler = new DownloadScheduler(2);
+      assertEquals(2, scheduler.reserveSlots(5));
+      assertTrue(scheduler.submit(0, () -> null));
+      assertEquals(1, scheduler.getQueuedCount());
+      assertEquals(2, scheduler.getRunningCount());
+
+      scheduler.cancelReservation(2);
+      scheduler.awaitIdle();
+      assertEquals(0, scheduler.getQueuedCount());
+      assertEquals(1, scheduler.getFinishedCount());
+      scheduler.close();
+   }
+
+   @Test
+   public void reservesOnlyWhatIsRequested() throws InterruptedException {
+      DownloadScheduler scheduler = new DownloadScheduler(4);
+      assertEquals(1, scheduler.reserveSlots(1));
+      assertEquals(3, scheduler.reserveSlots(4));
+      assertEquals(4, scheduler.getRunningCount());
+      assertFalse(scheduler.startReserved(() -> null));
+      assertEquals(3, scheduler.getRunningCount());
+      scheduler.cancelReservation(3);
+      assertEquals(0, scheduler.getRunningCount());
+      scheduler.close();
+   }
+
+   @Test
+   public void admittedDownloadsAreStartedConcurrently() throws InterruptedException {
+      DownloadScheduler scheduler = new DownloadScheduler(2);
+      scheduler.reserveSlots(2);
+      CountDownLatch starting = new CountDownLatch(2);
+      CountDownLatch release = new CountDownLatch(1);
+      for (int i = 0; i < 2; i++) {
+         scheduler.submit(0, () -> {
+            starting.countDown();
+            await(release);
+            return null;
+         });
+      }
+      scheduler.cancelReservation(2);
+      assertTrue("The second start waited for the first one", starting.await(5, TimeUnit.SECONDS));
+      release.countDown();
+      scheduler.awaitIdle();
+      assertEquals(2, scheduler.getFinishedCount());
+      scheduler.close();
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void atLeastOneSlotIsReserved() throws InterruptedException {
+      new DownloadScheduler().reserveSlots(0);
+   }
+
+   private static void await(CountDownLatch latch) {
+      try {
+         latch.await();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
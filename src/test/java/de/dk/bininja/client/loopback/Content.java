@@ -0,0 +1,101 @@
+package de.dk.bininja.client.loopback;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+
+/**
+ * The content, that the {@link LoopbackServer} serves for the requested URLs.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+@FunctionalInterface
+public interface Content {
+   /**
+    * Opens the content of the <code>url</code>.
+    *
+    * @throws IOException If there is no content for the <code>url</code>
+    */
+   public Source open(URL url) throws IOException;
+
+   /**
+    * Creates synthetic content of <code>length</code> bytes for every URL.
+    * The byte at a position depends only on the position and the URL,
+    * so a loaded file can be verified without keeping the content.
+    */
+   public static Content synthetic(long length) {
+      return url -> new Source() {
+         private final int seed = url.toString().hashCode();
+
+         @Override
+         public long getLength() {
+            return length;
+         }
+
+         @Override
+         public void read(long position, byte[] buffer, int count) {
+            for (int i = 0; i < count; i++)
+               buffer[i] = syntheticByte(seed, position + i);
+         }
+      };
+   }
+
+   /**
+    * @return The byte at <code>position</code> of the synthetic content of the <code>url</code>
+    */
+   public static byte syntheticByte(URL url, long position) {
+      return syntheticByte(url.toString().hashCode(), position);
+   }
+
+   static byte syntheticByte(int seed, long position) {
+      long x = position * 0x9E3779B97F4A7C15L + seed;
+      return (byte) (x ^ (x >>> 29));
+   }
+
+   /**
+    * Serves the files of the <code>directory</code>. The name of the file is the last segment of the path of the URL.
+    */
+   public static Content files(File directory) {
+      return url -> {
+         String path = url.getPath();
+         RandomAccessFile file = new RandomAccessFile(new File(directory, path.substring(path.lastIndexOf('/') + 1)), "r");
+         return new Source() {
+            @Override
+            public long getLength() throws IOException {
+               return file.length();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int length) throws IOException {
+               file.seek(position);
+               file.readFully(buffer, 0, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+               file.close();
+            }
+         };
+      };
+   }
+
+   /**
+    * The opened content of a URL.
+    */
+   public static interface Source extends Closeable {
+      public long getLength() throws IOException;
+
+      /**
+       * Reads <code>length</code> bytes starting at <code>position</code> into the <code>buffer</code>.
+       */
+      public void read(long position, byte[] buffer, int length) throws IOException;
+
+      @Override
+      public default void close() throws IOException {
+
+      }
+   }
+}
@@ -0,0 +1,132 @@
+package de.dk.bininja.client.loopback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dk.bininja.client.core.DownloadBatch;
+import de.dk.bininja.client.core.DownloadBatch.ItemState;
+import de.dk.bininja.client.core.Logic;
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.ClientDownload;
+import de.dk.bininja.net.DownloadState;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.ch.Channel;
+
+/**
+ * Loads downloads end to end through the {@link Logic} from a {@link LoopbackServer}
+ * and verifies the loaded files.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class LoopbackDownloadTest {
+   private static final long LENGTH = 256 * 1024;
+   private static final long TIMEOUT = 10;
+
+   private File directory;
+   private LoopbackServer server;
+   private Logic logic;
+
+   @Before
+   public void setUp() throws IOException {
+      this.directory = Files.createTempDirectory("loopback-test").toFile();
+      this.server = new LoopbackServer(Content.synthetic(LENGTH)).setPacketSize(8 * 1024)
+                                                                   .setTargetDirectory(directory);
+      this.logic = new Logic(server);
+   }
+
+   @After
+   public void tearDown() {
+      logic.close();
+      server.close();
+   }
+
+   @Test
+   public void loadsADownload() throws Exception {
+      URL url = url("plain");
+      ClientDownload download = load(url);
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertContent(url);
+   }
+
+   @Test
+   public void loadsASegmentedCompressedDownload() throws Exception {
+      logic.setRangeRequests(true);
+      logic.setCompression(true);
+      logic.setSegmentCount(4);
+      logic.setSegmentThreshold(0);
+      URL url = url("segmented");
+      ClientDownload download = load(url);
+      assertTrue(download.isSegmented());
+      assertTrue(download.isCompressed());
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertContent(url);
+   }
+
+   @Test
+   public void loadsABatch() throws Exception {
+      List<DownloadMetadata> metadata = new ArrayList<>();
+      for (int i = 0; i < 6; i++)
+         metadata.add(new DownloadMetadata(url("batch-" + i)));
+
+      DownloadBatch batch = logic.requestDownloadsFrom(metadata, download -> {});
+      batch.waitFor();
+      assertEquals(metadata.size(), batch.count(ItemState.COMPLETE));
+      for (DownloadMetadata item : metadata)
+         assertContent(item.getUrl());
+   }
+
+   @Test
+   public void failsADownloadCancelledByTheServer() throws Exception {
+      server.setFailAfter(LENGTH / 2);
+      ClientDownload download = load(url("failing"));
+      assertNotEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertEquals(1, server.getInjectedFailures());
+   }
+
+   /**
+    * Requests and starts a download like the master control program and waits until it has terminated.
+    */
+   private ClientDownload load(URL url) throws Exception {
+      Channel<DownloadPacket> channel = server.establishDownloadChannel();
+      ClientDownload download = logic.requestDownloadFrom(new DownloadMetadata(url), channel);
+      assertNotNull(download);
+
+      CountDownLatch terminated = new CountDownLatch(1);
+      download.whenTerminated(d -> terminated.countDown());
+      logic.startDownload(download.getChannel(), download);
+      assertTrue("The download did not terminate in time", terminated.await(TIMEOUT, TimeUnit.SECONDS));
+      return download;
+   }
+
+   private void assertContent(URL url) throws IOException {
+      File file = new File(directory, new File(url.getPath()).getName());
+      assertEquals(LENGTH, file.length());
+      try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+         for (long position = 0; position < LENGTH; position++)
+            assertEquals("Byte at " + position, Content.syntheticByte(url, position), (byte) in.read());
+      }
+   }
+
+   private static URL url(String name) throws IOException {
+      return new URL("http", "loopback", "/" + name);
+   }
+}
@@ -0,0 +1,142 @@
+package de.dk.bininja.client.loopback;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dk.bininja.client.core.DownloadBatch;
+import de.dk.bininja.client.core.DownloadBatch.ItemState;
+import de.dk.bininja.client.core.DownloadMetrics;
+import de.dk.bininja.client.core.Logic;
+import de.dk.bininja.client.model.DownloadMetadata;
+
+/**
+ * Runs downloads end to end against a {@link LoopbackServer} serving synthetic content
+ * and verifies every loaded file.
+ * Prints the throughput of every round and the metrics of the client.
+ * Exits with 1 if a download failed, that has not been failed on purpose, or if a loaded file is corrupt.
+ * Every argument has the form <code>key=value</code>:
+ * <ul>
+ * <li><code>downloads</code> The number of concurrent downloads per round (default 16)</li>
+ * <li><code>length</code> The length of every download in bytes (default 16 MiB)</li>
+ * <li><code>rounds</code> The number of rounds, e.g. many for a soak test (default 3)</li>
+ * <li><code>packet-size</code> The number of bytes per data packet (default 64 KiB)</li>
+ * <li><code>bandwidth</code> The bandwidth of every download in bytes per second, 0 is unlimited (default 0)</li>
+ * <li><code>latency</code> The one way latency in milliseconds (default 0)</li>
+ * <li><code>failure-rate</code> The probability of a download to fail (default 0)</li>
+ * <li><code>seed</code> The seed of the failures (default 0)</li>
+ * <li><code>segments</code> The number of segments per download (default 1)</li>
+ * <li><code>compression</code> Whether to request compressed payloads (default false)</li>
+ * </ul>
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class LoopbackRun {
+   private static final long MIB = 1024 * 1024;
+
+   public static void main(String[] args) throws IOException, InterruptedException {
+      Map<String, String> arguments = new HashMap<>();
+      for (String arg : args) {
+         int index = arg.indexOf('=');
+         if (index <= 0)
+            throw new IllegalArgumentException("Argument has to be of the form key=value: " + arg);
+
+         arguments.put(arg.substring(0, index), arg.substring(index + 1));
+      }
+
+      int downloads = Integer.parseInt(arguments.getOrDefault("downloads", "16"));
+      long length = Long.parseLong(arguments.getOrDefault("length", String.valueOf(16 * MIB)));
+      int rounds = Integer.parseInt(arguments.getOrDefault("rounds", "3"));
+      File directory = Files.createTempDirectory("bininja-loopback").toFile();
+      LoopbackServer server = new LoopbackServer(Content.synthetic(length))
+         .setPacketSize(Integer.parseInt(arguments.getOrDefault("packet-size", String.valueOf(LoopbackServer.DEFAULT_PACKET_SIZE))))
+         .setBandwidth(Long.parseLong(arguments.getOrDefault("bandwidth", "0")))
+         .setLatency(Long.parseLong(arguments.getOrDefault("latency", "0")))
+         .setFailureRate(Double.parseDouble(arguments.getOrDefault("failure-rate", "0")))
+         .setSeed(Long.parseLong(arguments.getOrDefault("seed", "0")))
+         .setTargetDirectory(directory);
+
+      Logic logic = new Logic(server);
+      logic.setSegmentCount(Integer.parseInt(arguments.getOrDefault("segments", "1")));
+      logic.setCompression(Boolean.parseBoolean(arguments.getOrDefault("compression", "false")));
+      logic.setMaxRunningDownloads(Math.max(logic.getMaxRunningDownloads(), downloads));
+
+      int unexpected = 0;
+      try {
+         for (int round = 0; round < rounds; round++)
+            unexpected += round(logic, server, directory, round, downloads, length);
+      } finally {
+         logic.close();
+         server.close();
+         directory.delete();
+      }
+
+      DownloadMetrics metrics = logic.getMetrics();
+      System.out.println("Write latency:        " + metrics.getWriteLatency());
+      System.out.println("Header round trip:    " + metrics.getHeaderRoundTrip());
+      System.out.println("Injected failures:    " + server.getInjectedFailures());
+      System.out.println("Unexpected failures:  " + unexpected);
+      if (unexpected > 0)
+         System.exit(1);
+   }
+
+   private static int round(Logic logic,
+                            LoopbackServer server,
+                            File directory,
+                            int round,
+                            int downloads,
+                            long length) throws IOException, InterruptedException {
+      List<DownloadMetadata> metadata = new ArrayList<>(downloads);
+      for (int i = 0; i < downloads; i++)
+         metadata.add(new DownloadMetadata(new URL("http", "loopback", "/round-" + round + "/file-" + i)));
+
+      int injected = server.getInjectedFailures();
+      long begin = System.nanoTime();
+      DownloadBatch batch = logic.requestDownloadsFrom(metadata, download -> {});
+      batch.waitFor();
+      double seconds = (System.nanoTime() - begin) / 1e9;
+
+      int corrupt = 0;
+      for (DownloadBatch.Item item : batch.getItems()) {
+         File file = new File(directory, new File(item.getMetadata().getUrl().getPath()).getName());
+         if (item.getState() == ItemState.COMPLETE && !verify(item.getMetadata().getUrl(), file, length)) {
+            System.err.println("Corrupt file " + file + " of " + item);
+            corrupt++;
+         }
+         file.delete();
+      }
+
+      int failed = batch.count(ItemState.FAILED) + batch.count(ItemState.CANCELLED);
+      int expected = server.getInjectedFailures() - injected;
+      System.out.printf("Round %d: %d of %d downloads complete, %d failed, %.1f MB/s%n",
+                        round,
+                        batch.count(ItemState.COMPLETE),
+                        downloads,
+                        failed,
+                        batch.getLoadedBytes() / seconds / MIB);
+
+      return corrupt + Math.max(0, failed - expected);
+   }
+
+   private static boolean verify(URL url, File file, long length) throws IOException {
+      if (file.length() != length)
+         return false;
+
+      try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+         for (long position = 0; position < length; position++) {
+            if ((byte) in.read() != Content.syntheticByte(url, position))
+               return false;
+         }
+      }
+      return true;
+   }
+}
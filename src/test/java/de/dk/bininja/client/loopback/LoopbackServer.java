@@ -0,0 +1,341 @@
+package de.dk.bininja.client.loopback;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.dk.bininja.client.controller.ProcessorController;
+import de.dk.bininja.client.model.DownloadMetadata;
+import de.dk.bininja.client.net.DownloadRangeRequestPacket;
+import de.dk.bininja.client.net.InMemoryChannel;
+import de.dk.bininja.client.net.PayloadCodec;
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.ch.Channel;
+
+/**
+ * A stand-in for a BiNinja server, that runs in the same process as the client.
+ * It serves the download channels of a {@link de.dk.bininja.client.core.Logic} in memory
+ * and speaks the download protocol of the server: It answers a request with a header,
+ * sends the data in packets as soon as the client is ready and finishes the download.
+ * It honours ranges, a client cancelling a download and compressed payloads.
+ * The bandwidth of every download, the latency, the packet size and failures can be configured,
+ * so transfers can be tested reproducibly on a single machine.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class LoopbackServer implements ProcessorController {
+   private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackServer.class);
+
+   public static final int DEFAULT_PACKET_SIZE = 64 * 1024;
+   public static final String INJECTED_FAILURE = "Injected failure";
+
+   private final Content content;
+   private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+   private final AtomicInteger threadCount = new AtomicInteger();
+   private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "loopback-sender-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+   });
+   private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "loopback-timer");
+      thread.setDaemon(true);
+      return thread;
+   });
+
+   private int packetSize = DEFAULT_PACKET_SIZE;
+   private long bandwidth;
+   private long latency;
+   private double failureRate;
+   private long failAfter = -1;
+   private Random random = new Random(0);
+   private File targetDirectory;
+
+   private final AtomicLong sentBytes = new AtomicLong();
+   private final AtomicInteger injectedFailures = new AtomicInteger();
+
+   /**
+    * @param content The content to serve
+    */
+   public LoopbackServer(Content content) {
+      this.content = Objects.requireNonNull(content);
+   }
+
+   /**
+    * Establishes a new channel after a round trip.
+    */
+   @Override
+   public Channel<DownloadPacket> establishDownloadChannel() throws IOException, InterruptedException {
+      sleep(2 * latency);
+      Session session = new Session();
+      session.channel = new InMemoryChannel(session);
+      sessions.add(session);
+      return session.channel.getChannel();
+   }
+
+   @Override
+   public void closeDownloadChannel(Channel<DownloadPacket> channel) {
+      for (Session session : sessions) {
+         if (session.channel.getChannel() == channel)
+            session.close();
+      }
+   }
+
+   @Override
+   public void setDownloadTargetTo(DownloadMetadata metadata) {
+      if (targetDirectory != null)
+         metadata.setTargetDirectory(targetDirectory);
+   }
+
+   public void close() {
+      for (Session session : sessions)
+         session.close();
+
+      senders.shutdownNow();
+      timer.shutdownNow();
+   }
+
+   private static void sleep(long millis) throws InterruptedException {
+      if (millis > 0)
+         Thread.sleep(millis);
+   }
+
+   /**
+    * Sets the number of bytes per data packet.
+    */
+   public LoopbackServer setPacketSize(int packetSize) {
+      if (packetSize <= 0)
+         throw new IllegalArgumentException("The packet size must be positive: " + packetSize);
+
+      this.packetSize = packetSize;
+      return this;
+   }
+
+   /**
+    * Sets the bandwidth of every download in bytes per second. A bandwidth of 0 is unlimited.
+    */
+   public LoopbackServer setBandwidth(long bandwidth) {
+      if (bandwidth < 0)
+         throw new IllegalArgumentException("The bandwidth must not be negative: " + bandwidth);
+
+      this.bandwidth = bandwidth;
+      return this;
+   }
+
+   /**
+    * Sets the latency in milliseconds, that every packet is delayed by on its way.
+    * Establishing a channel and requesting a header costs a round trip of twice the latency.
+    */
+   public LoopbackServer setLatency(long latency) {
+      if (latency < 0)
+         throw new IllegalArgumentException("The latency must not be negative: " + latency);
+
+      this.latency = latency;
+      return this;
+   }
+
+   /**
+    * Sets the probability of a download to be cancelled by the server at a random position.
+    */
+   public LoopbackServer setFailureRate(double failureRate) {
+      if (failureRate < 0 || failureRate > 1)
+         throw new IllegalArgumentException("The failure rate has to be between 0 and 1: " + failureRate);
+
+      this.failureRate = failureRate;
+      return this;
+   }
+
+   /**
+    * Lets the server cancel every download after it has sent <code>failAfter</code> bytes.
+    * A value of -1 disables these failures.
+    */
+   public LoopbackServer setFailAfter(long failAfter) {
+      this.failAfter = failAfter;
+      return this;
+   }
+
+   /**
+    * Sets the seed of the random failures, so a run can be reproduced.
+    */
+   public LoopbackServer setSeed(long seed) {
+      this.random = new Random(seed);
+      return this;
+   }
+
+   /**
+    * Sets the directory, that downloads without a target are loaded into.
+    */
+   public LoopbackServer setTargetDirectory(File targetDirectory) {
+      this.targetDirectory = targetDirectory;
+      return this;
+   }
+
+   /**
+    * @return The number of payload bytes, that have been sent to the clients
+    */
+   public long getSentBytes() {
+      return sentBytes.get();
+   }
+
+   public int getInjectedFailures() {
+      return injectedFailures.get();
+   }
+
+   public int getOpenSessions() {
+      return sessions.size();
+   }
+
+   /**
+    * The server side of a download channel.
+    */
+   private class Session implements java.util.function.Consumer<DownloadPacket> {
+      private InMemoryChannel channel;
+      private volatile boolean closed;
+      private volatile boolean streaming;
+      private Content.Source source;
+      private URL url;
+      private long start;
+      private long end;
+      private PayloadCodec codec;
+
+      @Override
+      public void accept(DownloadPacket packet) {
+         if (closed)
+            return;
+
+         if (packet instanceof DownloadRequestPacket)
+            request((DownloadRequestPacket) packet);
+         else if (packet instanceof DownloadReadyPacket)
+            ready();
+         else if (packet instanceof DownloadCancelPacket)
+            close();
+      }
+
+      private void request(DownloadRequestPacket packet) {
+         this.url = packet.getUrl();
+         long length;
+         try {
+            this.source = content.open(url);
+            length = source.getLength();
+         } catch (IOException e) {
+            LOGGER.debug("No content for " + url, e);
+            deliverLater(new DownloadCancelPacket("Could not load " + url + ": " + e.getMessage()));
+            return;
+         }
+
+         this.end = length;
+         if (packet instanceof DownloadRangeRequestPacket) {
+            DownloadRangeRequestPacket range = (DownloadRangeRequestPacket) packet;
+            this.start = Math.min(range.getOffset(), length);
+            if (range.getLength() != -1)
+               this.end = Math.min(length, start + range.getLength());
+            if (range.getCodecs().contains(PayloadCodec.LZ4))
+               this.codec = PayloadCodec.LZ4;
+            else if (!range.getCodecs().isEmpty())
+               this.codec = range.getCodecs().iterator().next();
+         }
+
+         String path = url.getPath();
+         deliverLater(InMemoryChannel.header(length, path.substring(path.lastIndexOf('/') + 1)));
+      }
+
+      private void deliverLater(DownloadPacket packet) {
+         timer.schedule(() -> channel.deliver(packet), 2 * latency, TimeUnit.MILLISECONDS);
+      }
+
+      private void ready() {
+         if (streaming || source == null)
+            return;
+
+         streaming = true;
+         long failAt = -1;
+         synchronized (random) {
+            if (failureRate > 0 && random.nextDouble() < failureRate)
+               failAt = start + (long) (random.nextDouble() * (end - start));
+         }
+         if (failAfter >= 0 && (failAt == -1 || start + failAfter < failAt))
+            failAt = start + failAfter;
+
+         long failurePosition = failAt;
+         senders.execute(() -> send(failurePosition));
+      }
+
+      private void send(long failAt) {
+         try {
+            sleep(latency);
+            long begin = System.nanoTime();
+            long position = start;
+            while (position < end && !closed) {
+               if (failAt >= 0 && position >= failAt) {
+                  injectedFailures.incrementAndGet();
+                  channel.deliver(new DownloadCancelPacket(INJECTED_FAILURE));
+                  return;
+               }
+               int count = (int) Math.min(packetSize, end - position);
+               byte[] payload = new byte[count];
+               source.read(position, payload, count);
+               if (codec != null)
+                  payload = codec.frame(payload);
+
+               channel.deliver(new DownloadDataPacket(payload));
+               position += count;
+               sentBytes.addAndGet(count);
+               throttle(begin, position - start);
+            }
+            if (!closed)
+               channel.deliverFinish();
+         } catch (IOException e) {
+            LOGGER.warn("Error reading the content of " + url, e);
+            channel.deliver(new DownloadCancelPacket("Error reading " + url + ": " + e.getMessage()));
+         } catch (InterruptedException e) {
+            LOGGER.debug("Sending of " + url + " interrupted");
+         } finally {
+            close();
+         }
+      }
+
+      /**
+       * Waits until sending <code>sent</code> bytes did take as long as the bandwidth allows.
+       */
+      private void throttle(long begin, long sent) {
+         if (bandwidth <= 0)
+            return;
+
+         long due = begin + sent * TimeUnit.SECONDS.toNanos(1) / bandwidth;
+         long delay;
+         while ((delay = due - System.nanoTime()) > 0 && !closed)
+            LockSupport.parkNanos(delay);
+      }
+
+      private void close() {
+         closed = true;
+         sessions.remove(this);
+         if (source != null) {
+            try {
+               source.close();
+            } catch (IOException e) {
+               LOGGER.warn("Error closing the content of " + url, e);
+            }
+         }
+      }
+   }
+}
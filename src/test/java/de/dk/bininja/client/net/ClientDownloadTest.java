@@ -0,0 +1,379 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.dk.bininja.client.net.ClientDownload.RangeRequester;
+import de.dk.bininja.net.DownloadState;
+import de.dk.bininja.net.packet.download.DownloadCancelPacket;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadReadyPacket;
+import de.dk.ch.Channel;
+
+/**
+ * Runs downloads over in-memory channels into temporary files.
+ * The writers run on a {@link ManualExecutor}, so every test decides, when the queued data is written.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ClientDownloadTest {
+   private static final int BUFFER_SIZE = 16;
+   private static final int LENGTH = 300;
+   private static final long TIMEOUT = 10;
+
+   private static final byte[] CONTENT = new byte[LENGTH];
+
+   static {
+      for (int i = 0; i < LENGTH; i++)
+         CONTENT[i] = (byte) (i * 31 + 7);
+   }
+
+   private File file;
+   private FileChannel target;
+   private BufferPool bufferPool;
+   private ManualExecutor writer;
+   private List<DownloadPacket> sent;
+   private InMemoryChannel channel;
+
+   @Before
+   public void setUp() throws IOException {
+      this.file = Files.createTempFile("client-download", ".bin").toFile();
+      this.target = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.bufferPool = new BufferPool(BUFFER_SIZE, 64, false);
+      this.writer = new ManualExecutor();
+      this.sent = new CopyOnWriteArrayList<>();
+      this.channel = new InMemoryChannel(sent::add);
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      target.close();
+      file.delete();
+   }
+
+   @Test
+   public void drainsOnTheExecutorWithoutOccupyingAThread() throws IOException {
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.start(writer);
+      assertTrue(download.isExecuted());
+      assertEquals(1, writer.runAll());
+      assertEquals(DownloadState.RUNNING, download.getDownloadState());
+
+      feed(channel, 0, 40, BUFFER_SIZE);
+      assertEquals(1, writer.runAll());
+      assertEquals(32, download.getWrittenBytes());
+      assertEquals(0, download.getQueueDepth());
+
+      feed(channel, 40, LENGTH, 20);
+      channel.deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertEquals(LENGTH, download.getWrittenBytes());
+      assertContent(0, LENGTH);
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   @Test
+   public void writesTheQueuedBuffersWithOneGatheringWrite() throws IOException {
+      AtomicInteger writes = new AtomicInteger();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, 4 * BUFFER_SIZE, bufferPool);
+      download.setWriteLatencyRecorder(nanos -> writes.incrementAndGet());
+      download.start(writer);
+
+      feed(channel, 0, 4 * BUFFER_SIZE, BUFFER_SIZE);
+      assertEquals(4, download.getQueueDepth());
+      channel.deliverFinish();
+      writer.runAll();
+
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertEquals(1, writes.get());
+      assertContent(0, 4 * BUFFER_SIZE);
+      assertEquals(0, download.getReceiveWindow().getUsed());
+   }
+
+   @Test
+   public void writesSegmentsReceivedOutOfOrderAtTheirPositions() throws IOException {
+      List<DownloadPacket> sentOverFirst = new CopyOnWriteArrayList<>();
+      InMemoryChannel first = new InMemoryChannel(sentOverFirst::add);
+      InMemoryChannel second = new InMemoryChannel(packet -> {});
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.addSegment(first.getChannel(), 100, 200);
+      download.addSegment(second.getChannel(), 200, LENGTH);
+      assertTrue(download.isSegmented());
+      download.start(writer);
+
+      feed(second, 200, LENGTH, 40);
+      feed(first, 100, 150, 25);
+      assertEquals(DownloadState.RUNNING, download.getDownloadState());
+      feed(channel, 0, 120, 30);
+      assertTrue("The server has not been told to stop sending behind the own range",
+                 sent.stream().anyMatch(packet -> packet instanceof DownloadCancelPacket));
+      feed(first, 150, 200, 25);
+      assertEquals(DownloadState.LOADING_FINISHED, download.getDownloadState());
+      assertTrue(sentOverFirst.isEmpty());
+
+      writer.runAll();
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertEquals(LENGTH, download.getWrittenBytes());
+      assertContent(0, LENGTH);
+   }
+
+   @Test
+   public void failsASegmentFinishedBeforeItsEnd() throws IOException {
+      InMemoryChannel segmentChannel = new InMemoryChannel(packet -> {});
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.addSegment(segmentChannel.getChannel(), 100, LENGTH);
+      download.start(writer);
+
+      feed(segmentChannel, 100, 150, 25);
+      segmentChannel.deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.ERROR, download.getDownloadState());
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   @Test
+   public void pausesWhileTheReceiveWindowIsFullAndResumesBehindTheAcceptedData() throws Exception {
+      Requester requester = new Requester();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.setReceiveWindowSize(4 * BUFFER_SIZE);
+      download.enablePausing(requester);
+      download.start(writer);
+
+      feed(channel, 0, 5 * BUFFER_SIZE, BUFFER_SIZE);
+      assertEquals(1, download.getPauseCount());
+      assertEquals(4 * BUFFER_SIZE, download.getDecodedBytes());
+      assertTrue(sent.stream().anyMatch(packet -> packet instanceof DownloadCancelPacket));
+
+      writer.runAll();
+      assertTrue("The paused channel has not been released", requester.released.await(TIMEOUT, TimeUnit.SECONDS));
+      assertEquals(Collections.singletonList(channel.getChannel()), requester.releasedChannels);
+      assertEquals(Arrays.asList(4L * BUFFER_SIZE, (long) LENGTH - 4 * BUFFER_SIZE), requester.requests);
+      InMemoryChannel resumed = requester.channels.get(0);
+      assertTrue(requester.sent.get(0).get(0) instanceof DownloadReadyPacket);
+
+      download.setReceiveWindowSize(LENGTH);
+      feed(resumed, 4 * BUFFER_SIZE, LENGTH, BUFFER_SIZE);
+      resumed.deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertContent(0, LENGTH);
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   @Test
+   public void failsWhenTheReceiveWindowIsFullAndPausingIsDisabled() throws IOException {
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.setReceiveWindowSize(4 * BUFFER_SIZE);
+      download.start(writer);
+
+      feed(channel, 0, 5 * BUFFER_SIZE, BUFFER_SIZE);
+      assertEquals(DownloadState.ERROR, download.getDownloadState());
+      writer.runAll();
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   @Test
+   public void resumesADetachedDownloadOverANewChannel() throws IOException {
+      Requester requester = new Requester();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.start(writer);
+
+      feed(channel, 0, 24, 24);
+      assertTrue(download.detach(Collections.singleton(channel.getChannel())));
+      assertTrue(download.isDetached());
+      feed(channel, 24, 48, 24);
+      assertEquals(24, download.getDecodedBytes());
+
+      List<Channel<DownloadPacket>> resumed = download.resume(requester);
+      assertEquals(1, resumed.size());
+      assertFalse(download.isDetached());
+      assertEquals(Arrays.asList(24L, (long) LENGTH - 24), requester.requests);
+
+      feed(requester.channels.get(0), 24, LENGTH, 50);
+      requester.channels.get(0).deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertContent(0, LENGTH);
+   }
+
+   @Test
+   public void releasesTheNewChannelOfAnAbortedDetachedDownload() throws IOException {
+      Requester requester = new Requester();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.start(writer);
+
+      feed(channel, 0, 24, 24);
+      assertTrue(download.detach(Collections.singleton(channel.getChannel())));
+      download.abort(new IOException("The connection could not be replaced"));
+      assertEquals(DownloadState.ERROR, download.getDownloadState());
+
+      assertTrue(download.resume(requester).isEmpty());
+      assertEquals(1, requester.releasedChannels.size());
+      assertTrue(requester.sent.get(0).get(0) instanceof DownloadCancelPacket);
+
+      writer.runAll();
+      assertEquals(DownloadState.ERROR, download.getDownloadState());
+      assertEquals("The connection could not be replaced", download.getException().getMessage());
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   @Test
+   public void returnsTheBuffersAfterTheChecksumHasProcessedThem() throws Exception {
+      ManualExecutor hasher = new ManualExecutor();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, 4 * BUFFER_SIZE, bufferPool);
+      download.setChecksum(new StreamingChecksum(ChecksumAlgorithm.SHA_256, hasher), sha256(4 * BUFFER_SIZE));
+      download.start(writer);
+
+      feed(channel, 0, 4 * BUFFER_SIZE, BUFFER_SIZE);
+      writer.runAll();
+      assertEquals(4 * BUFFER_SIZE, download.getWrittenBytes());
+      assertEquals(4 * BUFFER_SIZE, bufferPool.getOutstandingBytes());
+      assertEquals(4 * BUFFER_SIZE, download.getReceiveWindow().getUsed());
+
+      hasher.runDirectly();
+      assertEquals(0, bufferPool.getOutstandingBytes());
+      assertEquals(0, download.getReceiveWindow().getUsed());
+
+      channel.deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.COMPLETE, download.getDownloadState());
+      assertEquals(sha256(4 * BUFFER_SIZE), download.getChecksum().getChecksum());
+      assertFalse(download.isChecksumMismatch());
+   }
+
+   @Test
+   public void failsOnAChecksumMismatch() throws Exception {
+      ManualExecutor hasher = new ManualExecutor();
+      hasher.runDirectly();
+      ClientDownload download = new ClientDownload(channel.getChannel(), target, LENGTH, bufferPool);
+      download.setChecksum(new StreamingChecksum(ChecksumAlgorithm.SHA_256, hasher), sha256(LENGTH - 1));
+      download.start(writer);
+
+      feed(channel, 0, LENGTH, 50);
+      channel.deliverFinish();
+      writer.runAll();
+      assertEquals(DownloadState.ERROR, download.getDownloadState());
+      assertTrue(download.isChecksumMismatch());
+      assertContent(0, LENGTH);
+      assertEquals(0, bufferPool.getOutstandingBytes());
+   }
+
+   /**
+    * Delivers the content in <code>[from, to)</code> over the <code>channel</code> in packets of <code>packetSize</code>.
+    */
+   private static void feed(InMemoryChannel channel, int from, int to, int packetSize) {
+      for (int position = from; position < to; position += packetSize) {
+         byte[] payload = Arrays.copyOfRange(CONTENT, position, Math.min(position + packetSize, to));
+         channel.deliver(new DownloadDataPacket(payload));
+      }
+   }
+
+   private void assertContent(int from, int to) throws IOException {
+      byte[] written = Files.readAllBytes(file.toPath());
+      assertArrayEquals(Arrays.copyOfRange(CONTENT, from, to), Arrays.copyOfRange(written, from, to));
+   }
+
+   private static String sha256(int length) throws NoSuchAlgorithmException {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(CONTENT, 0, length);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest())
+         hex.append(String.format("%02x", b));
+
+      return hex.toString();
+   }
+
+   /**
+    * Runs the submitted tasks on the calling thread, when the test tells it to.
+    */
+   private static class ManualExecutor implements Executor {
+      private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+      private volatile boolean direct;
+
+      @Override
+      public void execute(Runnable task) {
+         if (direct)
+            task.run();
+         else
+            tasks.add(task);
+      }
+
+      /**
+       * Runs the submitted tasks and the tasks, that they submit, until there are none left.
+       *
+       * @return The number of tasks run
+       */
+      private int runAll() {
+         int count = 0;
+         for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+            task.run();
+            count++;
+         }
+         return count;
+      }
+
+      /**
+       * Runs the submitted tasks and every task, that is submitted from now on, right away.
+       */
+      private void runDirectly() {
+         this.direct = true;
+         runAll();
+      }
+   }
+
+   /**
+    * Answers every range request with a new in-memory channel and records the released channels.
+    */
+   private static class Requester implements RangeRequester {
+      private final List<Long> requests = new CopyOnWriteArrayList<>();
+      private final List<InMemoryChannel> channels = new CopyOnWriteArrayList<>();
+      private final List<List<DownloadPacket>> sent = new CopyOnWriteArrayList<>();
+      private final List<Channel<DownloadPacket>> releasedChannels = new CopyOnWriteArrayList<>();
+      private final CountDownLatch released = new CountDownLatch(1);
+
+      @Override
+      public Channel<DownloadPacket> request(long position, long length) throws IOException {
+         requests.add(position);
+         requests.add(length);
+         List<DownloadPacket> packets = new ArrayList<>();
+         sent.add(packets);
+         InMemoryChannel channel = new InMemoryChannel(packets::add);
+         channels.add(channel);
+         return channel.getChannel();
+      }
+
+      @Override
+      public void release(Channel<DownloadPacket> channel) {
+         releasedChannels.add(channel);
+         released.countDown();
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the checksum against the test vectors of RFC 3720, appendix B.4.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class Crc32CTest {
+
+   @Test
+   public void checkValue() {
+      assertEquals(0xE3069283L, crc("123456789".getBytes(StandardCharsets.US_ASCII)));
+   }
+
+   @Test
+   public void zeros() {
+      assertEquals(0x8A9136AAL, crc(new byte[32]));
+   }
+
+   @Test
+   public void ones() {
+      byte[] data = new byte[32];
+      Arrays.fill(data, (byte) 0xFF);
+      assertEquals(0x62A8AB43L, crc(data));
+   }
+
+   @Test
+   public void incrementing() {
+      byte[] data = new byte[32];
+      for (int i = 0; i < data.length; i++)
+         data[i] = (byte) i;
+
+      assertEquals(0x46DD794EL, crc(data));
+   }
+
+   @Test
+   public void decrementing() {
+      byte[] data = new byte[32];
+      for (int i = 0; i < data.length; i++)
+         data[i] = (byte) (31 - i);
+
+      assertEquals(0x113FDB5CL, crc(data));
+   }
+
+   @Test
+   public void emptyInput() {
+      assertEquals(0, crc(new byte[0]));
+   }
+
+   @Test
+   public void updatesInPiecesEqualOneUpdate() {
+      byte[] data = randomBytes(10_000);
+      long expected = crc(data);
+
+      Crc32C crc = new Crc32C();
+      int offset = 0;
+      for (int length = 1; offset < data.length; length = length * 2 + 1) {
+         int count = Math.min(length, data.length - offset);
+         crc.update(data, offset, count);
+         offset += count;
+      }
+      assertEquals(expected, crc.getValue());
+
+      crc.reset();
+      for (byte b : data)
+         crc.update(b);
+      assertEquals(expected, crc.getValue());
+   }
+
+   @Test
+   public void directAndHeapBuffersEqualArrays() {
+      byte[] data = randomBytes(20_000);
+      long expected = crc(data);
+
+      ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+      direct.put(data).flip();
+      Crc32C crc = new Crc32C();
+      crc.update(direct);
+      assertEquals(expected, crc.getValue());
+      assertEquals(0, direct.remaining());
+
+      ByteBuffer heap = ByteBuffer.wrap(new byte[data.length + 10], 5, data.length).slice();
+      heap.put(data).flip();
+      crc.reset();
+      crc.update(heap);
+      assertEquals(expected, crc.getValue());
+   }
+
+   private static long crc(byte[] data) {
+      Crc32C crc = new Crc32C();
+      crc.update(data, 0, data.length);
+      return crc.getValue();
+   }
+
+   private static byte[] randomBytes(int length) {
+      byte[] data = new byte[length];
+      new Random(length).nextBytes(data);
+      return data;
+   }
+}
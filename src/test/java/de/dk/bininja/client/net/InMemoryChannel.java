@@ -0,0 +1,165 @@
+package de.dk.bininja.client.net;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import de.dk.bininja.net.Download;
+import de.dk.bininja.net.packet.download.DownloadDataPacket;
+import de.dk.bininja.net.packet.download.DownloadHeaderPacket;
+import de.dk.bininja.net.packet.download.DownloadPacket;
+import de.dk.bininja.net.packet.download.DownloadRequestPacket;
+import de.dk.ch.Channel;
+import de.dk.ch.ChannelListener;
+
+/**
+ * A stand-in for a download channel of a multiplexed connection, that keeps everything in memory.
+ * The packets sent over the channel are handed to a server side handler.
+ * The packets of the server are delivered to the listeners of the channel by the calling thread.
+ * The protocol has no packet, that finishes a download, so the end of a download is handed
+ * through the {@link ChannelGate} of a listening download or segment directly to its handler.
+ * The channel and the headers are plain subclasses of the packet and channel classes,
+ * so no mocking framework takes part in the measured path.
+ * This class lives in the package of the {@link ClientDownload} to reach its packet handlers.
+ *
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class InMemoryChannel {
+   private final Channel<DownloadPacket> channel;
+   private final List<ChannelListener<DownloadPacket>> listeners = new CopyOnWriteArrayList<>();
+   private final Consumer<DownloadPacket> server;
+
+   /**
+    * @param server Receives every packet, that is sent over the channel
+    */
+   public InMemoryChannel(Consumer<DownloadPacket> server) throws IOException {
+      this.server = Objects.requireNonNull(server);
+      this.channel = new StubChannel();
+   }
+
+   /**
+    * Creates a channel, that answers a download request immediately with a header
+    * and drops every other packet sent over the channel.
+    *
+    * @param length The length of the download, that the header answers a request with
+    * @param filename The filename, that the header answers a request with
+    */
+   public InMemoryChannel(long length, String filename) throws IOException {
+      this(new HeaderResponder(header(length, filename)));
+      ((HeaderResponder) server).channel = this;
+   }
+
+   /**
+    * @return A header packet, that announces a download of <code>length</code> bytes
+    */
+   public static DownloadHeaderPacket header(long length, String filename) {
+      return new StubHeader(length, filename);
+   }
+
+   /**
+    * Delivers a packet of the server to all the listeners of this channel.
+    */
+   public void deliver(DownloadPacket packet) {
+      for (ChannelListener<DownloadPacket> listener : listeners)
+         listener.received(packet);
+   }
+
+   /**
+    * Tells the listening downloads and segments, that the server has sent all of their data.
+    */
+   public void deliverFinish() {
+      for (ChannelListener<DownloadPacket> listener : listeners) {
+         if (!(listener instanceof ChannelGate) || !((ChannelGate) listener).isOpen())
+            continue;
+
+         Download target = ((ChannelGate) listener).getTarget();
+         if (target instanceof ClientDownload)
+            ((ClientDownload) target).finish();
+         else if (target instanceof DownloadSegment)
+            ((DownloadSegment) target).finish();
+      }
+   }
+
+   /**
+    * Feeds a data packet into the receiving path of the <code>download</code>,
+    * as if it had been received over its channel.
+    */
+   public static void feed(ClientDownload download, DownloadDataPacket packet) {
+      download.data(packet);
+   }
+
+   /**
+    * Tells the <code>download</code>, that the server has sent all of its data.
+    */
+   public static void finish(ClientDownload download) {
+      download.finish();
+   }
+
+   /**
+    * Removes all the listeners, so the channel can be reused for another download.
+    */
+   public void reset() {
+      listeners.clear();
+   }
+
+   public Channel<DownloadPacket> getChannel() {
+      return channel;
+   }
+
+   private class StubChannel extends Channel<DownloadPacket> {
+      @Override
+      public void send(DownloadPacket packet) {
+         server.accept(packet);
+      }
+
+      @Override
+      public void addListener(ChannelListener<DownloadPacket> listener) {
+         listeners.add(listener);
+      }
+
+      @Override
+      public void removeListener(ChannelListener<DownloadPacket> listener) {
+         listeners.remove(listener);
+      }
+   }
+
+   private static class StubHeader extends DownloadHeaderPacket {
+      private static final long serialVersionUID = 4126380159217443563L;
+
+      private final long length;
+      private final String filename;
+
+      private StubHeader(long length, String filename) {
+         this.length = length;
+         this.filename = filename;
+      }
+
+      @Override
+      public long getLength() {
+         return length;
+      }
+
+      @Override
+      public String getFilename() {
+         return filename;
+      }
+   }
+
+   private static class HeaderResponder implements Consumer<DownloadPacket> {
+      private final DownloadHeaderPacket header;
+      private InMemoryChannel channel;
+
+      private HeaderResponder(DownloadHeaderPacket header) {
+         this.header = header;
+      }
+
+      @Override
+      public void accept(DownloadPacket packet) {
+         if (packet instanceof DownloadRequestPacket)
+            channel.deliver(header);
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class Lz4BlockTest {
+
+   @Test
+   public void compressibleDataShrinksAndRoundTrips() throws IOException {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 1000; i++)
+         text.append("BiNinja download ").append(i % 10).append('\n');
+
+      byte[] data = text.toString().getBytes(StandardCharsets.US_ASCII);
+      byte[] compressed = compress(data);
+      assertTrue("Expected the data to shrink, but it is " + compressed.length + " bytes",
+                 compressed.length < data.length / 4);
+      assertArrayEquals(data, decompress(compressed, data.length));
+   }
+
+   @Test
+   public void randomDataRoundTrips() throws IOException {
+      byte[] data = new byte[64 * 1024];
+      new Random(42).nextBytes(data);
+      assertArrayEquals(data, decompress(compress(data), data.length));
+   }
+
+   @Test
+   public void shortInputsRoundTrip() throws IOException {
+      for (int length = 0; length <= 32; length++) {
+         byte[] data = new byte[length];
+         Arrays.fill(data, (byte) 'a');
+         assertArrayEquals(data, decompress(compress(data), length));
+      }
+   }
+
+   @Test
+   public void longMatchesAndLiteralsRoundTrip() throws IOException {
+      byte[] data = new byte[100_000];
+      Random random = new Random(7);
+      random.nextBytes(data);
+      Arrays.fill(data, 1000, 60_000, (byte) 3);
+      assertArrayEquals(data, decompress(compress(data), data.length));
+   }
+
+   @Test
+   public void decompressesBlockOfReferenceFormat() throws IOException {
+      // One literal 'a' with a match of 14 bytes at offset 1, followed by the last 5 literals
+      byte[] block = {0x1A, 'a', 0x01, 0x00, 0x50, 'a', 'a', 'a', 'a', 'a'};
+      byte[] expected = new byte[20];
+      Arrays.fill(expected, (byte) 'a');
+      assertArrayEquals(expected, decompress(block, 20));
+   }
+
+   @Test
+   public void decompressesAtOffset() throws IOException {
+      byte[] block = {9, 9, 0x50, 'h', 'e', 'l', 'l', 'o'};
+      byte[] dst = new byte[5];
+      Lz4Block.decompress(block, 2, block.length - 2, dst, dst.length);
+      assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), dst);
+   }
+
+   @Test(expected = IOException.class)
+   public void rejectsOffsetBehindTheOutput() throws IOException {
+      byte[] block = {0x1A, 'a', 0x05, 0x00, 0x50, 'a', 'a', 'a', 'a', 'a'};
+      decompress(block, 20);
+   }
+
+   @Test(expected = IOException.class)
+   public void rejectsZeroOffset() throws IOException {
+      byte[] block = {0x1A, 'a', 0x00, 0x00, 0x50, 'a', 'a', 'a', 'a', 'a'};
+      decompress(block, 20);
+   }
+
+   @Test(expected = IOException.class)
+   public void rejectsTruncatedBlock() throws IOException {
+      byte[] block = {0x1A, 'a', 0x01};
+      decompress(block, 20);
+   }
+
+   @Test(expected = IOException.class)
+   public void rejectsWrongLength() throws IOException {
+      byte[] block = {0x50, 'h', 'e', 'l', 'l', 'o'};
+      decompress(block, 6);
+   }
+
+   private static byte[] compress(byte[] data) {
+      byte[] dst = new byte[Lz4Block.maxCompressedLength(data.length)];
+      int length = Lz4Block.compress(data, data.length, dst);
+      assertTrue("The data did not fit into its maximum compressed length", length >= 0);
+      return Arrays.copyOf(dst, length);
+   }
+
+   private static byte[] decompress(byte[] block, int length) throws IOException {
+      byte[] dst = new byte[length];
+      Lz4Block.decompress(block, 0, block.length, dst, length);
+      return dst;
+   }
+}
@@ -0,0 +1,76 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class MappedTargetTest {
+   private static final int LENGTH = 64;
+   private static final int WINDOW_SIZE = 16;
+
+   @Test
+   public void interleavedSegmentsKeepTheirWindows() throws IOException {
+      File file = Files.createTempFile("mapped-target", ".bin").toFile();
+      byte[] expected = new byte[LENGTH];
+      for (int i = 0; i < LENGTH; i++)
+         expected[i] = (byte) i;
+
+      try (FileChannel channel = open(file)) {
+         MappedTarget target = new MappedTarget(channel, 0, LENGTH, WINDOW_SIZE);
+         for (int i = 0; i < WINDOW_SIZE; i += 4) {
+            target.write(ByteBuffer.wrap(expected, i, 4), i);
+            target.write(ByteBuffer.wrap(expected, 32 + i, 4), 32 + i);
+            assertEquals(i + 4 < WINDOW_SIZE ? 2 : 0, target.getMappedWindowCount());
+         }
+         target.write(ByteBuffer.wrap(expected, 16, 16), 16);
+         target.write(ByteBuffer.wrap(expected, 48, 8), 48);
+         assertEquals(1, target.getMappedWindowCount());
+         target.write(ByteBuffer.wrap(expected, 56, 8), -1);
+         assertEquals(0, target.getMappedWindowCount());
+         target.force();
+      }
+      assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+      file.delete();
+   }
+
+   @Test
+   public void forceUnmapsPartialWindows() throws IOException {
+      File file = Files.createTempFile("mapped-target", ".bin").toFile();
+      try (FileChannel channel = open(file)) {
+         MappedTarget target = new MappedTarget(channel, 0, LENGTH, WINDOW_SIZE);
+         target.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), 20);
+         assertEquals(1, target.getMappedWindowCount());
+         target.force();
+         assertEquals(0, target.getMappedWindowCount());
+      }
+      assertEquals(2, Files.readAllBytes(file.toPath())[21]);
+      file.delete();
+   }
+
+   @Test(expected = IOException.class)
+   public void dataBeyondTheEndIsRejected() throws IOException {
+      File file = Files.createTempFile("mapped-target", ".bin").toFile();
+      file.deleteOnExit();
+      try (FileChannel channel = open(file)) {
+         new MappedTarget(channel, 0, LENGTH, WINDOW_SIZE).write(ByteBuffer.allocate(8), LENGTH - 4);
+      }
+   }
+
+   private static FileChannel open(File file) throws IOException {
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.write(ByteBuffer.allocate(1), LENGTH - 1);
+      return channel;
+   }
+}
@@ -0,0 +1,137 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class RateLimiterTest {
+   private static final long RATE = 100_000;
+   /** The burst of {@link #RATE}, which is the minimum burst of the limiter. */
+   private static final int BURST = 16 * 1024;
+
+   @Test
+   public void unlimitedNeverWaits() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter();
+      assertFalse(limiter.isLimited());
+      long start = System.nanoTime();
+      for (int i = 0; i < 1000; i++)
+         assertTrue(limiter.acquire(1024 * 1024, () -> false));
+
+      assertTrue(millisSince(start) < 500);
+   }
+
+   @Test
+   public void burstIsServedImmediately() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(RATE);
+      long start = System.nanoTime();
+      assertTrue(limiter.acquire(BURST, () -> false));
+      assertTrue(millisSince(start) < 50);
+   }
+
+   @Test
+   public void debtIsPaidByTheNextReceiver() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(RATE);
+      assertTrue(limiter.acquire(BURST + (int) (RATE / 2), () -> false));
+      long start = System.nanoTime();
+      assertTrue(limiter.acquire(1, () -> false));
+      long millis = millisSince(start);
+      assertTrue("Waited only " + millis + " ms", millis >= 400);
+      assertTrue("Waited " + millis + " ms", millis < 2000);
+   }
+
+   @Test
+   public void keepsTheRateOverTime() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(RATE);
+      limiter.acquire(BURST, () -> false);
+      long start = System.nanoTime();
+      for (int i = 0; i < 30; i++)
+         limiter.acquire(1000, () -> false);
+
+      limiter.acquire(1, () -> false);
+      long millis = millisSince(start);
+      assertTrue("Received 30000 bytes in " + millis + " ms", millis >= 250 && millis < 1500);
+   }
+
+   @Test
+   public void abortStopsWaiting() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(1000);
+      limiter.acquire(BURST * 4, () -> false);
+      AtomicBoolean abort = new AtomicBoolean();
+      Thread aborter = new Thread(() -> {
+         sleep(150);
+         abort.set(true);
+      });
+      aborter.start();
+      long start = System.nanoTime();
+      assertFalse(limiter.acquire(1, abort::get));
+      assertTrue(millisSince(start) < 2000);
+      aborter.join();
+   }
+
+   @Test
+   public void liftingTheLimitWakesWaitingReceivers() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(1000);
+      limiter.acquire(BURST * 4, () -> false);
+      Thread lifter = new Thread(() -> {
+         sleep(150);
+         limiter.setRate(RateLimiter.UNLIMITED);
+      });
+      lifter.start();
+      long start = System.nanoTime();
+      assertTrue(limiter.acquire(1, () -> false));
+      assertTrue(millisSince(start) < 2000);
+      lifter.join();
+      assertEquals(RateLimiter.UNLIMITED, limiter.getRate());
+   }
+
+   @Test
+   public void receiversAreServedInTurns() throws InterruptedException {
+      RateLimiter limiter = new RateLimiter(RATE);
+      limiter.acquire(BURST, () -> false);
+      int[] served = new int[2];
+      Thread[] receivers = new Thread[2];
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(600);
+      for (int i = 0; i < receivers.length; i++) {
+         int index = i;
+         receivers[i] = new Thread(() -> {
+            try {
+               while (System.nanoTime() < end && limiter.acquire(1000, () -> false))
+                  served[index]++;
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+            }
+         });
+         receivers[i].start();
+      }
+      for (Thread receiver : receivers)
+         receiver.join();
+
+      assertTrue("Served " + served[0] + " and " + served[1], Math.abs(served[0] - served[1]) <= 2);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void rejectsNegativeRate() {
+      new RateLimiter(-1);
+   }
+
+   private static long millisSince(long start) {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+}
@@ -0,0 +1,71 @@
+package de.dk.bininja.client.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author David Koettlitz
+ * <br>Erstellt am 18.10.2026
+ */
+public class ReceiveWindowTest {
+   @Test
+   public void acquiresWithinTheSize() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      assertTrue(window.tryAcquire(60));
+      assertTrue(window.tryAcquire(40));
+      assertEquals(100, window.getUsed());
+   }
+
+   @Test
+   public void oversizedPayloadPassesAnEmptyWindow() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      assertTrue(window.tryAcquire(1000));
+      assertEquals(1000, window.getUsed());
+   }
+
+   @Test
+   public void fullWindowIsNeverExceeded() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      assertTrue(window.tryAcquire(100));
+      assertFalse(window.tryAcquire(1));
+      assertEquals(100, window.getUsed());
+   }
+
+   @Test
+   public void releasedBytesCanBeAcquiredAgain() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      window.tryAcquire(100);
+      window.release(50);
+      assertTrue(window.tryAcquire(50));
+      assertFalse(window.tryAcquire(1));
+      assertEquals(100, window.getUsed());
+   }
+
+   @Test
+   public void closedWindowAcquiresNothing() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      window.close();
+      assertTrue(window.isClosed());
+      assertFalse(window.tryAcquire(10));
+      assertEquals(0, window.getUsed());
+   }
+
+   @Test
+   public void hasRoomForWhatFitsOrWhenEmpty() {
+      ReceiveWindow window = new ReceiveWindow(100);
+      assertTrue(window.hasRoomFor(1000));
+      window.tryAcquire(60);
+      assertTrue(window.hasRoomFor(40));
+      assertFalse(window.hasRoomFor(41));
+      window.release(60);
+      assertTrue(window.hasRoomFor(100));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void sizeMustBePositive() {
+      new ReceiveWindow(0);
+   }
+}